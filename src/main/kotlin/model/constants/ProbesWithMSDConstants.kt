@@ -185,6 +185,15 @@ object ProbesWithMSDConstants {
    */
   val lastIndexOfNumberMineral = 265
 
+  /**
+   * Названия атрибутов с количеством кристаллов МСА и количеством
+   * минералов. У большинства проб значения этих атрибутов равны нулю.
+   */
+  val namesOfNumberColumns: List<String> =
+          ((firstIndexOfNumberCrystal..lastIndexOfNumberCrystal)
+          + (firstIndexOfNumberMineral..lastIndexOfNumberMineral))
+          .map { indexAndNameOfColumns[it]!! }
+
   val nameOfList = "Page 1" // Название листа с данными в файле минералогии
 
   /**
@@ -0,0 +1,78 @@
+package model.file
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook
+import org.apache.poi.poifs.filesystem.POIFSFileSystem
+import org.apache.poi.ss.usermodel.Sheet
+import java.io.Closeable
+import java.io.File
+import java.io.IOException
+
+/**
+ * Excel-книга, открытая один раз для чтения всех нужных листов.
+ * Книга открывается непосредственно из файла (без буферизации всего
+ * файла в памяти): xls-файл - через POIFSFileSystem, xlsx-файл -
+ * через OPCPackage для потокового чтения листов (см. [XlsxStreamReader]).
+ * После работы книгу нужно закрыть.
+ * @throws IOException
+ */
+class ExcelWorkbook @Throws(IOException::class)
+
+constructor(val file: File): Closeable {
+  private var fileSystem: POIFSFileSystem? = null
+  private var hssfWorkbook: HSSFWorkbook? = null
+  private var xlsxReader: XlsxStreamReader? = null
+
+  init {
+    if (file.name.toLowerCase().endsWith(".xlsx")) {
+      xlsxReader = XlsxStreamReader(file)
+    } else {
+      val fs = POIFSFileSystem(file, true)
+      try {
+        hssfWorkbook = HSSFWorkbook(fs.root, true)
+      } catch (e: Exception) {
+        fs.close()
+        throw IOException("Ошибка чтения xls-файла ${file.name}")
+      }
+      fileSystem = fs
+    }
+  }
+
+  /**
+   * Последовательно передает строки листа [nameOfSheet] обработчику
+   * [consumer]. Чтение прекращается после передачи первой строки с
+   * индексом не меньше [stopAfterRow]. Возвращает false, если лист
+   * с таким названием в книге отсутствует.
+   * @throws IOException
+   */
+  @Throws(IOException::class)
+  fun readSheet(nameOfSheet: String, consumer: RowConsumer,
+                stopAfterRow: Int = Int.MAX_VALUE): Boolean {
+    xlsxReader?.let { return it.readSheet(nameOfSheet, consumer, stopAfterRow) }
+    val sheet = hssfWorkbook?.getSheet(nameOfSheet) ?: return false
+    readRowsOfSheet(sheet, consumer, stopAfterRow)
+    return true
+  }
+
+  override fun close() {
+    xlsxReader?.close()
+    hssfWorkbook?.close()
+    fileSystem?.close()
+  }
+
+  companion object {
+    /**
+     * Передает обработчику [consumer] строки листа [sheet] объектной
+     * модели в том же виде, в каком их передает потоковое чтение
+     */
+    fun readRowsOfSheet(sheet: Sheet, consumer: RowConsumer,
+                        stopAfterRow: Int = Int.MAX_VALUE) {
+      val cells = HashMap<Int, String>()
+      for (row in sheet) {
+        cells.clear()
+        row.forEach { cells[it.columnIndex] = it.toString() }
+        consumer(row.rowNum, cells)
+        if (row.rowNum >= stopAfterRow) break
+      }
+    }
+  }
+}
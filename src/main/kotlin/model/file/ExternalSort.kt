@@ -0,0 +1,184 @@
+package model.file
+
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.Closeable
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.IOException
+import java.io.UncheckedIOException
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.*
+
+/**
+ * Внешняя сортировка строк таблицы (списков значений), которые не
+ * помещаются в память. Строки добавляются методом [add]; когда строки
+ * в памяти занимают больше [memoryForRows] байтов (оценка сверху, см.
+ * [sizeOf]), они сортируются и записываются во временный файл (серию).
+ * Метод [sorted] возвращает все строки в порядке [comparator]: серии
+ * объединяются слиянием через очередь с приоритетом, и в памяти
+ * находится только по одной строке каждой серии. Сортировка
+ * устойчивая - равные строки идут в порядке добавления. Временные
+ * файлы удаляются, когда перебраны все строки, а также при закрытии
+ * [close].
+ */
+class ExternalSort(private val comparator: Comparator<in List<String>>,
+                   private val memoryForRows: Long = 1L shl 26): Closeable {
+  // строки, которые еще не записаны в серию, и их размер в памяти
+  private val rows = ArrayList<List<String>>()
+  private var sizeOfRows = 0L
+  // временные файлы серий и количество строк в них
+  private val runs = ArrayList<Path>()
+  private val sizesOfRuns = ArrayList<Int>()
+  // открытые для слияния серии
+  private val readers = ArrayList<RunReader>()
+
+  /** Количество добавленных строк */
+  var size = 0L
+    private set
+
+  /**
+   * Добавить строку [row]; [sizeOfRow] - размер строки в памяти, если
+   * вызывающий код оценивает его точнее (например, строки ссылаются на
+   * одни и те же объекты)
+   */
+  @Throws(IOException::class)
+  fun add(row: List<String>, sizeOfRow: Long = sizeOf(row)) {
+    rows.add(row)
+    size++
+    sizeOfRows += sizeOfRow
+    if (sizeOfRows > memoryForRows) spill()
+  }
+
+  /**
+   * Все добавленные строки в порядке сортировки. После вызова строки
+   * добавлять нельзя, перебрать их можно один раз. Ошибка чтения
+   * серии при переборе выбрасывается как UncheckedIOException.
+   * @throws IOException
+   */
+  @Throws(IOException::class)
+  fun sorted(): Iterator<List<String>> {
+    Collections.sort(rows, comparator) // сортировка слиянием - устойчивая
+    if (runs.isEmpty()) return rows.iterator()
+    val sources = ArrayList<Iterator<List<String>>>(runs.size + 1)
+    for (i in runs.indices) {
+      val reader = RunReader(runs[i], sizesOfRuns[i])
+      readers.add(reader)
+      sources.add(reader)
+    }
+    sources.add(rows.iterator()) // последняя серия остается в памяти
+    return Merge(sources)
+  }
+
+  /** Удалить временные файлы */
+  @Throws(IOException::class)
+  override fun close() {
+    readers.forEach { it.close() }
+    readers.clear()
+    runs.forEach { Files.deleteIfExists(it) }
+    runs.clear()
+  }
+
+  // отсортировать строки в памяти и записать их в новую серию
+  @Throws(IOException::class)
+  private fun spill() {
+    Collections.sort(rows, comparator)
+    val run = Files.createTempFile("run", ".tmp")
+    runs.add(run)
+    sizesOfRuns.add(rows.size)
+    DataOutputStream(BufferedOutputStream(Files.newOutputStream(run), sizeOfBuffer)).use { out ->
+      rows.forEach { row ->
+        out.writeInt(row.size)
+        row.forEach {
+          val bytes = it.toByteArray(StandardCharsets.UTF_8)
+          out.writeInt(bytes.size)
+          out.write(bytes)
+        }
+      }
+    }
+    rows.clear()
+    sizeOfRows = 0L
+  }
+
+  // чтение [size] строк серии из файла [run]
+  private class RunReader(run: Path, private var size: Int): Iterator<List<String>>, Closeable {
+    private val input = DataInputStream(BufferedInputStream(Files.newInputStream(run), sizeOfBuffer))
+
+    override fun hasNext() = size > 0
+
+    override fun next(): List<String> {
+      if (size == 0) throw NoSuchElementException()
+      try {
+        val numberOfValues = input.readInt()
+        val row = ArrayList<String>(numberOfValues)
+        repeat(numberOfValues) {
+          val bytes = ByteArray(input.readInt())
+          input.readFully(bytes)
+          row.add(String(bytes, StandardCharsets.UTF_8))
+        }
+        size--
+        if (size == 0) input.close()
+        return row
+      } catch (e: IOException) {
+        throw UncheckedIOException(e)
+      }
+    }
+
+    override fun close() = input.close()
+  }
+
+  // слияние отсортированных серий [sources]: из равных строк первой
+  // берется строка серии с меньшим номером
+  private inner class Merge(sources: List<Iterator<List<String>>>): Iterator<List<String>> {
+    private inner class Head(val number: Int, val source: Iterator<List<String>>) {
+      var row: List<String> = source.next()
+    }
+
+    private val queue = PriorityQueue<Head>(sources.size, Comparator { a, b ->
+      val byRow = comparator.compare(a.row, b.row)
+      if (byRow != 0) byRow else Integer.compare(a.number, b.number)
+    })
+
+    init {
+      sources.forEachIndexed { i, source -> if (source.hasNext()) queue.add(Head(i, source)) }
+    }
+
+    override fun hasNext() = queue.isNotEmpty()
+
+    override fun next(): List<String> {
+      val head = queue.poll() ?: throw NoSuchElementException()
+      val row = head.row
+      if (head.source.hasNext()) {
+        head.row = head.source.next()
+        queue.add(head)
+      }
+      if (queue.isEmpty()) { // все строки перебраны
+        try {
+          close()
+        } catch (e: IOException) {
+          throw UncheckedIOException(e)
+        }
+      }
+      return row
+    }
+  }
+
+  companion object {
+    private const val sizeOfBuffer = 1 shl 16
+
+    /**
+     * Оценка сверху размера строки [row] в памяти (в байтах): список
+     * ссылок и строки Java по два байта на символ
+     */
+    fun sizeOf(row: List<String>): Long {
+      var size = 16L + 4L * row.size
+      row.forEach { size += sizeOfString(it) }
+      return size
+    }
+
+    /** Оценка сверху размера строки Java [value] в памяти (в байтах) */
+    fun sizeOfString(value: String) = 40L + 2L * value.length
+  }
+}
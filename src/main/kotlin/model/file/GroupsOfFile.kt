@@ -0,0 +1,204 @@
+package model.file
+
+import model.utils.GroupedTable
+import model.utils.Groups
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.Path
+
+/**
+ * Строки файла Micromine [file] после заголовка, сгруппированные по
+ * значению с номером [indexOfKey] (идентификатор скважины), - для
+ * файлов, которые не помещаются в память. Файл читается дважды: при
+ * первом чтении собираются только ключи, при втором каждая строка
+ * преобразуется функцией [row] (в памяти и во временных файлах
+ * хранятся только нужные задаче атрибуты) и строки сортируются
+ * внешней сортировкой ([ExternalSort], не больше [memoryForSort] байтов
+ * в памяти) по номеру ключа в порядке [keysInHashOrder] (строки группы
+ * остаются в порядке файла). Группы затем читаются из отсортированного
+ * потока методом [get].
+ * Группы нужно запрашивать в порядке [keysInHashOrder]; каждая группа
+ * возвращается один раз. Группы, прочитанные из потока раньше, чем
+ * запрошены (например, при вычислениях в нескольких потоках), хранятся
+ * в памяти до запроса - но не больше [memoryForGroups] байтов, иначе
+ * [get] выбрасывает IllegalStateException. Поэтому в памяти находятся
+ * ключи, запрошенная группа и не больше [memoryForGroups] байтов
+ * пропущенных групп.
+ * @throws IOException
+ */
+class GroupsOfFile private constructor(private val file: Path,
+                                       numberOfFields: IntRange,
+                                       private val indexOfKey: Int,
+                                       row: (List<String>) -> MutableMap<String, String>,
+                                       memoryForSort: Long,
+                                       private val memoryForGroups: Long):
+        Groups<MutableMap<String, String>> {
+  private val keys: Set<String?>
+  private val sort: ExternalSort
+  // строки в виде списков: ключ группы, затем пары "название, значение"
+  private val rows: Iterator<List<String>>
+  // первая строка следующей группы потока
+  private var next: List<String>? = null
+  // группы, прочитанные из потока раньше, чем запрошены, и их размер
+  private val groups = HashMap<String, List<MutableMap<String, String>>>()
+  private var sizeOfGroups = 0L
+  // названия атрибутов: строки, прочитанные из временных файлов,
+  // используют одни и те же объекты названий
+  private val names = HashMap<String, String>()
+
+  init {
+    // ключи в порядке первого появления в файле
+    val keysOfFile = LinkedHashSet<String>()
+    MicromineTextReader(file, numberOfFields).use {
+      it.nextLine() // заголовок
+      var last: String? = null
+      while (it.nextLine()) {
+        if (last == null || !it.fieldEquals(indexOfKey, last)) {
+          last = it.field(indexOfKey)
+          keysOfFile.add(last)
+        }
+      }
+    }
+    val keys = HashSet<String?>() // элементы добавляются по одному, как в GroupedTable
+    keys.addAll(keysOfFile)
+    this.keys = keys
+    val numbers = HashMap<String?, Int>()
+    keys.forEach { numbers[it] = numbers.size }
+    sort = ExternalSort(Comparator { a, b ->
+      Integer.compare(numbers[a[0]]!!, numbers[b[0]]!!)
+    }, memoryForSort)
+    MicromineTextReader(file, numberOfFields).use {
+      it.nextLine() // заголовок
+      while (it.nextLine()) {
+        val projection = row(it.currentLine)
+        val values = ArrayList<String>(1 + 2 * projection.size)
+        values.add(it.field(indexOfKey))
+        projection.forEach { (name, value) ->
+          values.add(name)
+          values.add(value)
+        }
+        // названия атрибутов - общие для всех строк, их размер не учитывается
+        sort.add(values, 16L + 4L * values.size + sizeOf(projection))
+      }
+    }
+    rows = sort.sorted()
+  }
+
+  override val numberOfRows get() = sort.size
+
+  override fun keysInHashOrder(): Set<String?> = keys
+
+  @Synchronized
+  override operator fun get(key: String?): List<MutableMap<String, String>> {
+    groups.remove(key)?.let {
+      sizeOfGroups -= it.fold(0L) { size, row -> size + sizeOf(row) }
+      return it
+    }
+    while (true) {
+      val first = next ?: (if (rows.hasNext()) rows.next() else return emptyList())
+      val keyOfGroup = first[0]
+      val group = arrayListOf(toRow(first))
+      var sizeOfGroup = sizeOf(group[0])
+      next = null
+      while (rows.hasNext()) {
+        val current = rows.next()
+        if (current[0] != keyOfGroup) {
+          next = current
+          break
+        }
+        val row = toRow(current)
+        group.add(row)
+        sizeOfGroup += sizeOf(row)
+      }
+      if (keyOfGroup == key) return group
+      sizeOfGroups += sizeOfGroup
+      if (sizeOfGroups > memoryForGroups) {
+        throw IllegalStateException("Скважины файла ${file.fileName} запрашиваются " +
+                "не по порядку: пропущенные скважины не помещаются в память")
+      }
+      groups[keyOfGroup] = group
+    }
+  }
+
+  /** Удалить временные файлы сортировки */
+  @Throws(IOException::class)
+  override fun close() = sort.close()
+
+  // строка таблицы из списка значений: пары добавляются в HashMap в
+  // том же порядке, поэтому порядок перебора атрибутов не изменяется
+  private fun toRow(values: List<String>): MutableMap<String, String> {
+    val row = HashMap<String, String>()
+    for (i in 1 until values.size step 2) {
+      val name = values[i]
+      row[names.getOrPut(name) { name }] = values[i + 1]
+    }
+    return row
+  }
+
+  companion object {
+    // количество строк, по которым оценивается размер таблицы в памяти
+    private const val sizeOfSample = 1000
+    private val maxMemory = Runtime.getRuntime().maxMemory()
+
+    /**
+     * Строки файла Micromine [file] после заголовка, преобразованные
+     * функцией [row] и сгруппированные по значению с номером
+     * [indexOfKey] (название этого значения в заголовке должно быть
+     * ключом строк, возвращаемых [row]). Для заголовка вызывается
+     * [title]. Размер таблицы в памяти оценивается по первым строкам
+     * файла: если он не больше [memoryForTable] байтов, файл читается в
+     * память (см. [MicromineTextReader.readInParallel]) и группируется
+     * в [GroupedTable], иначе строки группируются в [GroupsOfFile]
+     * (параметры [memoryForSort] и [memoryForGroups] - см. этот класс).
+     * Количество значений в каждой строке должно входить в диапазон
+     * [numberOfFields].
+     * @throws IOException
+     */
+    @Throws(IOException::class)
+    fun read(file: Path, numberOfFields: IntRange, indexOfKey: Int,
+             title: (List<String>) -> Unit,
+             memoryForTable: Long = maxMemory / 4,
+             memoryForSort: Long = Math.min(1L shl 26, maxMemory / 16),
+             memoryForGroups: Long = maxMemory / 8,
+             row: (List<String>) -> MutableMap<String, String>):
+            Groups<MutableMap<String, String>> {
+      var nameOfKey = ""
+      var sizeOfTable = 0L
+      MicromineTextReader(file, numberOfFields).use {
+        if (!it.nextLine()) return GroupedTable(emptyList(), nameOfKey)
+        val fields = it.fields()
+        nameOfKey = fields[indexOfKey]
+        title(fields)
+        // оценить размер таблицы по первым строкам
+        var startOfLines = -1L
+        var numberOfLines = 0
+        var sizeOfLines = 0L
+        while (numberOfLines < sizeOfSample && it.nextLine()) {
+          if (startOfLines < 0) startOfLines = it.offsetOfLine
+          sizeOfLines += sizeOf(row(it.currentLine))
+          numberOfLines++
+        }
+        sizeOfTable = if (numberOfLines == sizeOfSample && it.nextLine()) {
+          val bytesOfSample = it.offsetOfLine - startOfLines
+          (Files.size(file) - startOfLines) * sizeOfLines / bytesOfSample
+        } else sizeOfLines // прочитаны все строки
+      }
+      if (sizeOfTable > memoryForTable) {
+        return GroupsOfFile(file, numberOfFields, indexOfKey, row, memoryForSort, memoryForGroups)
+      }
+      val rows = MicromineTextReader.readInParallel(file, numberOfFields, title = {}) {
+        row(it.currentLine)
+      }
+      return GroupedTable(rows, nameOfKey)
+    }
+
+    // оценка сверху размера строки таблицы [row] в памяти (в байтах):
+    // HashMap и значения атрибутов (названия атрибутов - общие для всех
+    // строк таблицы)
+    private fun sizeOf(row: Map<String, String>): Long {
+      var size = 64L + 8L * row.size // объект и массив корзин
+      row.values.forEach { size += 32L + ExternalSort.sizeOfString(it) }
+      return size
+    }
+  }
+}
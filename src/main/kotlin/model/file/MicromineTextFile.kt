@@ -3,24 +3,39 @@ package model.file
 import model.constants.CommonConstants.nameOfAttributeDepth
 import model.constants.IsihogyClientConstants.nameOfAttributeX
 import model.constants.IsihogyClientConstants.nameOfAttributeY
-import java.io.BufferedWriter
+import model.utils.Row
+import java.io.Closeable
 import java.io.IOException
-import java.io.PrintWriter
-import java.nio.charset.Charset
+import java.io.InterruptedIOException
+import java.nio.channels.FileChannel
 import java.nio.file.Files
 import java.nio.file.Path
 import java.nio.file.StandardOpenOption
-import java.util.*
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
 
 /**
  * Тестовый файл Micromine, который затем может быть преобразован в
- * файл *.DAT с помощью функции импорта в Micromine
+ * файл *.DAT с помощью функции импорта в Micromine. Файл остается
+ * открытым для записи между вызовами методов (с одним буфером), после
+ * каждого вызова данные сбрасываются на диск. По окончании работы файл
+ * нужно закрыть методом [close]; если после этого снова вызвать методы
+ * записи, файл будет открыт повторно для дозаписи.
+ * После вызова [startWriteBehind] записываемые данные передаются в
+ * очередь и записываются на диск отдельным потоком, а вызывающий поток
+ * не ждет окончания записи.
  * @throws IOException
  */
 class MicromineTextFile @Throws(IOException::class)
 
-constructor(val file: Path) {
+constructor(val file: Path): Closeable {
   private lateinit var title: List<String>
+  // набор названий атрибутов заголовка (null, если в заголовке есть повторы)
+  private var titleAsSet: Set<String>? = null
+  private var writer: Windows1251Writer? = null
+  // поток отложенной записи (null - запись выполняется в вызывающем потоке)
+  private var writeBehind: WriteBehind? = null
 
   init {
     Files.deleteIfExists(file)
@@ -39,13 +54,12 @@ constructor(val file: Path) {
       throw IOException("Список атрибутов для записи в файл пуст")
     }
 
-    this.title = title
-    val bw: BufferedWriter = Files.newBufferedWriter(file,
-              Charset.forName("Windows-1251"),
-              StandardOpenOption.WRITE,
-              StandardOpenOption.APPEND)
-    PrintWriter(bw).use { out -> // try с ресурсами
-      val namesOfAttributes = title.iterator()
+    val currentTitle = ArrayList(title)
+    this.title = currentTitle
+    val set = HashSet(title)
+    titleAsSet = if (set.size == title.size) set else null
+    write { out ->
+      val namesOfAttributes = currentTitle.iterator()
       while (namesOfAttributes.hasNext()) {
         var name = namesOfAttributes.next()
         when (name) {
@@ -57,12 +71,11 @@ constructor(val file: Path) {
             if (name.contains(";")) name = name.replace(";", "_")
           }
         }
-        out.print(name)
-        if (namesOfAttributes.hasNext()) out.print(";")
+        out.write(name)
+        if (namesOfAttributes.hasNext()) out.write(';'.toInt())
       }
-      out.println()
+      out.newLine()
     }
-    bw.close()
   }
 
   /**
@@ -77,39 +90,28 @@ constructor(val file: Path) {
   @Throws(IOException::class)
   fun writeContent(rows: List<Map<String, String>>) {
     checkData(rows)
-
-    val bw: BufferedWriter = Files.newBufferedWriter(file,
-              Charset.forName("Windows-1251"),
-              StandardOpenOption.WRITE,
-              StandardOpenOption.APPEND)
-
-    PrintWriter(bw).use { out -> // try с ресурсами
-      rows.forEach { row ->
-        val namesOfAttributes = title.iterator()
-        while (namesOfAttributes.hasNext()) {
-          val currentName = namesOfAttributes.next()
-          var value = row[currentName]
-          value = value!!.replace(";", ", ")
-          value = value.replace("\n", "_")
-          out.print(value)
-          if (namesOfAttributes.hasNext()) out.print(";")
+    val title = title
+    val batch = batchOf(rows)
+    write { out ->
+      val columns = columnsOf(title)
+      batch.forEach { row ->
+        for (i in title.indices) {
+          if (i > 0) out.write(';'.toInt())
+          writeValue(out, columns[i][row]!!)
         }
-        out.println()
+        out.newLine()
       }
     }
-    bw.close()
   }
 
   @Throws(IOException::class)
   private fun checkData(rows: List<Map<String, String>>) {
     if (rows.isEmpty()) throw IOException("Нет данных для записи в файл")
-    val title2 = ArrayList(title)
-    val keysRow: List<String> = ArrayList(rows[0].keys)
-    // отсортировать коллекции, чтобы порядок следования элементов
-    // не влиял на сравнение коллекций
-    Collections.sort(title2)
-    Collections.sort(keysRow)
-    if (keysRow != title2) {
+    // набор ключей первой строки должен совпадать с заголовком
+    val keysRow = rows[0].keys
+    val titleAsSet = titleAsSet
+    if (titleAsSet == null || keysRow.size != titleAsSet.size
+            || !titleAsSet.containsAll(keysRow)) {
       throw IOException("Количество атрибутов в заголовке файла не совпадает" +
               " с количеством записываемых атрибутивных полей")
     }
@@ -132,30 +134,222 @@ constructor(val file: Path) {
    */
   @Throws(IOException::class)
   fun writeContentWithoutSomeKeys(rows: List<Map<String, String>>) {
-    val bw: BufferedWriter = Files.newBufferedWriter(file,
-            Charset.forName("Windows-1251"),
-            StandardOpenOption.WRITE,
-            StandardOpenOption.APPEND)
-
-    PrintWriter(bw).use { out -> // try с ресурсами
-      rows.forEach { row ->
-        val namesOfAttributes = title.iterator()
-        while (namesOfAttributes.hasNext()) {
-          val currentName = namesOfAttributes.next()
-          var value: String?
-          if (row.containsKey(currentName)) {
-            value = row[currentName]
-            value = value!!.replace(";", ", ")
-            value = value.replace("\n", "_")
-          } else {
-            value = "0"
+    val title = title
+    val batch = batchOf(rows)
+    write { out ->
+      val columns = columnsOf(title)
+      batch.forEach { row ->
+        for (i in title.indices) {
+          if (i > 0) out.write(';'.toInt())
+          val value = columns[i][row]
+          if (value != null) writeValue(out, value) else out.write("0")
+        }
+        out.newLine()
+      }
+    }
+  }
+
+  /**
+   * Включает отложенную запись: данные, передаваемые методам записи,
+   * помещаются в очередь (не более [capacity] порций), из которой их
+   * записывает на диск отдельный поток. Если очередь заполнена, вызывающий
+   * поток ждет. Ошибка записи выбрасывается при следующем вызове методов
+   * записи, а также методами [awaitWriting] и [close]. Строки, переданные
+   * для записи, нельзя изменять до окончания записи.
+   */
+  fun startWriteBehind(capacity: Int = capacityOfQueue) {
+    if (writeBehind == null) writeBehind = WriteBehind(capacity)
+  }
+
+  /**
+   * Ждет, пока поток отложенной записи запишет на диск все переданные
+   * данные. Если при записи произошла ошибка, выбрасывает ее.
+   * @throws IOException
+   */
+  @Throws(IOException::class)
+  fun awaitWriting() {
+    writeBehind?.await()
+  }
+
+  /**
+   * Закрыть файл. Если включена отложенная запись, предварительно
+   * дожидается записи всех данных из очереди.
+   * @throws IOException
+   */
+  @Throws(IOException::class)
+  override fun close() {
+    val currentWriteBehind = writeBehind
+    writeBehind = null
+    try {
+      currentWriteBehind?.stop()
+    } finally {
+      val out = writer
+      if (out != null) {
+        writer = null
+        out.close()
+      }
+    }
+  }
+
+  // при отложенной записи в очередь передается копия списка строк,
+  // чтобы вызывающий код мог дальше использовать свой список
+  // столбцы заголовка: для строк со схемой (Row) номера столбцов
+  // определяются один раз для схемы, а не по названию для каждой ячейки
+  private fun columnsOf(title: List<String>) = title.map { Row.Column(it) }
+
+  private fun batchOf(rows: List<Map<String, String>>) =
+          if (writeBehind == null) rows else ArrayList(rows)
+
+  // выполнить запись [block] в открытый файл и сбросить буфер на диск
+  // (в том числе при ошибке - как при закрытии файла после записи).
+  // При отложенной записи [block] передается в очередь, а буфер
+  // сбрасывается при ожидании окончания записи и при закрытии файла
+  @Throws(IOException::class)
+  private fun write(block: (Windows1251Writer) -> Unit) {
+    val currentWriteBehind = writeBehind
+    if (currentWriteBehind != null) {
+      currentWriteBehind.put { block(writer ?: open()) }
+      return
+    }
+    val out = writer ?: open()
+    try {
+      block(out)
+    } finally {
+      out.flush()
+    }
+  }
+
+  @Throws(IOException::class)
+  private fun open(): Windows1251Writer {
+    val out = Windows1251Writer(FileChannel.open(file,
+            StandardOpenOption.WRITE, StandardOpenOption.APPEND), sizeOfBuffer)
+    writer = out
+    return out
+  }
+
+  // записать значение атрибута: символ ";" заменяется на ", ", перевод
+  // строки - на "_". Строка просматривается один раз; если заменять
+  // нечего, она записывается целиком
+  private fun writeValue(out: Windows1251Writer, value: String) {
+    var start = 0
+    for (i in 0 until value.length) {
+      val c = value[i]
+      if (c == ';' || c == '\n') {
+        if (i > start) out.write(value, start, i - start)
+        out.write(if (c == ';') ", " else "_")
+        start = i + 1
+      }
+    }
+    if (start == 0) out.write(value)
+    else if (start < value.length) out.write(value, start, value.length - start)
+  }
+
+  // очередь порций данных и поток, который записывает их в файл
+  private inner class WriteBehind(capacity: Int) {
+    private val queue = ArrayBlockingQueue<() -> Unit>(capacity)
+    private val thread = Thread({ writeAll() }, "write-behind: ${file.fileName}")
+    // первая ошибка записи; после нее данные из очереди не записываются
+    @Volatile private var error: IOException? = null
+
+    init {
+      thread.isDaemon = true
+      thread.start()
+    }
+
+    private fun writeAll() {
+      while (true) {
+        val portion = queue.take()
+        if (portion === endOfQueue) return
+        if (error != null && portion !is Flush) continue
+        try {
+          portion()
+        } catch (e: IOException) {
+          error = e
+        } catch (e: Throwable) {
+          // любая другая ошибка (в том числе Error) не должна завершать
+          // поток молча: иначе ожидающие его потоки не дождутся записи
+          error = IOException(e.message, e)
+        }
+      }
+    }
+
+    @Throws(IOException::class)
+    fun put(portion: () -> Unit) {
+      error?.let { throw it }
+      try {
+        while (!queue.offer(portion, timeOfWaiting, TimeUnit.MILLISECONDS)) {
+          checkAlive()
+        }
+      } catch (e: InterruptedException) {
+        Thread.currentThread().interrupt()
+        throw InterruptedIOException("Запись в файл ${file.fileName} прервана")
+      }
+    }
+
+    @Throws(IOException::class)
+    fun await() {
+      val flush = Flush()
+      put(flush)
+      try {
+        while (!flush.done.await(timeOfWaiting, TimeUnit.MILLISECONDS)) {
+          checkAlive()
+        }
+      } catch (e: InterruptedException) {
+        Thread.currentThread().interrupt()
+        throw InterruptedIOException("Запись в файл ${file.fileName} прервана")
+      }
+      error?.let { throw it }
+    }
+
+    // если поток записи завершился, ждать его больше нельзя
+    @Throws(IOException::class)
+    private fun checkAlive() {
+      if (thread.isAlive) return
+      error?.let { throw it }
+      throw IOException("Поток записи в файл ${file.fileName} остановлен")
+    }
+
+    @Throws(IOException::class)
+    fun stop() {
+      try {
+        await()
+      } finally {
+        // после ожидания очередь пуста; если ожидание прервано или
+        // запись завершилась ошибкой, оставшиеся данные не записываются
+        queue.clear()
+        queue.offer(endOfQueue)
+        var interrupted = false
+        while (thread.isAlive) {
+          try {
+            thread.join()
+          } catch (e: InterruptedException) {
+            interrupted = true
           }
-          out.print(value)
-          if (namesOfAttributes.hasNext()) out.print(";")
         }
-        out.println()
+        if (interrupted) Thread.currentThread().interrupt()
       }
     }
-    bw.close()
   }
-}
\ No newline at end of file
+
+  // порция очереди, которая сбрасывает буфер на диск и сообщает
+  // ожидающему потоку об окончании записи
+  private inner class Flush: () -> Unit {
+    val done = CountDownLatch(1)
+
+    override fun invoke() {
+      try {
+        writer?.flush()
+      } finally {
+        done.countDown()
+      }
+    }
+  }
+
+  companion object {
+    private const val capacityOfQueue = 8
+    // интервал проверки потока записи при ожидании (мс)
+    private const val timeOfWaiting = 100L
+    private val endOfQueue: () -> Unit = {}
+    private const val sizeOfBuffer = 1 shl 16
+  }
+}
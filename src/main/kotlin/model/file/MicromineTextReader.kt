@@ -0,0 +1,380 @@
+package model.file
+
+import java.io.Closeable
+import java.io.IOException
+import java.io.InterruptedIOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+
+/**
+ * Построчное чтение текстового файла Micromine (кодировка Windows-1251,
+ * см. [Windows1251], значения атрибутов разделены символом ";"). Строка не преобразуется
+ * в строку Java целиком: в буфере байтов находятся только границы
+ * значений, а строки создаются лишь для тех значений, которые
+ * запрашиваются методами [field] и [currentLine]. Количество значений
+ * в каждой строке (в том числе в заголовке) должно входить в диапазон
+ * [numberOfFields], иначе выбрасывается IOException.
+ * Строки разделяются так же, как в BufferedReader.readLine():
+ * символами "\n", "\r" или "\r\n". Для каждой строки известно ее
+ * смещение в файле ([offsetOfLine]), по которому к ней можно вернуться
+ * методом [seek]. Большие файлы можно читать по частям в нескольких
+ * потоках - см. [readInParallel].
+ * @throws IOException
+ */
+class MicromineTextReader private constructor(val file: Path,
+                                              var numberOfFields: IntRange,
+                                              private val channel: FileChannel?,
+                                              // часть файла, прочитанная в память
+                                              private val region: ByteBuffer?,
+                                              private val offsetOfRegion: Long): Closeable {
+  @Throws(IOException::class)
+  constructor(file: Path, numberOfFields: IntRange = 1..Int.MAX_VALUE):
+          this(file, numberOfFields, FileChannel.open(file, StandardOpenOption.READ), null, 0L)
+
+  private var buffer = ByteArray(sizeOfBuffer)
+  // смещение в файле первого байта буфера
+  private var offsetOfBuffer = offsetOfRegion
+  // прочитанные, но еще не разобранные байты буфера: [position, limit)
+  private var position = 0
+  private var limit = 0
+  private var endOfFile = false
+  // предыдущая строка закончилась символом "\r" - пропустить "\n"
+  private var skipLF = false
+  // начала значений текущей строки; в элементе с индексом
+  // [numberOfFieldsInLine] - позиция за концом последнего значения + 1
+  private var starts = IntArray(64)
+
+  /** Количество значений в текущей строке */
+  var numberOfFieldsInLine = 0
+    private set
+
+  /**
+   * Номер текущей строки файла (начиная с 1, после [seek] - с 0). При
+   * чтении методом [readInParallel] - номер строки в части файла
+   */
+  var numberOfLine = 0
+    private set
+
+  /** Смещение текущей строки в файле (в байтах) */
+  var offsetOfLine = 0L
+    private set
+
+  /**
+   * Текущая строка в виде списка значений. Значение преобразуется в
+   * строку только при обращении к нему. Список действителен до
+   * следующего вызова [nextLine].
+   */
+  val currentLine: List<String> = object: AbstractList<String>() {
+    override val size get() = numberOfFieldsInLine
+    override fun get(index: Int) = field(index)
+  }
+
+  /**
+   * Переходит к следующей строке файла. Возвращает false, если
+   * строк больше нет.
+   * @throws IOException
+   */
+  @Throws(IOException::class)
+  fun nextLine(): Boolean {
+    if (skipLF) {
+      if (position == limit) fill()
+      if (position < limit && buffer[position] == LF) position++
+      skipLF = false
+    }
+    var end = findEndOfLine(position)
+    while (end < 0) {
+      val scanned = limit - position
+      if (!fill()) break
+      end = findEndOfLine(position + scanned)
+    }
+    if (end < 0) {
+      if (position == limit) return false
+      end = limit // последняя строка без перевода строки
+    }
+    splitLine(position, end)
+    offsetOfLine = offsetOfBuffer + position
+    numberOfLine++
+    if (end < limit) {
+      skipLF = buffer[end] == CR
+      position = end + 1
+    } else position = end
+    if (numberOfFieldsInLine !in numberOfFields) {
+      throw FormatException(file, numberOfFields, numberOfLine, numberOfFieldsInLine)
+    }
+    return true
+  }
+
+  /** Значение с индексом [index] из текущей строки */
+  fun field(index: Int): String {
+    if (index !in 0 until numberOfFieldsInLine) {
+      throw IndexOutOfBoundsException("Index: $index, Size: $numberOfFieldsInLine")
+    }
+    val start = starts[index]
+    return Windows1251.decode(buffer, start, starts[index + 1] - 1 - start)
+  }
+
+  /**
+   * Совпадает ли значение с индексом [index] из текущей строки со
+   * строкой [value]. Значение при этом не преобразуется в строку.
+   */
+  fun fieldEquals(index: Int, value: String): Boolean {
+    if (index !in 0 until numberOfFieldsInLine) return false
+    val start = starts[index]
+    if (starts[index + 1] - 1 - start != value.length) return false
+    for (i in 0 until value.length) {
+      if (Windows1251.decode(buffer[start + i]) != value[i]) return false
+    }
+    return true
+  }
+
+  /** Все значения текущей строки */
+  fun fields(): List<String> = List(numberOfFieldsInLine) { field(it) }
+
+  /**
+   * Переходит к строке, которая начинается со смещения [offset] в файле
+   * (см. [offsetOfLine]); строка читается следующим вызовом [nextLine].
+   * Если строка уже находится в буфере, файл повторно не читается.
+   * @throws IOException
+   */
+  @Throws(IOException::class)
+  fun seek(offset: Long) {
+    if (offset >= offsetOfBuffer && offset <= offsetOfBuffer + limit) {
+      position = (offset - offsetOfBuffer).toInt()
+    } else {
+      if (channel != null) channel.position(offset)
+      else region!!.position((offset - offsetOfRegion).toInt())
+      offsetOfBuffer = offset
+      position = 0
+      limit = 0
+      endOfFile = false
+    }
+    skipLF = false
+    numberOfLine = 0
+  }
+
+  override fun close() {
+    channel?.close()
+  }
+
+  // позиция первого символа перевода строки, начиная с [from] (или -1)
+  private fun findEndOfLine(from: Int): Int {
+    for (i in from until limit) {
+      val b = buffer[i]
+      if (b == LF || b == CR) return i
+    }
+    return -1
+  }
+
+  // найти начала значений строки [start, end)
+  private fun splitLine(start: Int, end: Int) {
+    var count = 0
+    starts[count++] = start
+    for (i in start until end) {
+      if (buffer[i] == SEMICOLON) {
+        if (count == starts.size - 1) starts = starts.copyOf(starts.size * 2)
+        starts[count++] = i + 1
+      }
+    }
+    starts[count] = end + 1
+    numberOfFieldsInLine = count
+  }
+
+  // дочитать файл в буфер, сохранив неразобранные байты. Если строка не
+  // помещается в буфер, буфер увеличивается. Возвращает false в конце файла
+  @Throws(IOException::class)
+  private fun fill(): Boolean {
+    if (endOfFile) return false
+    if (position > 0) {
+      System.arraycopy(buffer, position, buffer, 0, limit - position)
+      offsetOfBuffer += position
+      limit -= position
+      position = 0
+    }
+    if (limit == buffer.size) buffer = buffer.copyOf(buffer.size * 2)
+    var n = 0
+    if (region != null) {
+      n = Math.min(region.remaining(), buffer.size - limit)
+      if (n == 0) n = -1 else region.get(buffer, limit, n)
+    } else {
+      while (n == 0) n = channel!!.read(ByteBuffer.wrap(buffer, limit, buffer.size - limit))
+    }
+    if (n < 0) {
+      endOfFile = true
+      return false
+    }
+    limit += n
+    return true
+  }
+
+  // количество значений в строке [numberOfLine] не входит в диапазон [numberOfFields]
+  private class FormatException(val file: Path, val numberOfFields: IntRange,
+                                val numberOfLine: Int, val numberOfFieldsInLine: Int):
+          IOException("Неверный формат файла ${file.fileName}: в строке " +
+                  "$numberOfLine значений $numberOfFieldsInLine, а должно быть " +
+                  if (numberOfFields.first == numberOfFields.last) "${numberOfFields.first}"
+                  else "от ${numberOfFields.first} до ${numberOfFields.last}") {
+    // та же ошибка в части файла, перед которой [lines] строк
+    fun after(lines: Int) = FormatException(file, numberOfFields,
+            numberOfLine + lines, numberOfFieldsInLine)
+  }
+
+  // строки части файла и их количество
+  private class Chunk<T>(val lines: List<T>, val numberOfLines: Int)
+
+  companion object {
+    private const val sizeOfBuffer = 1 shl 16
+    private const val sizeOfChunk = 1 shl 23
+    private const val LF = '\n'.toByte()
+    private const val CR = '\r'.toByte()
+    private const val SEMICOLON = ';'.toByte()
+
+    /**
+     * Читает файл [file] по частям в нескольких потоках. Для заголовка
+     * (первой строки) в текущем потоке вызывается [title], затем для
+     * каждой следующей строки вызывается [line]. Строки после заголовка
+     * делятся на части примерно по [sizeOfChunk] байтов (границы частей
+     * совпадают с концами строк); каждая часть читается в память
+     * позиционным чтением FileChannel и разбирается в отдельном потоке.
+     * Файл не отображается в память (FileChannel.map): отображение
+     * освобождается только сборщиком мусора, и до этого в Windows файл
+     * нельзя удалить или перезаписать. Результаты
+     * [line] возвращаются в порядке строк файла. Поэтому [line] может
+     * вызываться одновременно из разных потоков для разных строк.
+     * Файл, в котором строки после заголовка помещаются в одну часть,
+     * читается в текущем потоке. Количество значений в строках
+     * проверяется так же, как при построчном чтении.
+     * @throws IOException
+     */
+    @Throws(IOException::class)
+    fun <T> readInParallel(file: Path, numberOfFields: IntRange = 1..Int.MAX_VALUE,
+                           sizeOfChunk: Int = Companion.sizeOfChunk,
+                           title: (MicromineTextReader) -> Unit,
+                           line: (MicromineTextReader) -> T): List<T> {
+      val header = MicromineTextReader(file, numberOfFields)
+      val startOfLines: Long
+      val size: Long
+      try {
+        if (!header.nextLine()) return emptyList()
+        title(header)
+        if (!header.nextLine()) return emptyList()
+        startOfLines = header.offsetOfLine
+        size = header.channel!!.size()
+        if (size - startOfLines <= sizeOfChunk) {
+          val lines = ArrayList<T>()
+          do lines.add(line(header)) while (header.nextLine())
+          return lines
+        }
+      } finally {
+        header.close()
+      }
+      FileChannel.open(file, StandardOpenOption.READ).use { channel ->
+        val bounds = boundsOfChunks(channel, startOfLines, size, sizeOfChunk)
+        val numberOfThreads = Math.max(1, Math.min(bounds.size - 1,
+                Runtime.getRuntime().availableProcessors()))
+        val executor = Executors.newFixedThreadPool(numberOfThreads) { runnable ->
+          val thread = Thread(runnable, "read-file")
+          thread.isDaemon = true
+          thread
+        }
+        try {
+          val chunks = ArrayList<Future<Chunk<T>>>(bounds.size - 1)
+          for (i in 0 until bounds.size - 1) {
+            chunks.add(executor.submit(Callable {
+              val region = readRegion(channel, bounds[i], bounds[i + 1])
+              val lines = ArrayList<T>()
+              val reader = MicromineTextReader(file, numberOfFields, null, region, bounds[i])
+              while (reader.nextLine()) lines.add(line(reader))
+              Chunk(lines, reader.numberOfLine)
+            }))
+          }
+          val lines = ArrayList<T>()
+          var numberOfLines = 1 // заголовок
+          for (chunk in chunks) {
+            val result = try {
+              chunk.get()
+            } catch (e: ExecutionException) {
+              val cause = e.cause
+              when (cause) {
+                is FormatException -> throw cause.after(numberOfLines)
+                is IOException -> throw cause
+                is RuntimeException -> throw cause
+                is Error -> throw cause
+                else -> throw IOException(cause)
+              }
+            } catch (e: InterruptedException) {
+              Thread.currentThread().interrupt()
+              throw InterruptedIOException("Чтение файла ${file.fileName} прервано")
+            }
+            lines.addAll(result.lines)
+            numberOfLines += result.numberOfLines
+          }
+          return lines
+        } finally {
+          executor.shutdownNow()
+        }
+      }
+    }
+
+    // байты канала [channel] с [start] до [end]; позиционное чтение
+    // не меняет позицию канала, поэтому канал читается из нескольких
+    // потоков одновременно
+    @Throws(IOException::class)
+    private fun readRegion(channel: FileChannel, start: Long, end: Long): ByteBuffer {
+      val region = ByteBuffer.allocate((end - start).toInt())
+      while (region.hasRemaining()) {
+        val n = channel.read(region, start + region.position())
+        if (n < 0) throw IOException("Файл изменился во время чтения")
+      }
+      region.flip()
+      return region
+    }
+
+    // границы частей файла размером [size] со строками, которые начинаются
+    // со смещения [start]: каждая граница (кроме последней, равной
+    // [size]) - начало строки, следующей за [sizeOfChunk] байтов от
+    // предыдущей границы
+    @Throws(IOException::class)
+    private fun boundsOfChunks(channel: FileChannel, start: Long, size: Long,
+                               sizeOfChunk: Int): List<Long> {
+      val bounds = arrayListOf(start)
+      val window = ByteBuffer.allocate(1 shl 12)
+      var position = start + sizeOfChunk
+      search@ while (position < size) {
+        // найти конец строки, начиная с [position]
+        while (true) {
+          window.clear()
+          val n = channel.read(window, position)
+          if (n <= 0) break@search
+          var i = 0
+          while (i < n && window[i] != LF && window[i] != CR) i++
+          if (i == n) {
+            position += n
+            continue
+          }
+          position += i + 1
+          // "\r\n" - граница после "\n"
+          if (window[i] == CR) {
+            if (i + 1 < n) {
+              if (window[i + 1] == LF) position++
+            } else {
+              window.clear()
+              if (channel.read(window, position) > 0 && window[0] == LF) position++
+            }
+          }
+          break
+        }
+        if (position >= size) break
+        bounds.add(position)
+        position += sizeOfChunk
+      }
+      bounds.add(size)
+      return bounds
+    }
+  }
+}
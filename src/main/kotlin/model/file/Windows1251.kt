@@ -0,0 +1,73 @@
+package model.file
+
+import java.nio.ByteBuffer
+import java.nio.charset.Charset
+import java.nio.charset.StandardCharsets
+
+/**
+ * Кодировка Windows-1251 текстовых файлов Micromine. Байты и символы
+ * преобразуются по таблицам, без CharsetDecoder и CharsetEncoder.
+ * Таблицы строятся по кодировке Windows-1251 из JDK, поэтому результат
+ * такой же: байт, которого нет в кодировке, читается как '�', а
+ * символ, которого нет в кодировке, записывается как "?" (как при
+ * CodingErrorAction.REPLACE). Символы ASCII (в том числе все символы
+ * числовых значений) в Windows-1251 совпадают с байтами, поэтому
+ * значения только из таких символов преобразуются без таблиц.
+ */
+object Windows1251 {
+  val charset: Charset = Charset.forName("Windows-1251")
+  private const val replacement = '?'.toByte()
+
+  // символы для каждого значения байта
+  private val decoding: CharArray = String(ByteArray(256) { it.toByte() }, charset).toCharArray()
+
+  // байты для каждого символа
+  private val encoding = ByteArray(1 shl 16) { replacement }.also {
+    for (b in decoding.indices) {
+      if (decoding[b] != '\uFFFD') it[decoding[b].toInt()] = b.toByte()
+    }
+  }
+
+  private val buffer = object: ThreadLocal<CharArray>() {
+    override fun initialValue() = CharArray(256)
+  }
+
+  /** Символ для байта [b] */
+  fun decode(b: Byte): Char = decoding[b.toInt() and 0xFF]
+
+  /** Строка из [length] байтов массива [bytes], начиная с [offset] */
+  fun decode(bytes: ByteArray, offset: Int, length: Int): String {
+    val end = offset + length
+    var i = offset
+    while (i < end && bytes[i] >= 0) i++
+    // только символы ASCII: байты совпадают с символами ISO-8859-1
+    if (i == end) return String(bytes, offset, length, StandardCharsets.ISO_8859_1)
+    var chars = buffer.get()
+    if (chars.size < length) chars = CharArray(length)
+    for (j in 0 until length) chars[j] = decoding[bytes[offset + j].toInt() and 0xFF]
+    return String(chars, 0, length)
+  }
+
+  /** Байт для символа [c] */
+  fun encode(c: Char): Byte = if (c < '\u0080') c.toByte() else encoding[c.toInt()]
+
+  /**
+   * Записать в буфер [target] символы [chars] с [start] до [end].
+   * Пара суррогатов (символа нет в кодировке) записывается одним "?".
+   * Возвращает номер первого незаписанного символа: если он меньше
+   * [end], буфер заполнен.
+   */
+  fun encode(chars: CharSequence, start: Int, end: Int, target: ByteBuffer): Int {
+    var i = start
+    while (i < end && target.hasRemaining()) {
+      val c = chars[i++]
+      if (c < '\u0080') {
+        target.put(c.toByte())
+      } else {
+        if (Character.isHighSurrogate(c) && i < end && Character.isLowSurrogate(chars[i])) i++
+        target.put(encoding[c.toInt()])
+      }
+    }
+    return i
+  }
+}
@@ -0,0 +1,69 @@
+package model.file
+
+import java.io.IOException
+import java.io.Writer
+import java.nio.ByteBuffer
+import java.nio.CharBuffer
+import java.nio.channels.WritableByteChannel
+
+/**
+ * Запись текста в канал [channel] в кодировке Windows-1251 (см.
+ * [Windows1251]). Символы кодируются прямо в буфер байтов размером
+ * [sizeOfBuffer], который записывается в канал при заполнении и при
+ * вызове [flush]. Заменяет BufferedWriter с OutputStreamWriter:
+ * строки разделяются так же, методом [newLine].
+ */
+class Windows1251Writer(private val channel: WritableByteChannel,
+                        sizeOfBuffer: Int): Writer() {
+  private val buffer = ByteBuffer.allocate(sizeOfBuffer)
+
+  @Throws(IOException::class)
+  override fun write(c: Int) {
+    if (!buffer.hasRemaining()) writeBuffer()
+    buffer.put(Windows1251.encode(c.toChar()))
+  }
+
+  @Throws(IOException::class)
+  override fun write(str: String) = write(str, 0, str.length)
+
+  @Throws(IOException::class)
+  override fun write(str: String, off: Int, len: Int) = encode(str, off, off + len)
+
+  @Throws(IOException::class)
+  override fun write(cbuf: CharArray, off: Int, len: Int) =
+          encode(CharBuffer.wrap(cbuf), off, off + len)
+
+  /** Записать разделитель строк */
+  @Throws(IOException::class)
+  fun newLine() = write(lineSeparator)
+
+  @Throws(IOException::class)
+  override fun flush() = writeBuffer()
+
+  @Throws(IOException::class)
+  override fun close() {
+    if (!channel.isOpen) return
+    channel.use { writeBuffer() }
+  }
+
+  @Throws(IOException::class)
+  private fun encode(chars: CharSequence, start: Int, end: Int) {
+    var i = Windows1251.encode(chars, start, end, buffer)
+    while (i < end) {
+      writeBuffer()
+      i = Windows1251.encode(chars, i, end, buffer)
+    }
+  }
+
+  // записать содержимое буфера в канал
+  @Throws(IOException::class)
+  private fun writeBuffer() {
+    buffer.flip()
+    while (buffer.hasRemaining()) channel.write(buffer)
+    buffer.clear()
+  }
+
+  companion object {
+    private val lineSeparator = System.lineSeparator()
+  }
+}
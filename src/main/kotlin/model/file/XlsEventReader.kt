@@ -0,0 +1,207 @@
+package model.file
+
+import org.apache.poi.hssf.eventusermodel.AbortableHSSFListener
+import org.apache.poi.hssf.eventusermodel.EventWorkbookBuilder.SheetRecordCollectingListener
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory
+import org.apache.poi.hssf.eventusermodel.HSSFListener
+import org.apache.poi.hssf.eventusermodel.HSSFRequest
+import org.apache.poi.hssf.eventusermodel.HSSFUserException
+import org.apache.poi.hssf.model.HSSFFormulaParser
+import org.apache.poi.hssf.record.BOFRecord
+import org.apache.poi.hssf.record.BlankRecord
+import org.apache.poi.hssf.record.BoolErrRecord
+import org.apache.poi.hssf.record.BoundSheetRecord
+import org.apache.poi.hssf.record.CellValueRecordInterface
+import org.apache.poi.hssf.record.DateWindow1904Record
+import org.apache.poi.hssf.record.EOFRecord
+import org.apache.poi.hssf.record.ExtendedFormatRecord
+import org.apache.poi.hssf.record.FormatRecord
+import org.apache.poi.hssf.record.FormulaRecord
+import org.apache.poi.hssf.record.LabelRecord
+import org.apache.poi.hssf.record.LabelSSTRecord
+import org.apache.poi.hssf.record.MulBlankRecord
+import org.apache.poi.hssf.record.NameRecord
+import org.apache.poi.hssf.record.NumberRecord
+import org.apache.poi.hssf.record.Record
+import org.apache.poi.hssf.record.RowRecord
+import org.apache.poi.hssf.record.SSTRecord
+import org.apache.poi.hssf.usermodel.HSSFWorkbook
+import org.apache.poi.poifs.filesystem.POIFSFileSystem
+import org.apache.poi.ss.formula.eval.ErrorEval
+import org.apache.poi.ss.usermodel.BuiltinFormats
+import org.apache.poi.ss.usermodel.DateUtil
+import org.apache.poi.util.LocaleUtil
+import java.io.Closeable
+import java.io.File
+import java.io.IOException
+import java.text.SimpleDateFormat
+import java.util.*
+
+/**
+ * Потоковое чтение листа xls-файла (событийная модель HSSF). Записи
+ * BIFF просматриваются один раз, строки листа по очереди передаются
+ * обработчику [RowConsumer], при этом объекты книги и листа (HSSFWorkbook,
+ * HSSFSheet) не создаются. Чтение прекращается, как только лист прочитан.
+ * Файл открывается только для чтения.
+ * @throws IOException
+ */
+class XlsEventReader @Throws(IOException::class)
+
+constructor(val file: File): Closeable {
+  private val fileSystem = POIFSFileSystem(file, true)
+
+  /** Названия листов книги (заполняются по мере чтения) */
+  val namesOfSheets: MutableList<String> = ArrayList()
+
+  /** Количество именованных диапазонов книги (заполняется по мере чтения) */
+  var numberOfNames = 0
+    private set
+
+  /**
+   * Последовательно передает строки листа с индексом [indexOfSheet]
+   * обработчику [consumer]. Строки, для которых в файле есть только
+   * запись строки без ячеек, передаются с пустым массивом ячеек - так же,
+   * как их возвращает объектная модель. Возвращает false, если в книге
+   * нет листа с таким индексом.
+   * @throws IOException
+   */
+  @Throws(IOException::class)
+  fun readSheet(indexOfSheet: Int, consumer: RowConsumer): Boolean {
+    namesOfSheets.clear()
+    numberOfNames = 0
+    val listener = SheetListener(indexOfSheet, consumer)
+    val request = HSSFRequest()
+    request.addListenerForAllRecords(listener)
+    try {
+      HSSFEventFactory().abortableProcessWorkbookEvents(request, fileSystem)
+    } catch (e: HSSFUserException) {
+      throw IOException("Ошибка чтения листа $indexOfSheet")
+    }
+    return listener.sheetIsFound
+  }
+
+  override fun close() = fileSystem.close()
+
+  // обработчик записей книги. Значения ячеек формируются так же, как
+  // это делает Cell.toString() объектной модели HSSF: для формул - текст
+  // формулы, для дат - дата в формате dd-MMM-yyyy, для логических
+  // значений - TRUE/FALSE, для пустых (но существующих) ячеек - "".
+  private inner class SheetListener(private val indexOfSheet: Int,
+                                    private val consumer: RowConsumer):
+          AbortableHSSFListener() {
+    var sheetIsFound = false
+    // записи общей части книги нужны для восстановления текста формул
+    private val workbookRecords = SheetRecordCollectingListener(HSSFListener { })
+    private var stubWorkbook: HSSFWorkbook? = null
+    private var sst: SSTRecord? = null
+    private val formats = HashMap<Int, String>()
+    private val formatsOfCells = ArrayList<Int>()
+    private var use1904windowing = false
+    private var depth = 0
+    private var currentSheet = -1
+    // строки, для которых прочитаны записи строк, но еще не прочитаны ячейки
+    private val rowsWithoutCells = TreeSet<Int>()
+    private val cells = HashMap<Int, String>()
+    private var currentRow = -1
+
+    override fun abortableProcessRecord(record: Record): Short {
+      if (record is BOFRecord) {
+        depth++
+        if (depth == 1 && record.type != BOFRecord.TYPE_WORKBOOK) currentSheet++
+        return 0
+      }
+      if (record is EOFRecord) {
+        depth--
+        if (depth == 0 && currentSheet == indexOfSheet) {
+          endOfSheet()
+          return 1 // лист прочитан, остальные записи не нужны
+        }
+        return 0
+      }
+      if (currentSheet < 0) {
+        processWorkbookRecord(record)
+      } else if (currentSheet == indexOfSheet && depth == 1) {
+        sheetIsFound = true
+        processSheetRecord(record)
+      }
+      return 0
+    }
+
+    private fun processWorkbookRecord(record: Record) {
+      workbookRecords.processRecordInternally(record)
+      when (record) {
+        is BoundSheetRecord -> namesOfSheets.add(record.sheetname)
+        is NameRecord -> numberOfNames++
+        is SSTRecord -> sst = record
+        is FormatRecord -> formats[record.indexCode] = record.formatString
+        is ExtendedFormatRecord -> formatsOfCells.add(record.formatIndex.toInt())
+        is DateWindow1904Record -> use1904windowing = record.windowing.toInt() == 1
+      }
+    }
+
+    private fun processSheetRecord(record: Record) {
+      when (record) {
+        is RowRecord -> if (record.rowNumber > currentRow) rowsWithoutCells.add(record.rowNumber)
+        is LabelSSTRecord -> putCell(record, sst?.getString(record.sstIndex)?.string ?: "")
+        is LabelRecord -> putCell(record.row, record.column.toInt(), record.value)
+        is NumberRecord -> putCell(record, valueOfNumericCell(record, record.value))
+        is FormulaRecord -> putCell(record, textOfFormula(record))
+        is BoolErrRecord -> putCell(record, if (record.isBoolean) {
+          if (record.booleanValue) "TRUE" else "FALSE"
+        } else ErrorEval.getText(record.errorValue.toInt()))
+        is BlankRecord -> putCell(record, "")
+        is MulBlankRecord -> (record.firstColumn..record.lastColumn)
+                .forEach { putCell(record.row, it, "") }
+      }
+    }
+
+    private fun putCell(record: CellValueRecordInterface, value: String) =
+            putCell(record.row, record.column.toInt(), value)
+
+    // ячейки в BIFF идут по строкам в порядке возрастания их номеров
+    private fun putCell(row: Int, column: Int, value: String) {
+      if (row != currentRow) {
+        if (currentRow >= 0) consumer(currentRow, cells)
+        emitRowsWithoutCells(row)
+        rowsWithoutCells.remove(row)
+        cells.clear()
+        currentRow = row
+      }
+      cells[column] = value
+    }
+
+    // передать обработчику строки без ячеек, предшествующие строке [row]
+    private fun emitRowsWithoutCells(row: Int) {
+      while (rowsWithoutCells.isNotEmpty() && rowsWithoutCells.first() < row) {
+        cells.clear()
+        consumer(rowsWithoutCells.pollFirst(), cells)
+      }
+    }
+
+    private fun endOfSheet() {
+      if (currentRow >= 0) consumer(currentRow, cells)
+      emitRowsWithoutCells(Int.MAX_VALUE)
+    }
+
+    private fun valueOfNumericCell(record: CellValueRecordInterface, value: Double): String {
+      val xfIndex = record.xfIndex.toInt()
+      if (xfIndex < formatsOfCells.size) {
+        val formatIndex = formatsOfCells[xfIndex]
+        val formatString = formats[formatIndex] ?: BuiltinFormats.getBuiltinFormat(formatIndex)
+        if (DateUtil.isADateFormat(formatIndex, formatString)
+                && DateUtil.isValidExcelDate(value)) {
+          val format = SimpleDateFormat("dd-MMM-yyyy", LocaleUtil.getUserLocale())
+          format.timeZone = LocaleUtil.getUserTimeZone()
+          return format.format(DateUtil.getJavaDate(value, use1904windowing))
+        }
+      }
+      return value.toString()
+    }
+
+    private fun textOfFormula(record: FormulaRecord): String {
+      val workbook = stubWorkbook ?: workbookRecords.stubHSSFWorkbook
+      stubWorkbook = workbook
+      return HSSFFormulaParser.toFormulaString(workbook, record.parsedExpression)
+    }
+  }
+}
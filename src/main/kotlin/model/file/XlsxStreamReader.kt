@@ -0,0 +1,219 @@
+package model.file
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException
+import org.apache.poi.openxml4j.opc.OPCPackage
+import org.apache.poi.openxml4j.opc.PackageAccess
+import org.apache.poi.ss.usermodel.DateUtil
+import org.apache.poi.ss.util.CellReference
+import org.apache.poi.util.LocaleUtil
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable
+import org.apache.poi.xssf.eventusermodel.XSSFReader
+import org.apache.poi.xssf.model.StylesTable
+import org.xml.sax.Attributes
+import org.xml.sax.InputSource
+import org.xml.sax.SAXException
+import org.xml.sax.helpers.DefaultHandler
+import java.io.Closeable
+import java.io.File
+import java.io.IOException
+import java.text.SimpleDateFormat
+import javax.xml.parsers.ParserConfigurationException
+import javax.xml.parsers.SAXParserFactory
+
+/**
+ * Функция-обработчик строки листа excel. Первый параметр - индекс
+ * строки (начиная с нуля), второй - ассоциативный массив, где ключ -
+ * индекс ячейки, значение - содержимое ячейки (в том же виде, в каком
+ * его возвращает Cell.toString()). Массив ячеек используется повторно
+ * для следующей строки, поэтому обработчик не должен сохранять на него
+ * ссылку.
+ */
+typealias RowConsumer = (Int, Map<Int, String>) -> Unit
+
+/**
+ * Потоковое чтение листов xlsx-файла (событийная модель XSSF + SAX).
+ * В отличие от XSSFWorkbook, объектная модель всей книги в память
+ * не загружается: таблица общих строк и стили считываются один раз при
+ * открытии файла, а строки листа по очереди передаются обработчику
+ * [RowConsumer], поэтому расход памяти ограничен одной строкой листа.
+ * @throws IOException
+ */
+class XlsxStreamReader @Throws(IOException::class)
+
+constructor(val file: File): Closeable {
+  private val pkg: OPCPackage
+  private val sharedStrings: ReadOnlySharedStringsTable
+  private val styles: StylesTable?
+  private val reader: XSSFReader
+
+  init {
+    try {
+      pkg = OPCPackage.open(file, PackageAccess.READ)
+    } catch (e: Exception) {
+      throw IOException("Файл ${file.name} не является xlsx-файлом")
+    }
+    try {
+      reader = XSSFReader(pkg)
+      sharedStrings = ReadOnlySharedStringsTable(pkg)
+      styles = reader.stylesTable
+    } catch (e: Exception) {
+      pkg.revert()
+      throw IOException("Ошибка чтения xlsx-файла ${file.name}")
+    }
+  }
+
+  /** Названия листов книги в порядке их следования */
+  val namesOfSheets: List<String> by lazy {
+    val names = ArrayList<String>()
+    val sheets = reader.sheetsData as XSSFReader.SheetIterator
+    while (sheets.hasNext()) {
+      sheets.next().close()
+      names.add(sheets.sheetName)
+    }
+    names
+  }
+
+  /** Количество именованных диапазонов книги */
+  val numberOfNames: Int by lazy {
+    var number = 0
+    reader.workbookData.use { input ->
+      parse(InputSource(input), object: DefaultHandler() {
+        override fun startElement(uri: String?, localName: String,
+                                  qName: String?, attributes: Attributes) {
+          if (localName == "definedName") number++
+        }
+      })
+    }
+    number
+  }
+
+  /**
+   * Последовательно передает строки листа [nameOfSheet] обработчику
+   * [consumer]. Чтение прекращается после передачи первой строки с
+   * индексом не меньше [stopAfterRow]. Возвращает false, если лист
+   * с таким названием в книге отсутствует.
+   * @throws IOException
+   */
+  @Throws(IOException::class)
+  fun readSheet(nameOfSheet: String, consumer: RowConsumer,
+                stopAfterRow: Int = Int.MAX_VALUE): Boolean {
+    try {
+      val sheets = reader.sheetsData as XSSFReader.SheetIterator
+      while (sheets.hasNext()) {
+        sheets.next().use { input ->
+          if (sheets.sheetName == nameOfSheet) {
+            try {
+              parse(InputSource(input), SheetHandler(consumer, stopAfterRow))
+            } catch (e: StopReading) { }
+            return true
+          }
+        }
+      }
+      return false
+    } catch (e: OpenXML4JException) {
+      throw IOException("Ошибка чтения листа $nameOfSheet")
+    } catch (e: SAXException) {
+      throw IOException("Ошибка чтения листа $nameOfSheet")
+    } catch (e: ParserConfigurationException) {
+      throw IOException("Ошибка чтения листа $nameOfSheet")
+    }
+  }
+
+  private fun parse(source: InputSource, handler: DefaultHandler) {
+    val factory = SAXParserFactory.newInstance()
+    factory.isNamespaceAware = true
+    val xmlReader = factory.newSAXParser().xmlReader
+    xmlReader.contentHandler = handler
+    xmlReader.parse(source)
+  }
+
+  /** Файл открыт только для чтения, поэтому закрывается без сохранения */
+  override fun close() = pkg.revert()
+
+  // прерывает разбор листа, когда нужные строки уже прочитаны
+  private class StopReading: SAXException()
+
+  // обработчик xml-разметки листа. Значения ячеек формируются так же,
+  // как это делает Cell.toString() объектной модели XSSF: для формул -
+  // текст формулы, для дат - дата в формате dd-MMM-yyyy, для логических
+  // значений - TRUE/FALSE, для пустых (но существующих) ячеек - "".
+  private inner class SheetHandler(private val consumer: RowConsumer,
+                                   private val stopAfterRow: Int): DefaultHandler() {
+    private val cells = HashMap<Int, String>()
+    private val text = StringBuilder()
+    private val formula = StringBuilder()
+    private var rowIndex = -1
+    private var nextRowIndex = 0
+    private var columnIndex = -1
+    private var nextColumnIndex = 0
+    private var typeOfCell: String? = null
+    private var styleOfCell: String? = null
+    private var insideValue = false
+    private var insideFormula = false
+
+    override fun startElement(uri: String?, localName: String,
+                              qName: String?, attributes: Attributes) {
+      when (localName) {
+        "row" -> {
+          // атрибут r необязателен, без него строки идут подряд
+          rowIndex = attributes.getValue("r")?.toInt()?.minus(1) ?: nextRowIndex
+          nextRowIndex = rowIndex + 1
+          nextColumnIndex = 0
+          cells.clear()
+        }
+        "c" -> {
+          columnIndex = attributes.getValue("r")
+                  ?.let { CellReference(it).col.toInt() } ?: nextColumnIndex
+          nextColumnIndex = columnIndex + 1
+          typeOfCell = attributes.getValue("t")
+          styleOfCell = attributes.getValue("s")
+          text.setLength(0)
+          formula.setLength(0)
+        }
+        "v" -> insideValue = true
+        "t" -> insideValue = typeOfCell == "inlineStr"
+        "f" -> insideFormula = true
+      }
+    }
+
+    override fun endElement(uri: String?, localName: String, qName: String?) {
+      when (localName) {
+        "v", "t" -> insideValue = false
+        "f" -> insideFormula = false
+        "c" -> cells[columnIndex] = valueOfCell()
+        "row" -> {
+          consumer(rowIndex, cells)
+          if (rowIndex >= stopAfterRow) throw StopReading()
+        }
+      }
+    }
+
+    override fun characters(ch: CharArray, start: Int, length: Int) {
+      if (insideValue) text.append(ch, start, length)
+      else if (insideFormula) formula.append(ch, start, length)
+    }
+
+    private fun valueOfCell(): String {
+      if (formula.isNotEmpty()) return formula.toString()
+      if (text.isEmpty()) return ""
+      val value = text.toString()
+      return when (typeOfCell) {
+        "s" -> sharedStrings.getItemAt(value.toInt()).toString()
+        "inlineStr", "str", "e" -> value
+        "b" -> if (value == "1") "TRUE" else "FALSE"
+        else -> valueOfNumericCell(value.toDouble())
+      }
+    }
+
+    private fun valueOfNumericCell(value: Double): String {
+      val style = styleOfCell?.toIntOrNull()?.let { styles?.getStyleAt(it) }
+      if (style != null && DateUtil.isADateFormat(style.dataFormat.toInt(),
+                      style.dataFormatString) && DateUtil.isValidExcelDate(value)) {
+        val format = SimpleDateFormat("dd-MMM-yyyy", LocaleUtil.getUserLocale())
+        format.timeZone = LocaleUtil.getUserTimeZone()
+        return format.format(DateUtil.getJavaDate(value, false))
+      }
+      return value.toString()
+    }
+  }
+}
@@ -8,4 +8,10 @@ interface GeoTask {
 
   /** Метод выводит на косоль отчетную информацию */
   fun printReport()
+
+  /**
+   * Метод освобождает ресурсы задачи (закрывает открытые файлы).
+   * Вызывается по окончании выполнения задачи, в том числе при ошибке.
+   */
+  fun release() {}
 }
\ No newline at end of file
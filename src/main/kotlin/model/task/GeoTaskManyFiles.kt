@@ -1,6 +1,7 @@
 package model.task
 
 import model.exception.GeoTaskException
+import model.file.MicromineTextFile
 import model.task.thread.ThreadTask
 import java.io.File
 
@@ -36,4 +37,39 @@ abstract class GeoTaskManyFiles(val parameters: Map<String, Any>): GeoTask {
    */
   @Throws(GeoTaskException::class)
   abstract fun perform(file: File)
-}
\ No newline at end of file
+
+  /**
+   * Если true, данные входных файлов могут подготавливаться методом
+   * [prepare] одновременно в нескольких потоках, а затем записываться
+   * методом [commit] в порядке следования файлов в [inputFiles]
+   */
+  open val parallelPreparing: Boolean = false
+
+  /**
+   * Метод считывает и преобразует данные входного файла [file], не
+   * изменяя общее состояние задачи, не выводя информацию на консоль и не
+   * записывая выходные файлы. Может вызываться одновременно из разных
+   * потоков. По умолчанию ничего не делает - вся обработка файла
+   * выполняется в [commit]
+   */
+  @Throws(GeoTaskException::class)
+  open fun prepare(file: File): Any? = null
+
+  /**
+   * Метод записывает данные [prepared], подготовленные методом [prepare]
+   * для файла [file]. Вызывается из одного потока, в порядке следования
+   * файлов в [inputFiles]. По умолчанию вызывает [perform]
+   */
+  @Throws(GeoTaskException::class)
+  open fun commit(file: File, prepared: Any?) = perform(file)
+
+  /**
+   * Выходные файлы, для которых при выполнении задачи в отдельном потоке
+   * включается отложенная запись (см. [MicromineTextFile.startWriteBehind]):
+   * пока записываются данные предыдущего входного файла, читается
+   * следующий. Перед выводом отчета ([printReport]) поток задачи ждет
+   * окончания записи. По умолчанию список пуст - запись выполняется
+   * в вызывающем потоке.
+   */
+  open val writeBehindFiles: List<MicromineTextFile> get() = emptyList()
+}
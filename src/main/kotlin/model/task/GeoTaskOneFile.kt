@@ -36,6 +36,31 @@ abstract class GeoTaskOneFile(val parameters: Map<String, Any>): GeoTask {
   @Throws(GeoTaskException::class)
   abstract fun perform(any: Any?)
 
+  /**
+   * Если true, элементы коллекции, возвращенной методом getTableFromFile(),
+   * могут обрабатываться методом [prepare] одновременно в нескольких
+   * потоках, а затем передаваться методу [commit] в порядке итерации
+   * коллекции
+   */
+  open val parallelPreparing: Boolean = false
+
+  /**
+   * Вычисления для текущего элемента [any] без изменения общего состояния
+   * задачи и без записи в выходной файл. Может вызываться одновременно
+   * из разных потоков. По умолчанию ничего не делает - вся обработка
+   * элемента выполняется в [commit]
+   */
+  @Throws(GeoTaskException::class)
+  open fun prepare(any: Any?): Any? = null
+
+  /**
+   * Сохранение результатов [prepared], вычисленных методом [prepare] для
+   * элемента [any]. Вызывается из одного потока, в порядке итерации
+   * коллекции. По умолчанию вызывает [perform]
+   */
+  @Throws(GeoTaskException::class)
+  open fun commit(any: Any?, prepared: Any?) = perform(any)
+
   /**
    * Метод должен вызываться в конце выполнения задачи, и определять
    * способ сохранения полученных данных (запись в файл, вывод на консоль)
@@ -1,16 +1,15 @@
 package model.task.mineralogy
 
 import model.exception.GeoTaskException
+import model.file.GroupsOfFile
 import model.file.MicromineTextFile
 import model.task.GeoTaskOneFile
-import java.io.BufferedReader
+import model.utils.Centimetres
+import model.utils.Groups
 import java.io.IOException
-import java.nio.charset.Charset
-import java.nio.file.Files
 import java.nio.file.InvalidPathException
 import java.nio.file.Path
 import java.nio.file.Paths
-import java.util.stream.Collectors
 
 /**
  * Задача "Границы опробования в точки". Для каждой скважины
@@ -33,10 +32,6 @@ class BoundsOfSamplingToPoints
     private lateinit var inputFilePath: Path
     private lateinit var outputFilePath: Path
 
-    // коллекция с пробами, которые были считаны из файла.
-    // Для проб остаются только необходимые атрибуты
-    private val simpleProbes = ArrayList<Map<String, String>>()
-
     // коллекция содержит точки с данными по кровле верхней пробы
     // и подошве нижней пробы. Эти данные записываются в
     // выходной текстовый файл
@@ -45,82 +40,83 @@ class BoundsOfSamplingToPoints
     // названия необходимых атрибутов во входном/выходном файле
     private var keys: List<String> = ArrayList()
 
+    // пробы, которые были считаны из файла, сгруппированные по скважинам
+    // (в порядке следования в файле). Для проб остаются только
+    // необходимые атрибуты
+    private lateinit var layersOfWells: Groups<Map<String, String>>
+
     init { checkInputParameters() }
 
     @Throws(SecurityException::class, IOException::class)
     override fun getTableFromFile(): Collection<Any?> {
-      val br: BufferedReader = Files.newBufferedReader(inputFilePath,
-              Charset.forName("windows-1251"))
-      val probes = ArrayList<String>()
-      br.use { // try с ресурсами
-        var noEnd = true
-        var line: String?
-        while (noEnd) {
-          line = it.readLine()
-          noEnd = line?.let {probes.add(line)} ?: false
-          //или: if (line != null) probes.add(line)
-          //else noEnd = false
-        }
-      }
-
-      if (probes.size < 2)
-        throw IOException("Неверный формат входного файла")
-      keys = probes[0].split(";")
-      if (keys.size != numberAttributes)
-        throw IOException("Неверный формат входного файла")
-      for (i in 1 until probes.size) {
-        val currentProbe = probes[i].split(";")
-        if (keys.size != numberAttributes)
-          throw IOException("Неверный формат входного файла")
+      // большой файл разбирается по частям в нескольких потоках, а файл,
+      // который не помещается в память, читается по скважинам после
+      // внешней сортировки
+      layersOfWells = GroupsOfFile.read(inputFilePath,
+              numberAttributes..numberAttributes, 1, title = { keys = it }) {
         val map = HashMap<String, String>()
-        map.put(keys[1], currentProbe[1]) // ID
-        map.put(keys[7], currentProbe[7]) // east
-        map.put(keys[8], currentProbe[8]) // north
-        map.put(keys[9], currentProbe[9]) // z
-        map.put(keys[11], currentProbe[11]) // from
-        map.put(keys[12], currentProbe[12]) // to
-        map.put(keys[23], currentProbe[23]) // all MSD
-        simpleProbes.add(map)
+        map.put(keys[1], it[1]) // ID
+        map.put(keys[7], it[7]) // east
+        map.put(keys[8], it[8]) // north
+        map.put(keys[9], it[9]) // z
+        map.put(keys[11], it[11]) // from
+        map.put(keys[12], it[12]) // to
+        map.put(keys[23], it[23]) // all MSD
+        map
       }
+      if (layersOfWells.numberOfRows == 0L)
+        throw IOException("Неверный формат входного файла")
 
-      return simpleProbes.stream()
-              .map { it[keys[1]] }
-              .collect(Collectors.toSet()) // вернуть набор уникальных id скважин
+      return layersOfWells.keysInHashOrder() // вернуть набор уникальных id скважин
     }
 
+    // скважины независимы друг от друга: точки вычисляются параллельно,
+    // а добавляются в коллекцию в порядке перебора скважин
+    override val parallelPreparing = true
+
     @Throws(GeoTaskException::class)
-    override fun perform(any: Any?) {
+    override fun perform(any: Any?) = commit(any, prepare(any))
+
+    @Throws(GeoTaskException::class)
+    override fun prepare(any: Any?): Any? {
       try {
         val idWell = any as String
-        val layersForCurrentWell = simpleProbes.filter { it[keys[1]] == idWell }
+        val layersForCurrentWell = layersOfWells[idWell]
+        // отметки в сантиметрах
         var min = layersForCurrentWell
-                .map { it[keys[11]]?.toDouble() ?: 1000.0 }
+                .map { it[keys[11]]?.let { Centimetres.parse(it) } ?: 100000 }
                 .min()!!
         var max = layersForCurrentWell
-                .map { it[keys[12]]?.toDouble() ?: 1100.0 }
+                .map { it[keys[12]]?.let { Centimetres.parse(it) } ?: 110000 }
                 .max()!!
-        val z = layersForCurrentWell[0][keys[9]]?.toDouble()!!
-        min = Math.round((z - min) * 100.0) / 100.0
-        max = Math.round((z - max) * 100.0) / 100.0
+        val z = Centimetres.parse(layersForCurrentWell[0][keys[9]]!!)
+        min = z - min
+        max = z - max
         val map = HashMap<String, String>()
         map.put(keys[0], idWell)
         map.put(keys[7], layersForCurrentWell[0][keys[7]]!!) // east
         map.put(keys[8], layersForCurrentWell[0][keys[8]]!!) // north
-        map.put("Z", min.toString()) // abs z
-        map.put("D", max.toString())
+        map.put("Z", Centimetres.format(min)) // abs z
+        map.put("D", Centimetres.format(max))
         map.put(keys[23], layersForCurrentWell[0][keys[23]]!!) // all MSD
-        dotWells.add(map)
+        return map
       } catch(e: Exception) {
         throw GeoTaskException(e.message?.let{e.message} ?: "perform error")
       }
     }
 
+    @Suppress("UNCHECKED_CAST")
+    override fun commit(any: Any?, prepared: Any?) {
+      dotWells.add(prepared as MutableMap<String, String>)
+    }
+
     @Throws(SecurityException::class, IOException::class)
     override fun writeData() {
       val title = dotWells[0].keys.toList()
-      val dotWellsFile = MicromineTextFile(outputFilePath)
-      dotWellsFile.writeTitle(title)
-      dotWellsFile.writeContent(dotWells)
+      MicromineTextFile(outputFilePath).use {
+        it.writeTitle(title)
+        it.writeContent(dotWells)
+      }
     }
 
     @Throws(IllegalArgumentException::class)
@@ -140,6 +136,11 @@ class BoundsOfSamplingToPoints
       task.printConsole("")
     }
 
+    @Throws(IOException::class)
+    override fun release() { // удалить временные файлы сортировки
+      if (::layersOfWells.isInitialized) layersOfWells.close()
+    }
+
     override fun printReport() {
       task.printConsole("")
       task.printConsole("В выходной файл записано точек: ${dotWells.size}")
@@ -1,19 +1,17 @@
 package model.task.mineralogy
 
 import model.exception.GeoTaskException
+import model.file.GroupsOfFile
 import model.file.MicromineTextFile
 import model.task.GeoTaskOneFile
 import model.utils.CollectionUtils
+import model.utils.Groups
 import model.utils.addPointsToIntervals
 import model.utils.calculateAbsZForAdditionalPoints
-import java.io.BufferedReader
 import java.io.IOException
-import java.nio.charset.Charset
-import java.nio.file.Files
 import java.nio.file.InvalidPathException
 import java.nio.file.Path
 import java.nio.file.Paths
-import java.util.stream.Collectors
 
 typealias AddAttributes = (MutableMap<String, String>, List<String>) -> Unit
 typealias CalculationsTask = (MutableList<MutableMap<String, String>>) -> Unit
@@ -43,10 +41,6 @@ constructor(parameters: Map<String, Any>): GeoTaskOneFile(parameters) {
 
   private var dotWellsFile: MicromineTextFile
 
-  // коллекция с пробами, которые были считаны из файла.
-  // Для проб остаются только необходимые атрибуты
-  private val simpleProbes = ArrayList<MutableMap<String, String>>()
-
   private var currentPoints: List<MutableMap<String, String>> = ArrayList() // дополнительные точки по текущей скважине
   val getCurrentPoints get() = CollectionUtils.copyListWithSubMap(currentPoints.toList()) // используется в тесте
   // коллекция содержит информацию по всем точкам. Эти данные необходимы
@@ -60,6 +54,11 @@ constructor(parameters: Map<String, Any>): GeoTaskOneFile(parameters) {
   // названия атрибутов во входном файле
   private var namesOfAttributes: List<String> = ArrayList()
 
+  // пробы, которые были считаны из файла, сгруппированные по скважинам
+  // (в порядке следования в файле). Для проб остаются только
+  // необходимые атрибуты
+  private lateinit var layersOfWells: Groups<MutableMap<String, String>>
+
   // функция определяет алгоритм для текущей задачи
   private var calculationsTask: CalculationsTask = { }
   // функция добавляет из исходного файла только те атрибуты, которые нужны для вычислений
@@ -75,46 +74,54 @@ constructor(parameters: Map<String, Any>): GeoTaskOneFile(parameters) {
 
   @Throws(SecurityException::class, IOException::class)
   override fun getTableFromFile(): Collection<Any?> {
-    val br: BufferedReader = Files.newBufferedReader(inputFilePath,
-            Charset.forName("windows-1251"))
-
-    var firstLine = true
-    br.use { // try с ресурсами
-      var noEnd = true
-      var line: String?
-      while (noEnd) {
-        line = it.readLine()
-        if (line!= null) {
-          val lineAsString = line.split(";")
-          if (lineAsString.size !in numberAttributesNonEmptyProbes..numberAttributesAllProbes)
-            throw IOException("${this.javaClass.simpleName}: Incorrect format of input file")
-          if (firstLine) { // если заголовок - считать атрибуты и определить алгоритмы для задачи
-            namesOfAttributes = lineAsString // namesOfAttributes останется неизменной, поскольку дальнейшее присваивание коллекции lineAsList новых значений не повреждает коллекцию namesOfAttributes
-            val algorithm = TypeOfCalculationsTasks(taskName, namesOfAttributes).getAlgorithm()
-            addAttributes = algorithm.first // передать алгоритм добавления атрибутов
-            calculationsTask = algorithm.second // алогитм для вычислений для текущей задачи
-            firstLine = false
-          } else simpleProbes.add(probeWithNecessaryAttributes(lineAsString, addAttributes))
-        } else noEnd = false
-      }
+    // большой файл разбирается по частям в нескольких потоках, а файл,
+    // который не помещается в память, читается по скважинам после
+    // внешней сортировки
+    layersOfWells = GroupsOfFile.read(inputFilePath,
+            numberAttributesNonEmptyProbes..numberAttributesAllProbes, 1, title = {
+      // заголовок - считать атрибуты и определить алгоритмы для задачи
+      namesOfAttributes = it
+      val algorithm = TypeOfCalculationsTasks(taskName, namesOfAttributes).getAlgorithm()
+      addAttributes = algorithm.first // передать алгоритм добавления атрибутов
+      calculationsTask = algorithm.second // алогитм для вычислений для текущей задачи
+    }) {
+      // из строки в строки Java преобразуются только нужные значения
+      probeWithNecessaryAttributes(it, addAttributes)
     }
 
-    if (simpleProbes.size < 2) throw IOException("${this.javaClass.simpleName}: Incorrect format of input file")
+    if (layersOfWells.numberOfRows < 2) throw IOException("${this.javaClass.simpleName}: Incorrect format of input file")
 
-    return simpleProbes.stream()
-            .map { it[namesOfAttributes[1]] }
-            .collect(Collectors.toSet()) // вернуть набор уникальных id скважин
+    return layersOfWells.keysInHashOrder() // вернуть набор уникальных id скважин
   }
 
+  // скважины независимы друг от друга: точки вычисляются параллельно,
+  // а записываются в файл в порядке перебора скважин
+  override val parallelPreparing = true
+
   @Throws(GeoTaskException::class)
-  override fun perform(any: Any?) {
+  override fun perform(any: Any?) = commit(any, prepare(any))
+
+  // вычислить дополнительные точки для скважины с идентификатором [any]
+  @Throws(GeoTaskException::class)
+  override fun prepare(any: Any?): Any? {
     try {
       val idWell = any as String
-      val layersForCurrentWell: MutableList<MutableMap<String, String>> = simpleProbes.filter { it[namesOfAttributes[1]] == idWell }.toMutableList()
+      val layersForCurrentWell: MutableList<MutableMap<String, String>> =
+              layersOfWells[idWell].toMutableList()
       calculationsTask.invoke(layersForCurrentWell) // Как паттерн ШАБЛОННЫЙ МЕТОД (заменяемая часть алгоритма)
-      currentPoints = addPointsToIntervals(layersForCurrentWell, frequency)
-      calculateAbsZForAdditionalPoints(currentPoints)
+      val points = addPointsToIntervals(layersForCurrentWell, frequency)
+      calculateAbsZForAdditionalPoints(points)
+      return points
+    } catch(e: Exception) {
+      throw GeoTaskException(e.message?.let { e.message } ?: "perform error")
+    }
+  }
 
+  @Suppress("UNCHECKED_CAST")
+  @Throws(GeoTaskException::class)
+  override fun commit(any: Any?, prepared: Any?) {
+    try {
+      currentPoints = prepared as List<MutableMap<String, String>>
       // из первой пробы считать все названия атрибутов и записать их в выходной текстовый файл
       if (firstWell && currentPoints.isNotEmpty()) {
         dotWellsFile.writeTitle(currentPoints[0].keys.toList())
@@ -158,6 +165,15 @@ constructor(parameters: Map<String, Any>): GeoTaskOneFile(parameters) {
     task.printConsole("")
   }
 
+  @Throws(IOException::class)
+  override fun release() {
+    try {
+      dotWellsFile.close()
+    } finally { // удалить временные файлы сортировки
+      if (::layersOfWells.isInitialized) layersOfWells.close()
+    }
+  }
+
   override fun printReport() {
     task.printConsole("")
     task.printConsole("В выходной файл записано точек: $numberOfPoints")
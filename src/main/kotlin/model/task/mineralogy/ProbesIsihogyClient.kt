@@ -16,14 +16,15 @@ import model.constants.IsihogyClientConstants.typeOfProbesCodesSheetName
 import model.exception.DataException
 import model.exception.ExcelException
 import model.exception.GeoTaskException
+import model.file.ExcelWorkbook
 import model.file.MicromineTextFile
 import model.task.GeoTaskManyFiles
 import model.utils.CollectionUtils.copyListWithSubMap
 import model.utils.ExcelUtils
 import model.utils.ExcelUtils.getCodesOfIsihogyClient
-import model.utils.ExcelUtils.getSheetOfIsihogyClient
 import model.utils.ExcelUtils.getTableOfIsihogyClient
 import model.utils.ExcelUtils.getTitleTableOfIsihogyClient
+import model.utils.ExcelUtils.openWorkbookOfIsihogyClient
 import model.utils.IsihogyClientUtils.addAttributeOfAllMinerals
 import model.utils.IsihogyClientUtils.checkOnMissDataXYZDAndFix
 import model.utils.IsihogyClientUtils.checkOnMissDataFromTo
@@ -92,7 +93,7 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
     inputFiles = ExcelUtils.listOfExcelFiles(inputFolder)
     if (inputFiles.isNotEmpty()) {
       // взять заголовок для выходного файла из первого входного файла
-      createOutputFiles(inputFiles[0])
+      openWorkbookOfIsihogyClient(inputFiles[0]).use { createOutputFiles(it) }
       attributesOfMineralogy.removeAll(listOf("ID ТН", "Номер пробы", "ID пробы",
         "Код Типа_пробы", "От", "До", "L_Code возраста", "L_Code породы", "UIN"))
     }
@@ -101,7 +102,8 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
   @Throws(GeoTaskException::class)
   override fun perform(file: File) {
     try {
-      getTablesAndDecodeFields(file)
+      // книга открывается один раз для чтения всех листов
+      openWorkbookOfIsihogyClient(file).use { getTablesAndDecodeFields(it) }
 
       deleteDecimalPart(nameOfAttributeID, observationsPointsTable)
       deleteDecimalPart(nameOfAttributeID, mineralogyTable)
@@ -216,15 +218,15 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
   }
 
   @Throws(ExcelException::class, IOException::class)
-  private fun createOutputFiles(file: File) {
+  private fun createOutputFiles(workbook: ExcelWorkbook) {
     val titleObservationsPoints = getTitleTableOfIsihogyClient(
-            getSheetOfIsihogyClient(file, observationsPointsSheetName))
+            workbook, observationsPointsSheetName)
     if (titleObservationsPoints.isEmpty()) {
       throw ExcelException("Нет названий полей в листе для точек наблюдений")
     }
 
     val titleMineralogy = getTitleTableOfIsihogyClient(
-            getSheetOfIsihogyClient(file, mineralogySheetName)).toMutableList()
+            workbook, mineralogySheetName).toMutableList()
     if (titleMineralogy.isEmpty()) {
       throw ExcelException("Нет названий полей в листе с данными минералогии")
     }
@@ -254,44 +256,41 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
   }
 
   @Throws(ExcelException::class, DataException::class)
-  private fun getTablesAndDecodeFields(file: File) {
-    var sheet = getSheetOfIsihogyClient(file, observationsPointsSheetName)
-    observationsPointsTable = getTableOfIsihogyClient(sheet)
+  private fun getTablesAndDecodeFields(workbook: ExcelWorkbook) {
+    observationsPointsTable = getTableOfIsihogyClient(
+            workbook, observationsPointsSheetName)
     if (observationsPointsTable.isEmpty()) {
       logger.info("The excel list for points of observations is empty")
       throw DataException("Лист excel с точками наблюдений - пуст")
     }
 
-    sheet = getSheetOfIsihogyClient(file, mineralogySheetName)
-    mineralogyTable = getTableOfIsihogyClient(sheet)
+    mineralogyTable = getTableOfIsihogyClient(workbook, mineralogySheetName)
     if (mineralogyTable.isEmpty()) {
       logger.info("The excel list for mineralogy is empty")
       throw DataException("Лист excel с данными минералогии - пуст")
     }
 
-    sheet = getSheetOfIsihogyClient(file, stateDocumentationCodesSheetName)
-    val stateDocumentationCodes = getCodesOfIsihogyClient(sheet)
+    val stateDocumentationCodes = getCodesOfIsihogyClient(
+            workbook, stateDocumentationCodesSheetName)
     if (stateDocumentationCodes.isEmpty()) {
       logger.info("The excel list for codes of state documentation is empty")
       throw DataException("Лист excel с кодами состояния документирования - пуст")
     }
 
-    sheet = getSheetOfIsihogyClient(file, typeOfProbesCodesSheetName)
-    val typeOfProbesCodes = getCodesOfIsihogyClient(sheet)
+    val typeOfProbesCodes = getCodesOfIsihogyClient(workbook, typeOfProbesCodesSheetName)
     if (typeOfProbesCodes.isEmpty()) {
       logger.info("The excel list for type of probes is empty")
       throw DataException("Лист excel с кодами типов проб - пуст")
     }
 
-    sheet = getSheetOfIsihogyClient(file, stratigraphicCodesSheetName)
-    val stratigraphicCodes = getCodesOfIsihogyClient(sheet)
+    val stratigraphicCodes = getCodesOfIsihogyClient(
+            workbook, stratigraphicCodesSheetName)
     if (stratigraphicCodes.isEmpty()) {
       logger.info("The excel list for codes of stratigraphic is empty")
       throw DataException("Лист excel с кодами стратиграфии - пуст")
     }
 
-    sheet = getSheetOfIsihogyClient(file, lithologyCodesSheetName)
-    val lithologyCodes = getCodesOfIsihogyClient(sheet)
+    val lithologyCodes = getCodesOfIsihogyClient(workbook, lithologyCodesSheetName)
     if (lithologyCodes.isEmpty()) {
       logger.info("The excel list for codes of lithology is empty")
       throw DataException("Лист excel с кодами литологии - пуст")
@@ -321,6 +320,24 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
     task.printConsole("")
   }
 
+
+  override val writeBehindFiles: List<MicromineTextFile>
+    get() = if (createDotFile) listOf(topWellsFile, intervalWellsFile, dotWellsFile)
+            else listOf(topWellsFile, intervalWellsFile)
+
+  @Throws(IOException::class)
+  override fun release() {
+    try { // закрыть все файлы, даже если закрытие одного из них не удалось
+      if (::topWellsFile.isInitialized) topWellsFile.close()
+    } finally {
+      try {
+        if (::intervalWellsFile.isInitialized) intervalWellsFile.close()
+      } finally {
+        if (::dotWellsFile.isInitialized) dotWellsFile.close()
+      }
+    }
+  }
+
   override fun printReport() {
     task.printConsole("")
     task.printConsole("Файл устьев скважин для Micromine:")
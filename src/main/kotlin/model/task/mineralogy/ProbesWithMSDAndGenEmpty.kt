@@ -18,18 +18,15 @@ import model.file.MicromineTextFile
 import model.task.GeoTaskManyFiles
 import model.utils.*
 import model.utils.CollectionUtils.copyListWithSubMap
-import model.utils.ExcelUtils.getSheetOfWebResource
-import model.utils.ExcelUtils.getTableOfProbesWithMSD
-import model.utils.WebServiceUtils.assignIDToIntervals
+import model.utils.ExcelUtils.getTableOfWebResource
 import model.utils.WebServiceUtils.checkOnMissSpatialData
 import model.utils.WebServiceUtils.checkSequenceIntervals
-import model.utils.WebServiceUtils.defineDepthOfWells
 import model.utils.WebServiceUtils.fixCoincidentCollarOfWell
-import model.utils.WebServiceUtils.getWellsWithUniqueNames
 import model.utils.WebServiceUtils.makeAmendment
 import model.utils.WebServiceUtils.replaceCommaForWells
-import model.utils.WebServiceUtils.selectionByGeologicalAge
+import model.utils.WebServiceUtils.filterOfGeologicalAge
 import model.utils.WebServiceUtils.updateCrystalNumberWithMSD
+import model.utils.WellIndex
 import java.io.File
 import java.io.File.separator
 import java.io.IOException
@@ -91,9 +88,10 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
 
   override fun perform(file: File) {
     try {
-      var table = getTableOfProbesWithMSD(getSheetOfWebResource(file))
+      // выборка по стратиграфии производится при чтении листа
+      val table = getTableOfWebResource(file, withoutMSD = false,
+              filter = filterOfGeologicalAge(typeOfSelectionAge)).table
       checkWorkingObjects(file, table)
-      table = selectionByGeologicalAge(table, typeOfSelectionAge)
 
       if (table.isEmpty()) {
         logger.info("Probes with stratigraphic index are not found")
@@ -109,7 +107,9 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
 
       topWells = copyListWithSubMap(table)
       topWells.forEach { it.keys.retainAll(requiredKeysTopWell) }
-      topWells = getWellsWithUniqueNames(topWells)
+      // индекс скважин по именам (скважины с уникальными именами)
+      val wellIndex = WellIndex(topWells)
+      topWells = wellIndex.uniqueWells
       topWells.forEach { well ->
         well["IDW"] = idWell.toString()
         idWell++
@@ -117,9 +117,9 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
       fixCoincidentCollarOfWell(topWells)
 
       intervalWells = copyListWithSubMap(table)
-      assignIDToIntervals(topWells, intervalWells)
+      wellIndex.assignIDToIntervals(intervalWells)
       checkSequenceIntervals(intervalWells)
-      defineDepthOfWells(topWells, intervalWells)
+      wellIndex.defineDepthOfWells(intervalWells)
 
       topWells.forEach {
         var addedDepth: Double = (it[nameOfAttributeDepth]?: "0.0").toDouble() + 100.0
@@ -129,8 +129,9 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
 
       if (useReferenceVolume) updateCrystalNumberWithMSD(intervalWells, probeVolume)
 
+      var intervalsOfWells = wellIndex.intervalsOfWells(intervalWells)
       topWells.forEach { well ->
-        val layersForCurrentWell = intervalWells.filter { it["IDW"] == well["IDW"] }
+        val layersForCurrentWell = intervalsOfWells[well["IDW"]]
 
         if (layersForCurrentWell.size == 8) {
           layersForCurrentWell.forEach {
@@ -138,7 +139,7 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
           }
         }
         if (layersForCurrentWell.isNotEmpty()) {
-          val emptyProbe = layersForCurrentWell[0].toMutableMap()
+          val emptyProbe = CollectionUtils.copyOfMap(layersForCurrentWell[0])
           emptyProbe["От"] = "0.00"
           emptyProbe["До"] = well[nameOfAttributeDepth].toString()
           // перебрать все значения с количеством кристаллов МСА для различных типов
@@ -161,8 +162,9 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
         }
       }
       println("--------------------")
+      intervalsOfWells = wellIndex.intervalsOfWells(intervalWells)
       topWells.forEach { well ->
-        val layersForCurrentWell = intervalWells.filter { it["IDW"] == well["IDW"] }
+        val layersForCurrentWell = intervalsOfWells[well["IDW"]]
         if (layersForCurrentWell.size == 9) {
           layersForCurrentWell.forEach {
             println(it["IDW"] + " " + it["От"] + " " + it["До"] + " " + it["Все МСА"] + " " + it["Пиропы"] + " " + it["Пикроильмениты"])
@@ -173,8 +175,7 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
 
 
       // сортировать сначала по ID, потом по отметке кровли пробы
-      intervalWells = intervalWells.sortedWith(
-              compareBy({ it["IDW"]!!.toInt() }, { it["От"]!!.toDouble() })).toMutableList()
+      intervalWells = sortByWellAndFrom(intervalWells)
       task.printConsole("Из файла прочитано скважин: ${topWells.size}")
       task.printConsole("Из файла прочитано интервалов: ${intervalWells.size}")
       overallNumberTopWells += topWells.size
@@ -279,6 +280,19 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
     task.printConsole("")
   }
 
+  @Throws(IOException::class)
+  override fun release() {
+    try { // закрыть все файлы, даже если закрытие одного из них не удалось
+      if (::topWellsFile.isInitialized) topWellsFile.close()
+    } finally {
+      try {
+        if (::intervalWellsFile.isInitialized) intervalWellsFile.close()
+      } finally {
+        if (::dotWellsFile.isInitialized) dotWellsFile.close()
+      }
+    }
+  }
+
   override fun printReport() {
     task.printConsole("")
     task.printConsole("Файл устьев скважин для Micromine:")
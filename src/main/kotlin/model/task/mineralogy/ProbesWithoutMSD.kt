@@ -12,20 +12,19 @@ import model.task.GeoTaskManyFiles
 import model.utils.CollectionUtils
 import model.utils.CollectionUtils.copyListWithSubMap
 import model.utils.ExcelUtils
-import model.utils.ExcelUtils.getSheetOfWebResource
-import model.utils.ExcelUtils.getTableOfProbesWithoutMSD
-import model.utils.WebServiceUtils.assignIDToIntervals
-import model.utils.WebServiceUtils.selectionByGeologicalAge
+import model.utils.ExcelUtils.getTableOfWebResource
+import model.utils.WebServiceUtils.filterOfGeologicalAge
 import model.utils.WebServiceUtils.checkOnMissSpatialData
 import model.utils.WebServiceUtils.checkSequenceIntervals
-import model.utils.WebServiceUtils.defineDepthOfWells
 import model.utils.WebServiceUtils.fixCoincidentCollarOfWell
-import model.utils.WebServiceUtils.getWellsWithUniqueNames
 import model.utils.WebServiceUtils.makeAmendment
 import model.utils.WebServiceUtils.replaceCommaForWells
+import model.utils.WebServiceUtils.shiftIDOfWells
 import model.utils.WebServiceUtils.updateCrystalNumberWithoutMSD
+import model.utils.WellIndex
 import model.utils.averageZByInterval
 import model.utils.checkWorkingObjects
+import model.utils.sortByWellAndFrom
 import java.io.File
 import java.io.File.separator
 import java.io.IOException
@@ -78,7 +77,6 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
   private lateinit var dotWellsFile: MicromineTextFile
 
   private val requiredKeysIntervalWell = ArrayList(indexAndNameOfColumns.values)
-  private var nameOfObject = ""
 
   init {
     checkInputParameters()
@@ -88,45 +86,83 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
     createOutputFiles()
   }
 
-  override fun perform(file: File) {
+  // файлы читаются и преобразуются независимо друг от друга,
+  // идентификаторы скважин присваиваются при записи
+  override val parallelPreparing = true
+
+  override fun perform(file: File) = commit(file, prepare(file))
+
+  override fun prepare(file: File): Any? {
+    val wells = WellsOfFile()
     try {
-      val sheet = getSheetOfWebResource(file)
-      nameOfObject = ExcelUtils.getNameOfObject(sheet)
-      var table = getTableOfProbesWithoutMSD(sheet)
+      // выборка по стратиграфии производится при чтении листа
+      val tableOfWebResource = getTableOfWebResource(file, withoutMSD = true,
+              filter = filterOfGeologicalAge(typeOfSelectionAge))
+      val nameOfObject = tableOfWebResource.nameOfObject!!
+      wells.nameOfObject = nameOfObject
+      val table = tableOfWebResource.table
       checkWorkingObjects(file, table)
 
-      table = selectionByGeologicalAge(table, typeOfSelectionAge)
       if (table.isEmpty()) {
         logger.info("Probes with stratigraphic index are not found")
         throw DataException("Проб с указанной выборкой по стратиграфии не найдено")
       }
       val mistakes = checkOnMissSpatialData(table)
       if (mistakes.isNotEmpty()) {
-        task.printConsole("Ошибки отсутствия данных:")
-        mistakes.forEach { task.printConsole(it) }
+        wells.messages.add("Ошибки отсутствия данных:")
+        wells.messages.addAll(mistakes)
       }
       replaceCommaForWells(table)
       if (useAmendment) makeAmendment(table)
 
-      topWells = copyListWithSubMap(table)
+      var topWells = copyListWithSubMap(table)
       topWells.forEach { it.keys.retainAll(requiredKeysTopWell) }
-      topWells = getWellsWithUniqueNames(topWells)
+      // индекс скважин по именам (скважины с уникальными именами)
+      val wellIndex = WellIndex(topWells)
+      topWells = wellIndex.uniqueWells
       topWells.forEach { well ->
-        well["IDW"] = idWell.toString()
-        idWell++
+        well["IDW"] = wells.numberOfWells.toString()
+        wells.numberOfWells++
       }
       fixCoincidentCollarOfWell(topWells)
       topWells.forEach { it["Объект"] = nameOfObject }
-      intervalWells = copyListWithSubMap(table)
-      assignIDToIntervals(topWells, intervalWells)
+      var intervalWells = copyListWithSubMap(table)
+      wellIndex.assignIDToIntervals(intervalWells)
       checkSequenceIntervals(intervalWells)
-      defineDepthOfWells(topWells, intervalWells)
+      wellIndex.defineDepthOfWells(intervalWells)
       if (useReferenceVolume) updateCrystalNumberWithoutMSD(intervalWells, probeVolume)
       // сортировать сначала по ID, потом по отметке кровли пробы
-      intervalWells = intervalWells.sortedWith(
-              compareBy({ it["IDW"]!!.toInt() }, { it["От"]!!.toDouble() })).toMutableList()
+      intervalWells = sortByWellAndFrom(intervalWells)
 
       intervalWells.forEach { it["Объект"] = nameOfObject }
+      wells.topWells = topWells
+      wells.intervalWells = intervalWells
+      if (createDotFile) {
+        val dotWells = copyListWithSubMap(intervalWells)
+        averageZByInterval(dotWells)
+        wells.dotWells = dotWells
+      }
+    } catch (e: ExcelException) {
+      wells.error = GeoTaskException(e.message!!)
+    } catch (e: DataException) {
+      wells.error = GeoTaskException(e.message!!)
+    } catch (e: Exception) {
+      logger.info(e.message)
+      wells.error = GeoTaskException("Неизвестная ошибка")
+    }
+    return wells
+  }
+
+  override fun commit(file: File, prepared: Any?) {
+    val wells = prepared as WellsOfFile
+    wells.messages.forEach { task.printConsole(it) }
+    val offset = idWell
+    idWell += wells.numberOfWells
+    wells.error?.let { throw it }
+    try {
+      shiftIDOfWells(offset, wells.topWells, wells.intervalWells, wells.dotWells)
+      topWells = wells.topWells
+      intervalWells = wells.intervalWells
       task.printConsole("Из файла прочитано скважин: ${topWells.size}")
       task.printConsole("Из файла прочитано интервалов: ${intervalWells.size}")
       overallNumberTopWells += topWells.size
@@ -134,16 +170,11 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
       topWellsFile.writeContent(topWells)
       intervalWellsFile.writeContent(intervalWells)
       if (createDotFile) {
-        dotWells = copyListWithSubMap(intervalWells)
-        averageZByInterval(dotWells)
+        dotWells = wells.dotWells
         task.printConsole("Из файла прочитано точек: ${dotWells.size}")
         overallNumberDotWells += dotWells.size
         dotWellsFile.writeContent(dotWells)
       }
-    } catch (e: ExcelException) {
-      throw GeoTaskException(e.message!!)
-    } catch (e: DataException) {
-      throw GeoTaskException(e.message!!)
     } catch (e: IOException) {
       logger.info("Error write data to output file: ${e.message}")
       throw GeoTaskException("Ошибка записи данных в файл")
@@ -231,6 +262,24 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
     task.printConsole("")
   }
 
+
+  override val writeBehindFiles: List<MicromineTextFile>
+    get() = if (createDotFile) listOf(topWellsFile, intervalWellsFile, dotWellsFile)
+            else listOf(topWellsFile, intervalWellsFile)
+
+  @Throws(IOException::class)
+  override fun release() {
+    try { // закрыть все файлы, даже если закрытие одного из них не удалось
+      if (::topWellsFile.isInitialized) topWellsFile.close()
+    } finally {
+      try {
+        if (::intervalWellsFile.isInitialized) intervalWellsFile.close()
+      } finally {
+        if (::dotWellsFile.isInitialized) dotWellsFile.close()
+      }
+    }
+  }
+
   override fun printReport() {
     task.printConsole("")
     task.printConsole("Файл устьев скважин для Micromine:")
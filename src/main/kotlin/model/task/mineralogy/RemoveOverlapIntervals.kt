@@ -3,11 +3,9 @@ package model.task.mineralogy
 import application.Mineralogy.logger
 import model.exception.GeoTaskException
 import model.file.MicromineTextFile
+import model.file.MicromineTextReader
 import model.task.GeoTaskOneFile
-import java.io.BufferedReader
 import java.io.IOException
-import java.nio.charset.Charset
-import java.nio.file.Files
 import java.nio.file.InvalidPathException
 import java.nio.file.Path
 import java.nio.file.Paths
@@ -32,6 +30,12 @@ constructor(parameters: Map<String, Any>): GeoTaskOneFile(parameters) {
 
   private var intervalWellsFile: MicromineTextFile
 
+  // смещения в файле строк каждой скважины (в порядке следования в файле)
+  private val linesOfWells = HashMap<String, OffsetsOfLines>()
+
+  // файл, из которого по смещениям читаются строки текущей скважины
+  private var inputReader: MicromineTextReader? = null
+
   init {
     checkInputParameters()
     intervalWellsFile = MicromineTextFile(outputFilePath)
@@ -39,29 +43,36 @@ constructor(parameters: Map<String, Any>): GeoTaskOneFile(parameters) {
 
   @Throws(SecurityException::class, IOException::class)
   override fun getTableFromFile(): Collection<Any?> {
-    val br: BufferedReader = Files.newBufferedReader(inputFilePath,
-            Charset.forName("windows-1251"))
     val probesID = ArrayList<String>()
-    var firstLineOfFile = true
-    /* Сначала из файла считываются все уникальные id скважин */
-    br.use { // try с ресурсами
-      var noEnd = true
-      var line: String?
-      while (noEnd) {
-        line = it.readLine()
-        if (line != null) {
-          val lineAsList = line.split(";")
-          if (lineAsList.size < 2) throw IOException("${this.javaClass.simpleName}: error format file")
-          if (firstLineOfFile) {
-            namesOfAttributes = lineAsList // namesOfAttributes останется неизменной, поскольку дальнейшее присваивание коллекции lineAsList новых значений не повреждает коллекцию namesOfAttributes
-            intervalWellsFile.writeTitle(namesOfAttributes) // записать в выходной файл названия атрибутов
-            firstLineOfFile = false
-          } else probesID.add(lineAsList[1])
-        } else noEnd = false
+    /*
+    * Сначала из файла считываются все уникальные id скважин и смещения
+    * строк каждой скважины. Сами строки в памяти не хранятся
+    */
+    MicromineTextReader(inputFilePath, 2..Int.MAX_VALUE).use {
+      if (it.nextLine()) {
+        namesOfAttributes = it.fields()
+        intervalWellsFile.writeTitle(namesOfAttributes) // записать в выходной файл названия атрибутов
+        // все строки должны содержать столько же значений, сколько заголовок
+        it.numberOfFields = namesOfAttributes.size..namesOfAttributes.size
       }
+      var numberOfLines = 0
+      while (it.nextLine()) {
+        val idWell = it.field(1)
+        val offsets = linesOfWells[idWell]
+        if (offsets == null) {
+          probesID.add(idWell)
+          linesOfWells[idWell] = OffsetsOfLines(it.offsetOfLine)
+        } else offsets.add(it.offsetOfLine)
+        numberOfLines++
+      }
+      if (probesID.isEmpty()) throw IOException("${this.javaClass.simpleName}: file is empty")
+      // вернуть набор уникальных id скважин. Емкость множества такая же,
+      // как у множества из id всех строк, - чтобы порядок перебора
+      // скважин (и порядок записи в выходной файл) не зависел от индекса
+      val setOfID = HashSet<String>(Math.max((numberOfLines / .75f).toInt() + 1, 16))
+      setOfID.addAll(probesID)
+      return setOfID
     }
-    if (probesID.isEmpty()) throw IOException("${this.javaClass.simpleName}: file is empty")
-    return HashSet(probesID) // вернуть набор уникальных id скважин
   }
 
   @Throws(GeoTaskException::class)
@@ -69,35 +80,21 @@ constructor(parameters: Map<String, Any>): GeoTaskOneFile(parameters) {
     try {
       val idWell = any as String
 
-      val br: BufferedReader = Files.newBufferedReader(inputFilePath,
-              Charset.forName("windows-1251"))
-
       val probesForCurrentWell = ArrayList<Map<String, String>>()
       /*
-      * Из файла считываются все пробы по текущей скважине. Чтение файла
-      * для каждой скважины производится для того, чтобы не загружать
-      * весь файл в память, т.к. он может занимать несколько десятков мб
+      * Из файла считываются все пробы по текущей скважине - по смещениям
+      * строк, найденным при первом чтении файла. Файл не загружается
+      * в память целиком, т.к. он может занимать несколько десятков мб
       */
-      br.use { // try с ресурсами
-        var noEnd = true
-        var line: String?
-        while (noEnd) {
-          line = it.readLine()
-          if (line != null) {
-            val currentLineAsList: List<String> = line.split(";")
-            if (currentLineAsList.size != namesOfAttributes.size) {
-              throw GeoTaskException("${this.javaClass.simpleName}: Amount values for current line " +
-                      "not correspond with amount fields of attributes")
-            }
-            if (currentLineAsList[1] == idWell) {
-              val iterator = namesOfAttributes.iterator()
-              // создать отображение с парами: название атрибута - его значение
-              val v = currentLineAsList.associate { value -> Pair(iterator.next(), value)}
-              probesForCurrentWell.add(v)
-            }
-          }
-          else noEnd = false
-        }
+      val reader = inputReader ?: MicromineTextReader(inputFilePath)
+      inputReader = reader
+      linesOfWells[idWell]?.forEach { offset ->
+        reader.seek(offset)
+        reader.nextLine()
+        val iterator = namesOfAttributes.iterator()
+        // создать отображение с парами: название атрибута - его значение
+        val v = reader.fields().associate { value -> Pair(iterator.next(), value)}
+        probesForCurrentWell.add(v)
       }
 
       val probesWithMSD: List<Map<String, String>> = probesForCurrentWell.filter { (it["Все_МСА"]?.toDouble() ?: 0.0) > 0.0 }
@@ -147,6 +144,13 @@ constructor(parameters: Map<String, Any>): GeoTaskOneFile(parameters) {
     task.printConsole("")
   }
 
+  @Throws(IOException::class)
+  override fun release() {
+    inputReader?.close()
+    inputReader = null
+    intervalWellsFile.close()
+  }
+
   override fun printReport() {
     task.printConsole("")
     task.printConsole("Преобразование завершено")
@@ -186,4 +190,21 @@ constructor(parameters: Map<String, Any>): GeoTaskOneFile(parameters) {
     if (resultSet.size == 0) resultSet.add("$fromEmpty;$toEmpty")
     return resultSet
   }
+
+  // смещения строк одной скважины
+  private class OffsetsOfLines(first: Long) {
+    private var offsets = LongArray(4)
+    private var size = 0
+
+    init { add(first) }
+
+    fun add(offset: Long) {
+      if (size == offsets.size) offsets = offsets.copyOf(size * 2)
+      offsets[size++] = offset
+    }
+
+    inline fun forEach(action: (Long) -> Unit) {
+      for (i in 0 until size) action(offsets[i])
+    }
+  }
 }
@@ -0,0 +1,29 @@
+package model.task.mineralogy
+
+import model.exception.GeoTaskException
+
+/**
+ * Данные одного входного excel-файла, подготовленные для записи в файлы
+ * устьев, интервалов и точек (см. GeoTaskManyFiles.prepare). Скважинам
+ * присваиваются локальные идентификаторы (IDW), начиная с нуля; при
+ * записи они сдвигаются на количество скважин, записанных ранее, поэтому
+ * идентификаторы получаются такими же, как при последовательной
+ * обработке файлов.
+ */
+class WellsOfFile {
+  var topWells: MutableList<MutableMap<String, String>> = ArrayList()
+  var intervalWells: MutableList<MutableMap<String, String>> = ArrayList()
+  var dotWells: List<MutableMap<String, String>> = ArrayList()
+
+  /** Название объекта для таблицы "Пробы без МСА", иначе - null */
+  var nameOfObject: String? = null
+
+  /** Количество использованных идентификаторов скважин */
+  var numberOfWells = 0
+
+  /** Сообщения для консоли, которые выводятся при записи данных файла */
+  val messages: MutableList<String> = ArrayList()
+
+  /** Ошибка обработки файла, которая сообщается при записи данных файла */
+  var error: GeoTaskException? = null
+}
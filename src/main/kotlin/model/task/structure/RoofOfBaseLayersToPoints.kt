@@ -18,27 +18,28 @@ import model.constants.IsihogyClientConstants.typeOfWellCodesSheetName
 import model.exception.DataException
 import model.exception.ExcelException
 import model.exception.GeoTaskException
+import model.file.ExcelWorkbook
 import model.file.MicromineTextFile
 import model.task.GeoTaskManyFiles
 import model.utils.*
 import model.utils.CollectionUtils.copyListWithSubMap
 import model.utils.ExcelUtils.getCodesOfIsihogyClient
-import model.utils.ExcelUtils.getSheetOfIsihogyClient
 import model.utils.ExcelUtils.getTableOfIsihogyClient
 import model.utils.ExcelUtils.getTitleTableOfIsihogyClient
+import model.utils.ExcelUtils.openWorkbookOfIsihogyClient
 import model.utils.IsihogyClientUtils.absOfFromTo
 import model.utils.IsihogyClientUtils.checkOnMissDataXYZDAndFix
 import model.utils.IsihogyClientUtils.decodingField
 import model.utils.IsihogyClientUtils.deleteDecimalPart
 import model.utils.IsihogyClientUtils.interchangeXY
 import model.utils.IsihogyClientUtils.makeAmendment
+import model.utils.TableIndex
 import java.io.File
 import java.io.File.separator as s
 import java.io.IOException
 import java.nio.file.InvalidPathException
 import java.nio.file.Path
 import java.nio.file.Paths
-import java.util.stream.Collectors
 
 class RoofOfBaseLayersToPoints
 
@@ -55,6 +56,10 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
     private set
 
   /* объект для записи точечных данных в файл micromine */
+  // атрибуты точки наблюдения, которые добавляются к стратиграфическим слоям
+  private val necessaryAttributes = listOf(nameOfAttributeX, nameOfAttributeY,
+          nameOfAttributeZ, nameOfAttributeCodeTypeTN)
+
   private lateinit var dotWellsFile: MicromineTextFile
 
   // список строк из листа "Точки наблюдений" (на базе текущего excel-файла)
@@ -74,14 +79,15 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
     inputFiles = ExcelUtils.listOfExcelFiles(inputFolder)
     if (inputFiles.isNotEmpty()) {
       // взять заголовок для выходного файла из первого входного файла
-      createOutputFile(inputFiles[0])
+      openWorkbookOfIsihogyClient(inputFiles[0]).use { createOutputFile(it) }
     }
   }
 
   @Throws(GeoTaskException::class)
   override fun perform(file: File) {
     try {
-      getTablesAndDecodeFields(file)
+      // книга открывается один раз для чтения всех листов
+      openWorkbookOfIsihogyClient(file).use { getTablesAndDecodeFields(it) }
       deleteDecimalPart(nameOfAttributeID, observationsPointsTable)
       val mistakes = checkOnMissDataXYZDAndFix(observationsPointsTable)
       if (mistakes.isNotEmpty()) {
@@ -92,15 +98,11 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
       if (useAmendment) makeAmendment(observationsPointsTable)
       deleteDecimalPart(nameOfAttributeID, stratigraphicTable)
       stratigraphicTable = stratigraphicTable.leavingTopBaseLayers()
+      val observationsPoints = TableIndex(observationsPointsTable)
       stratigraphicTable.forEach { layer ->
-        if (observationsPointsTable.any {it[nameOfAttributeID] == layer[nameOfAttributeID]}) {
-          val necessaryAttributes = observationsPointsTable.first { it[nameOfAttributeID] == layer[nameOfAttributeID] }
-          necessaryAttributes.keys.retainAll(listOf(nameOfAttributeX, nameOfAttributeY,
-                  nameOfAttributeZ, nameOfAttributeCodeTypeTN))
-          // вставить необходимые пары ключ-значение из листа "Точки наблюдений"
-          // в таблицу со стратиграфией
-          layer.putAll(necessaryAttributes)
-        } else {
+        // вставить необходимые пары ключ-значение из листа "Точки наблюдений"
+        // в таблицу со стратиграфией
+        if (!observationsPoints.joinTo(layer, necessaryAttributes)) {
           task.printConsole("Для стратиграфического слоя нет данных по " +
                   "точке наблюдения")
           logger.info("For stratigraphic layer not information by observation point. " +
@@ -144,16 +146,16 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
   }
 
   @Throws(ExcelException::class, IOException::class)
-  private fun createOutputFile(file: File) {
+  private fun createOutputFile(workbook: ExcelWorkbook) {
 
     val titleObservationsPoints = getTitleTableOfIsihogyClient(
-            getSheetOfIsihogyClient(file, observationsPointsSheetName))
+            workbook, observationsPointsSheetName)
     if (titleObservationsPoints.isEmpty()) {
       throw ExcelException("Нет названий полей в листе для точек наблюдений")
     }
 
     val titleLithostratigraphic = getTitleTableOfIsihogyClient(
-            getSheetOfIsihogyClient(file, lithostratigraphicSheetName))
+            workbook, lithostratigraphicSheetName)
     if (titleLithostratigraphic.isEmpty()) {
       throw ExcelException("Нет названий полей в листе для литостратиграфии")
     }
@@ -168,23 +170,22 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
   }
 
   @Throws(ExcelException::class, DataException::class)
-  private fun getTablesAndDecodeFields(file: File) {
-    var sheet = getSheetOfIsihogyClient(file, observationsPointsSheetName)
-    observationsPointsTable = getTableOfIsihogyClient(sheet)
+  private fun getTablesAndDecodeFields(workbook: ExcelWorkbook) {
+    observationsPointsTable = getTableOfIsihogyClient(
+            workbook, observationsPointsSheetName)
     if (observationsPointsTable.isEmpty()) {
       logger.info("The excel list for points of observations is empty")
       throw DataException("Лист excel с точками наблюдений - пуст")
     }
 
-    sheet = getSheetOfIsihogyClient(file, stateDocumentationCodesSheetName)
-    val stateDocumentationCodes = getCodesOfIsihogyClient(sheet)
+    val stateDocumentationCodes = getCodesOfIsihogyClient(
+            workbook, stateDocumentationCodesSheetName)
     if (stateDocumentationCodes.isEmpty()) {
       logger.info("The excel list for codes of state documentation is empty")
       throw DataException("Лист excel с кодами состояния документирования - пуст")
     }
 
-    sheet = getSheetOfIsihogyClient(file, typeOfWellCodesSheetName)
-    val typeOfWellCodes = getCodesOfIsihogyClient(sheet)
+    val typeOfWellCodes = getCodesOfIsihogyClient(workbook, typeOfWellCodesSheetName)
     if (typeOfWellCodes.isEmpty()) {
       logger.info("The excel list for codes of type of well is empty")
       throw DataException("Лист excel с кодами типов скважин - пуст")
@@ -198,22 +199,20 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
     decodingField(observationsPointsTable, stateDocumentationCodes)
     decodingField(observationsPointsTable, typeOfWellCodes)
 
-    sheet = getSheetOfIsihogyClient(file, lithostratigraphicSheetName)
-    stratigraphicTable = getTableOfIsihogyClient(sheet)
+    stratigraphicTable = getTableOfIsihogyClient(workbook, lithostratigraphicSheetName)
     if (stratigraphicTable.isEmpty()) {
       logger.info("The excel list for stratigraphic is empty")
       throw DataException("Лист excel со стратиграфией - пуст")
     }
 
-    sheet = getSheetOfIsihogyClient(file, stratigraphicCodesSheetName)
-    val stratigraphicCodes = getCodesOfIsihogyClient(sheet)
+    val stratigraphicCodes = getCodesOfIsihogyClient(
+            workbook, stratigraphicCodesSheetName)
     if (stratigraphicCodes.isEmpty()) {
       logger.info("The excel list for stratigraphic codes is empty")
       throw DataException("Лист excel с кодами стратиграфии - пуст")
     }
 
-    sheet = getSheetOfIsihogyClient(file, lithologyCodesSheetName)
-    val lithologyCodes = getCodesOfIsihogyClient(sheet)
+    val lithologyCodes = getCodesOfIsihogyClient(workbook, lithologyCodesSheetName)
     if (lithologyCodes.isEmpty()) {
       logger.info("The excel list for lithology codes is empty")
       throw DataException("Лист excel с кодами литологии - пуст")
@@ -235,6 +234,11 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
     task.printConsole("")
   }
 
+  @Throws(IOException::class)
+  override fun release() {
+    if (::dotWellsFile.isInitialized) dotWellsFile.close()
+  }
+
   override fun printReport() {
     task.printConsole("")
     task.printConsole("Файл точек для Micromine, полученных по " +
@@ -263,11 +267,10 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
   } */
   private fun List<MutableMap<String, String>>.leavingTopBaseLayers(): List<MutableMap<String, String>> {
     val baseLayers = ArrayList<MutableMap<String, String>>()
-    val ids = this.stream() // получить набор уникальных id скважин
-            .map { it[nameOfAttributeID] }
-            .collect(Collectors.toSet())
-    ids.forEach { idWell -> // перебор скважин
-      val layersForCurrentWell = this.filter { it[nameOfAttributeID] == idWell }
+    val layersOfWells = GroupedTable(this)
+    // перебор скважин (в прежнем порядке - от него зависит порядок точек)
+    layersOfWells.keysInHashOrder().forEach { idWell ->
+      val layersForCurrentWell = layersOfWells[idWell]
       val firstBaseLayer: Map<String, String>?
       // найти первое совпадение с индексом вмещающих отложений
        // перебор всех индексов вмещающих отложений
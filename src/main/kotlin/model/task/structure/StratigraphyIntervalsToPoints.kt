@@ -3,8 +3,16 @@ package model.task.structure
 import application.Mineralogy.logger
 import model.constants.IsihogyClientConstants.lithologyCodesSheetName
 import model.constants.IsihogyClientConstants.lithostratigraphicSheetName
+import model.constants.IsihogyClientConstants.nameOfAttributeDepth
+import model.constants.IsihogyClientConstants.nameOfAttributeFrom
 import model.constants.IsihogyClientConstants.nameOfAttributeID
 import model.constants.IsihogyClientConstants.nameOfAttributeLCodeAge
+import model.constants.IsihogyClientConstants.nameOfAttributeProjectX
+import model.constants.IsihogyClientConstants.nameOfAttributeProjectY
+import model.constants.IsihogyClientConstants.nameOfAttributeTo
+import model.constants.IsihogyClientConstants.nameOfAttributeX
+import model.constants.IsihogyClientConstants.nameOfAttributeY
+import model.constants.IsihogyClientConstants.nameOfAttributeZ
 import model.constants.IsihogyClientConstants.observationsPointsSheetName
 import model.constants.IsihogyClientConstants.stateDocumentationCodesSheetName
 import model.constants.IsihogyClientConstants.stratigraphicCodesSheetName
@@ -12,19 +20,21 @@ import model.constants.IsihogyClientConstants.typeOfWellCodesSheetName
 import model.exception.DataException
 import model.exception.ExcelException
 import model.exception.GeoTaskException
+import model.file.ExcelWorkbook
 import model.file.MicromineTextFile
 import model.task.GeoTaskManyFiles
 import model.utils.*
 import model.utils.CollectionUtils.copyListWithSubMap
 import model.utils.ExcelUtils.getCodesOfIsihogyClient
-import model.utils.ExcelUtils.getSheetOfIsihogyClient
 import model.utils.ExcelUtils.getTableOfIsihogyClient
 import model.utils.ExcelUtils.getTitleTableOfIsihogyClient
+import model.utils.ExcelUtils.openWorkbookOfIsihogyClient
 import model.utils.IsihogyClientUtils.checkOnMissDataXYZDAndFix
 import model.utils.IsihogyClientUtils.decodingField
 import model.utils.IsihogyClientUtils.deleteDecimalPart
 import model.utils.IsihogyClientUtils.interchangeXY
 import model.utils.IsihogyClientUtils.makeAmendment
+import model.utils.TableIndex
 import java.io.File
 import java.io.File.separator as s
 import java.io.IOException
@@ -83,19 +93,32 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
 
   private lateinit var outputFilePath: Path
 
+  // в выходной файл попадают только координаты точек и атрибут
+  // выделенного пласта, поэтому из листов читаются только столбцы,
+  // необходимые для их вычисления
+  private val observationsPointsColumns = setOf(nameOfAttributeID, nameOfAttributeX,
+          nameOfAttributeY, nameOfAttributeZ, nameOfAttributeProjectX,
+          nameOfAttributeProjectY, nameOfAttributeDepth)
+  private val stratigraphicColumns = setOf(nameOfAttributeID, nameOfAttributeFrom,
+          nameOfAttributeTo, nameOfAttributeLCodeAge)
+  // атрибуты точки наблюдения, которые добавляются к стратиграфическим слоям
+  private val coordinatesOfObservationPoint = listOf(nameOfAttributeX,
+          nameOfAttributeY, nameOfAttributeZ)
+
   init {
     checkInputParameters()
     inputFiles = ExcelUtils.listOfExcelFiles(inputFolder)
     if (inputFiles.isNotEmpty()) {
       // взять заголовок для выходного файла из первого входного файла
-      createOutputFile(inputFiles[0])
+      openWorkbookOfIsihogyClient(inputFiles[0]).use { createOutputFile(it) }
     }
   }
 
   @Throws(GeoTaskException::class)
   override fun perform(file: File) {
     try {
-      getTablesAndDecodeFields(file)
+      // книга открывается один раз для чтения всех листов
+      openWorkbookOfIsihogyClient(file).use { getTablesAndDecodeFields(it) }
       deleteDecimalPart(nameOfAttributeID, observationsPointsTable)
       val mistakes = checkOnMissDataXYZDAndFix(observationsPointsTable)
 
@@ -124,15 +147,12 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
         correctPointsOfIntervals(stratigraphicTable)
       }
       // объединить таблицы с данными стратиграфии и данными точек наблюдений
+      val observationsPoints = TableIndex(observationsPointsTable)
       stratigraphicTable.forEach { row ->
         // если в таблице "Точки наблюдений" найдена скважина с таким же id
-        // как и у стратиграфического слоя
-        if (observationsPointsTable.any { it[nameOfAttributeID] == row[nameOfAttributeID] }) {
-          // вставить все пары ключ-значение из листа "Точки наблюдений"
-          // в таблицу со стратиграфией
-          row.putAll(observationsPointsTable
-                  .first { it[nameOfAttributeID] == row[nameOfAttributeID] })
-        } else {
+        // как и у стратиграфического слоя, вставить из нее в таблицу со
+        // стратиграфией координаты, которые остаются в выходном файле
+        if (!observationsPoints.joinTo(row, coordinatesOfObservationPoint)) {
           task.printConsole("Для стратиграфического слоя нет данных по " +
                   "точке наблюдения")
           logger.info("For stratigraphic layer not information by observation point. " +
@@ -185,16 +205,16 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
   }
 
   @Throws(ExcelException::class, IOException::class)
-  private fun createOutputFile(file: File) {
+  private fun createOutputFile(workbook: ExcelWorkbook) {
 
     val titleObservationsPoints = getTitleTableOfIsihogyClient(
-            getSheetOfIsihogyClient(file, observationsPointsSheetName))
+            workbook, observationsPointsSheetName)
     if (titleObservationsPoints.isEmpty()) {
       throw ExcelException("Нет названий полей в листе для точек наблюдений")
     }
 
     val titleLithostratigraphic = getTitleTableOfIsihogyClient(
-            getSheetOfIsihogyClient(file, lithostratigraphicSheetName))
+            workbook, lithostratigraphicSheetName)
     if (titleLithostratigraphic.isEmpty()) {
       throw ExcelException("Нет названий полей в листе для литостратиграфии")
     }
@@ -205,23 +225,22 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
   }
 
   @Throws(ExcelException::class, DataException::class)
-  private fun getTablesAndDecodeFields(file: File) {
-    var sheet = getSheetOfIsihogyClient(file, observationsPointsSheetName)
-    observationsPointsTable = getTableOfIsihogyClient(sheet)
+  private fun getTablesAndDecodeFields(workbook: ExcelWorkbook) {
+    observationsPointsTable = getTableOfIsihogyClient(workbook,
+            observationsPointsSheetName, observationsPointsColumns)
     if (observationsPointsTable.isEmpty()) {
       logger.info("The excel list for points of observations is empty")
       throw DataException("Лист excel с точками наблюдений - пуст")
     }
 
-    sheet = getSheetOfIsihogyClient(file, stateDocumentationCodesSheetName)
-    val stateDocumentationCodes = getCodesOfIsihogyClient(sheet)
+    val stateDocumentationCodes = getCodesOfIsihogyClient(
+            workbook, stateDocumentationCodesSheetName)
     if (stateDocumentationCodes.isEmpty()) {
       logger.info("The excel list for codes of state documentation is empty")
       throw DataException("Лист excel с кодами состояния документирования - пуст")
     }
 
-    sheet = getSheetOfIsihogyClient(file, typeOfWellCodesSheetName)
-    val typeOfWellCodes = getCodesOfIsihogyClient(sheet)
+    val typeOfWellCodes = getCodesOfIsihogyClient(workbook, typeOfWellCodesSheetName)
     if (typeOfWellCodes.isEmpty()) {
       logger.info("The excel list for codes of type of well is empty")
       throw DataException("Лист excel с кодами типов скважин - пуст")
@@ -235,22 +254,21 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
     decodingField(observationsPointsTable, stateDocumentationCodes)
     decodingField(observationsPointsTable, typeOfWellCodes)
 
-    sheet = getSheetOfIsihogyClient(file, lithostratigraphicSheetName)
-    stratigraphicTable = getTableOfIsihogyClient(sheet)
+    stratigraphicTable = getTableOfIsihogyClient(workbook,
+            lithostratigraphicSheetName, stratigraphicColumns)
     if (stratigraphicTable.isEmpty()) {
       logger.info("The excel list for stratigraphic is empty")
       throw DataException("Лист excel со стратиграфией - пуст")
     }
 
-    sheet = getSheetOfIsihogyClient(file, stratigraphicCodesSheetName)
-    val stratigraphicCodes = getCodesOfIsihogyClient(sheet)
+    val stratigraphicCodes = getCodesOfIsihogyClient(
+            workbook, stratigraphicCodesSheetName)
     if (stratigraphicCodes.isEmpty()) {
       logger.info("The excel list for stratigraphic codes is empty")
       throw DataException("Лист excel с кодами стратиграфии - пуст")
     }
 
-    sheet = getSheetOfIsihogyClient(file, lithologyCodesSheetName)
-    val lithologyCodes = getCodesOfIsihogyClient(sheet)
+    val lithologyCodes = getCodesOfIsihogyClient(workbook, lithologyCodesSheetName)
     if (lithologyCodes.isEmpty()) {
       logger.info("The excel list for lithology codes is empty")
       throw DataException("Лист excel с кодами литологии - пуст")
@@ -280,6 +298,11 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
     task.printConsole("")
   }
 
+  @Throws(IOException::class)
+  override fun release() {
+    if (::dotWellsFile.isInitialized) dotWellsFile.close()
+  }
+
   override fun printReport() {
     task.printConsole("")
     task.printConsole("Файл точек для Micromine, полученных по " +
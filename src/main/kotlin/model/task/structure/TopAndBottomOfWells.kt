@@ -2,21 +2,25 @@ package model.task.structure
 
 import application.Mineralogy.logger
 import model.constants.IsihogyClientConstants.nameOfAttributeBottomWell
+import model.constants.IsihogyClientConstants.nameOfAttributeDepth
 import model.constants.IsihogyClientConstants.nameOfAttributeID
+import model.constants.IsihogyClientConstants.nameOfAttributeProjectX
+import model.constants.IsihogyClientConstants.nameOfAttributeProjectY
 import model.constants.IsihogyClientConstants.observationsPointsSheetName
 import model.constants.IsihogyClientConstants.stateDocumentationCodesSheetName
 import model.exception.DataException
 import model.exception.ExcelException
 import model.exception.GeoTaskException
+import model.file.ExcelWorkbook
 import model.file.MicromineTextFile
 import model.task.GeoTaskManyFiles
 import model.utils.CollectionUtils.copyListWithSubMap
 import model.utils.CollectionUtils.retainRequiredFields
 import model.utils.ExcelUtils
 import model.utils.ExcelUtils.getCodesOfIsihogyClient
-import model.utils.ExcelUtils.getSheetOfIsihogyClient
 import model.utils.ExcelUtils.getTableOfIsihogyClient
 import model.utils.ExcelUtils.getTitleTableOfIsihogyClient
+import model.utils.ExcelUtils.openWorkbookOfIsihogyClient
 import model.utils.IsihogyClientUtils.checkOnMissDataXYZDAndFix
 import model.utils.IsihogyClientUtils.decodingField
 import model.utils.IsihogyClientUtils.deleteDecimalPart
@@ -59,6 +63,11 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
   /* общее количество точек для файла точек */
   private var overallNumberDotWells = 0
   private val requiredFields = setOf("ID ТН", "X факт.", "Y факт.", "Z", "D", "UIN")
+  // столбцы листа "Точки наблюдений", которые нужно прочитать, если
+  // экспортируются не все поля: кроме выходных полей нужны проектные
+  // координаты и глубина для исправления ошибок и вычисления забоя
+  private val requiredColumns = requiredFields + setOf(nameOfAttributeProjectX,
+          nameOfAttributeProjectY, nameOfAttributeDepth)
   private lateinit var outputFilePath: Path
 
   init {
@@ -66,14 +75,15 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
     inputFiles = ExcelUtils.listOfExcelFiles(inputFolder)
     if (inputFiles.isNotEmpty()) {
       // взять заголовок для выходного файла из первого входного файла
-      createOutputFile(inputFiles[0])
+      openWorkbookOfIsihogyClient(inputFiles[0]).use { createOutputFile(it) }
      }
   }
 
   @Throws(GeoTaskException::class)
   override fun perform(file: File) {
     try {
-      getTablesAndDecodeFields(file)
+      // книга открывается один раз для чтения всех листов
+      openWorkbookOfIsihogyClient(file).use { getTablesAndDecodeFields(it) }
       deleteDecimalPart(nameOfAttributeID, observationsPointsTable)
       val mistakes = checkOnMissDataXYZDAndFix(observationsPointsTable)
       if (mistakes.isNotEmpty()) {
@@ -114,9 +124,9 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
   }
 
   @Throws(ExcelException::class, IOException::class)
-  private fun createOutputFile(file: File) {
+  private fun createOutputFile(workbook: ExcelWorkbook) {
     val titleObservationsPoints = getTitleTableOfIsihogyClient(
-            getSheetOfIsihogyClient(file, observationsPointsSheetName))
+            workbook, observationsPointsSheetName)
     if (titleObservationsPoints.isEmpty()) {
       throw ExcelException("Нет названий полей в листе для точек наблюдений")
     }
@@ -128,16 +138,16 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
   }
 
   @Throws(ExcelException::class, DataException::class)
-  private fun getTablesAndDecodeFields(file: File) {
-    var sheet = getSheetOfIsihogyClient(file, observationsPointsSheetName)
-    observationsPointsTable = getTableOfIsihogyClient(sheet)
+  private fun getTablesAndDecodeFields(workbook: ExcelWorkbook) {
+    observationsPointsTable = getTableOfIsihogyClient(workbook,
+            observationsPointsSheetName, if (exportAllFields) null else requiredColumns)
     if (observationsPointsTable.isEmpty()) {
       logger.info("The excel list for points of observations is empty")
       throw DataException("Лист excel с точками наблюдений - пуст")
     }
 
-    sheet = getSheetOfIsihogyClient(file, stateDocumentationCodesSheetName)
-    val stateDocumentationCodes = getCodesOfIsihogyClient(sheet)
+    val stateDocumentationCodes = getCodesOfIsihogyClient(
+            workbook, stateDocumentationCodesSheetName)
     if (stateDocumentationCodes.isEmpty()) {
       logger.info("The excel list for codes of state documentation is empty")
       throw DataException("Лист excel с кодами состояния документирования - пуст")
@@ -158,6 +168,11 @@ constructor(parameters: Map<String, Any>): GeoTaskManyFiles(parameters) {
     task.printConsole("")
   }
 
+  @Throws(IOException::class)
+  override fun release() {
+    if (::dotWellsFile.isInitialized) dotWellsFile.close()
+  }
+
   override fun printReport() {
     task.printConsole("")
     task.printConsole("Файл точек с абсолютными отметками по " +
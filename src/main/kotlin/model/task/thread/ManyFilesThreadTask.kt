@@ -7,6 +7,11 @@ import model.task.GeoTask
 import model.task.GeoTaskManyFiles
 import model.task.TypeOfGeoTask
 import java.io.IOException
+import java.util.ArrayDeque
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
 
 /**
  * Реализация отдельного потока JavaFX для геозадачи, которая считывает данные
@@ -14,18 +19,42 @@ import java.io.IOException
  * управление выводом информации на консоль; контроль и обработка ошибок,
  * которые могут возникать при выпольнении геозадачи; управление индикатором
  * выполнения.
- * [nameOfTask] - название задачи
- * [parameters] - список параметров, необходимых для выполнения текщей задачи
+ * [createTask] - создание задачи
+ * [parallel] - если false, файлы обрабатываются по очереди, даже когда
+ * задача поддерживает параллельную подготовку
  */
-class ManyFilesThreadTask(private val nameOfTask: String,
-                          private val parameters: Map<String, Any>):
+class ManyFilesThreadTask private constructor(private val createTask: () -> GeoTask,
+                                              private val parallel: Boolean):
         ThreadTask() {
 
+  /**
+   * [nameOfTask] - название задачи
+   * [parameters] - список параметров, необходимых для выполнения текщей задачи
+   */
+  constructor(nameOfTask: String, parameters: Map<String, Any>):
+          this({ TypeOfGeoTask.getType(nameOfTask, parameters) }, true)
+
+  /** Для задачи [geoTask], созданной заранее (используется в тесте) */
+  internal constructor(geoTask: GeoTask, parallel: Boolean): this({ geoTask }, parallel)
+
+  // созданная задача (ресурсы которой нужно освободить по окончании)
+  private var createdTask: GeoTask? = null
+
   @Throws(Exception::class)
   public override fun call(): Boolean {
+    try {
+      return performTask()
+    } finally {
+      createdTask?.release() // закрыть выходные файлы задачи
+    }
+  }
+
+  @Throws(Exception::class)
+  private fun performTask(): Boolean {
     val geoTask: GeoTask
     try {
-      geoTask = TypeOfGeoTask.getType(nameOfTask, parameters)
+      geoTask = createTask()
+      createdTask = geoTask
       if (geoTask !is GeoTaskManyFiles) {
         printConsole("Задача не реализована")
         logger.info("Task not realized")
@@ -38,6 +67,8 @@ class ManyFilesThreadTask(private val nameOfTask: String,
       }
       geoTask.setThreadingTask(this)
       geoTask.printIntro()
+      // выходные файлы записываются отдельными потоками
+      geoTask.writeBehindFiles.forEach { it.startWriteBehind() }
     } catch (e: IllegalArgumentException) {
       printConsole("Входные параметры неверны") // или неверное название задачи
       logger.info(e.message)
@@ -61,14 +92,32 @@ class ManyFilesThreadTask(private val nameOfTask: String,
       logger.info(e.message)
       return false
     }
+    val completed = if (parallel && geoTask.parallelPreparing && geoTask.inputFiles.size > 1) {
+      performParallel(geoTask)
+    } else performSequential(geoTask)
+    if (!completed) return false
+    try { // дождаться записи выходных файлов
+      geoTask.writeBehindFiles.forEach { it.awaitWriting() }
+    } catch (e: IOException) {
+      printConsole("Ошибка записи данных в файл")
+      logger.info("Error write data to output file: ${e.message}")
+      return false
+    }
+    geoTask.printReport()
+
+    updateProgress(1.0, 1.0)
+    updateTitle("100%")
+    return true
+  }
+
+  // файлы обрабатываются по очереди в текущем потоке
+  private fun performSequential(geoTask: GeoTaskManyFiles): Boolean {
     val increment: Double = 1.0 / geoTask.inputFiles.size
     var performed = 0.0
 
     for (excelFile in geoTask.inputFiles) {
       if (this.isCancelled) { // если задача была остановлена извне
-        logger.info("Canceled task")
-        printConsole("Выполнение задачи остановлено")
-        clearProgressBar()
+        cancelTask()
         return false // принудительно выйти (чтобы не проходить все итерации)
       }
       printConsole("Чтение файла: ${excelFile.name}")
@@ -82,10 +131,67 @@ class ManyFilesThreadTask(private val nameOfTask: String,
       updateProgress(performed, 1.0)
       updateTitle("${(performed * 100).toInt()}%")
     }
-    geoTask.printReport()
+    return true
+  }
 
-    updateProgress(1.0, 1.0)
-    updateTitle("100%")
+  // данные файлов подготавливаются одновременно в пуле потоков, а
+  // записываются в текущем потоке в порядке следования файлов - поэтому
+  // выходные файлы и вывод на консоль такие же, как при последовательной
+  // обработке. Количество одновременно подготовленных файлов ограничено,
+  // чтобы не держать в памяти данные всех файлов.
+  private fun performParallel(geoTask: GeoTaskManyFiles): Boolean {
+    val files = geoTask.inputFiles
+    val numberOfThreads = Math.max(1, Math.min(files.size,
+            Runtime.getRuntime().availableProcessors()))
+    val executor = Executors.newFixedThreadPool(numberOfThreads) { runnable ->
+      val thread = Thread(runnable, "prepare-file")
+      thread.isDaemon = true
+      thread
+    }
+    val preparedFiles = ArrayDeque<Future<Any?>>()
+    var nextFile = 0
+    val increment: Double = 1.0 / files.size
+    var performed = 0.0
+    try {
+      for (excelFile in files) {
+        while (nextFile < files.size && preparedFiles.size < 2 * numberOfThreads) {
+          val file = files[nextFile++]
+          preparedFiles.add(executor.submit(Callable { geoTask.prepare(file) }))
+        }
+        if (this.isCancelled) { // если задача была остановлена извне
+          cancelTask()
+          return false
+        }
+        printConsole("Чтение файла: ${excelFile.name}")
+        try {
+          geoTask.commit(excelFile, preparedFiles.poll().get())
+        } catch (e: ExecutionException) {
+          val cause = e.cause
+          if (cause is GeoTaskException) {
+            printConsole(cause.message)
+          } else {
+            logger.info(cause?.message)
+            printConsole("Неизвестная ошибка")
+          }
+        } catch (e: GeoTaskException) {
+          printConsole(e.message)
+        }
+        performed += increment
+        updateProgress(performed, 1.0)
+        updateTitle("${(performed * 100).toInt()}%")
+      }
+    } catch (e: InterruptedException) { // поток прерван при отмене задачи
+      cancelTask()
+      return false
+    } finally {
+      executor.shutdownNow()
+    }
     return true
   }
+
+  private fun cancelTask() {
+    logger.info("Canceled task")
+    printConsole("Выполнение задачи остановлено")
+    clearProgressBar()
+  }
 }
\ No newline at end of file
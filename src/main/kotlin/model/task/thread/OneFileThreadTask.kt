@@ -6,6 +6,8 @@ import model.task.GeoTask
 import model.task.GeoTaskOneFile
 import model.task.TypeOfGeoTask
 import java.io.IOException
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.RecursiveAction
 
 /**
  * Реализация отдельного потока JavaFX для геозадачи, которая
@@ -13,19 +15,43 @@ import java.io.IOException
  * данного класса - управление выводом информации на консоль;
  * контроль и обработка ошибок, которые могут возникать при
  * выпольнении геозадачи; управление индикатором выполнения.
- * [nameOfTask] - название задачи
- * [parameters] - список параметров, необходимых для выполнения
- * текщей задачи
+ * [createTask] - создание задачи
+ * [parallel] - если false, элементы обрабатываются по очереди, даже
+ * когда задача поддерживает параллельную подготовку
  */
-class OneFileThreadTask(private val nameOfTask: String,
-                        private val parameters: Map<String, Any>):
+class OneFileThreadTask private constructor(private val createTask: () -> GeoTask,
+                                            private val parallel: Boolean):
         ThreadTask() {
 
+  /**
+   * [nameOfTask] - название задачи
+   * [parameters] - список параметров, необходимых для выполнения
+   * текщей задачи
+   */
+  constructor(nameOfTask: String, parameters: Map<String, Any>):
+          this({ TypeOfGeoTask.getType(nameOfTask, parameters) }, true)
+
+  /** Для задачи [geoTask], созданной заранее (используется в тесте) */
+  internal constructor(geoTask: GeoTask, parallel: Boolean): this({ geoTask }, parallel)
+
+  // созданная задача (ресурсы которой нужно освободить по окончании)
+  private var createdTask: GeoTask? = null
+
+  @Throws(Exception::class)
+  public override fun call(): Boolean {
+    try {
+      return performTask()
+    } finally {
+      createdTask?.release() // закрыть выходные файлы задачи
+    }
+  }
+
   @Throws(Exception::class)
-  override fun call(): Boolean {
+  private fun performTask(): Boolean {
     val geoTask: GeoTask
     try {
-      geoTask = TypeOfGeoTask.getType(nameOfTask, parameters)
+      geoTask = createTask()
+      createdTask = geoTask
       if (geoTask !is GeoTaskOneFile) {
         printConsole("Задача не реализована")
         logger.info("Task not realized")
@@ -61,14 +87,38 @@ class OneFileThreadTask(private val nameOfTask: String,
     updateProgress(0.1, 1.0)
     updateTitle("10%")
 
+    printConsole("Вычисление задачи...")
+    val completed = if (parallel && geoTask.parallelPreparing && table.size > 1) {
+      performParallel(geoTask, table)
+    } else performSequential(geoTask, table)
+    if (!completed) return false
+    printConsole("Запись результатов в файл")
+
+    try {
+      geoTask.writeData()
+    } catch (e: SecurityException) {
+      printConsole("Доступ к файловой системе ограничен")
+      logger.info("access to the file system is denies")
+      return false
+    } catch (e: IOException) {
+      printConsole("Не удалось записать выходной файл")
+      logger.info("output file no created: ${e.message}")
+      return false
+    }
+
+    geoTask.printReport()
+    updateProgress(1.0, 1.0)
+    updateTitle("100%")
+    return true
+  }
+
+  // элементы коллекции обрабатываются по очереди в текущем потоке
+  private fun performSequential(geoTask: GeoTaskOneFile, table: Collection<Any?>): Boolean {
     val increment: Double = 0.9 / table.size
     var performed = 0.1
-    printConsole("Вычисление задачи...")
     table.forEach { line ->
       if (this.isCancelled) { // если задача была остановлена извне
-        logger.info("Canceled task")
-        printConsole("Выполнение задачи остановлено")
-        clearProgressBar()
+        cancelTask()
         return false // принудительно выйти (чтобы не проходить все итерации)
       }
 
@@ -83,23 +133,92 @@ class OneFileThreadTask(private val nameOfTask: String,
       updateProgress(performed, 1.0)
       updateTitle("${(performed * 100).toInt()}%")
     }
-    printConsole("Запись результатов в файл")
+    return true
+  }
 
+  // элементы коллекции обрабатываются блоками. Внутри блока вычисления
+  // распределяются между потоками ForkJoinPool (с перехватом работы),
+  // затем результаты блока сохраняются в текущем потоке в порядке
+  // итерации коллекции - поэтому выходной файл такой же, как при
+  // последовательной обработке, а в памяти хранятся результаты только
+  // одного блока.
+  private fun performParallel(geoTask: GeoTaskOneFile, table: Collection<Any?>): Boolean {
+    val lines = ArrayList(table)
+    val pool = ForkJoinPool()
+    val sizeOfBlock = pool.parallelism * elementsPerThread
+    val increment: Double = 0.9 / lines.size
+    var performed = 0.1
     try {
-      geoTask.writeData()
-    } catch (e: SecurityException) {
-      printConsole("Доступ к файловой системе ограничен")
-      logger.info("access to the file system is denies")
-      return false
-    } catch (e: IOException) {
-      printConsole("Не удалось записать выходной файл")
-      logger.info("output file no created: ${e.message}")
-      return false
+      var from = 0
+      while (from < lines.size) {
+        if (this.isCancelled) { // если задача была остановлена извне
+          cancelTask()
+          return false
+        }
+        val to = Math.min(from + sizeOfBlock, lines.size)
+        val results = arrayOfNulls<Any?>(to - from)
+        val errors = arrayOfNulls<Exception?>(to - from)
+        // мелкие элементы объединяются в порции, чтобы на каждый поток
+        // пришлось несколько порций - тогда нагрузка выравнивается
+        val sizeOfPortion = Math.max(1, (to - from) / (pool.parallelism * 8))
+        pool.invoke(PrepareAction(geoTask, lines, from, to, from, sizeOfPortion, results, errors))
+        for (i in from until to) {
+          // как при последовательной обработке, здесь обрабатываются
+          // только ошибки вычислений, остальные выбрасываются дальше
+          try {
+            errors[i - from]?.let { throw it }
+            geoTask.commit(lines[i], results[i - from])
+          } catch (e: GeoTaskException) {
+            printConsole("Ошибка вычислений. См. описание ошибки в лог-файле")
+            logger.warning(e.message)
+            return false
+          }
+        }
+        performed += increment * (to - from)
+        updateProgress(performed, 1.0)
+        updateTitle("${(performed * 100).toInt()}%")
+        from = to
+      }
+    } finally {
+      pool.shutdownNow()
     }
-
-    geoTask.printReport()
-    updateProgress(1.0, 1.0)
-    updateTitle("100%")
     return true
   }
-}
\ No newline at end of file
+
+  private fun cancelTask() {
+    logger.info("Canceled task")
+    printConsole("Выполнение задачи остановлено")
+    clearProgressBar()
+  }
+
+  // вычисления для элементов [from, to) списка [lines]; диапазон делится
+  // пополам, пока не станет не больше [sizeOfPortion]. Результаты и
+  // ошибки записываются в массивы по индексу элемента относительно [start]
+  private class PrepareAction(private val geoTask: GeoTaskOneFile,
+                              private val lines: List<Any?>,
+                              private val from: Int, private val to: Int,
+                              private val start: Int, private val sizeOfPortion: Int,
+                              private val results: Array<Any?>,
+                              private val errors: Array<Exception?>): RecursiveAction() {
+    override fun compute() {
+      if (to - from <= sizeOfPortion) {
+        for (i in from until to) {
+          try {
+            results[i - start] = geoTask.prepare(lines[i])
+          } catch (e: Exception) {
+            errors[i - start] = e
+          }
+        }
+      } else {
+        val middle = (from + to) ushr 1
+        invokeAll(PrepareAction(geoTask, lines, from, middle, start, sizeOfPortion, results, errors),
+                PrepareAction(geoTask, lines, middle, to, start, sizeOfPortion, results, errors))
+      }
+    }
+  }
+
+  companion object {
+    // количество элементов блока в расчете на один поток
+    private const val elementsPerThread = 256
+  }
+}
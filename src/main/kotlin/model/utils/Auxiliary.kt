@@ -2,11 +2,9 @@ package model.utils
 
 import model.constants.CommonConstants.nameOfAttributeGenerateZ
 import model.constants.IsihogyClientConstants.nameOfAttributeFrom
-import model.constants.IsihogyClientConstants.nameOfAttributeID
 import model.constants.IsihogyClientConstants.nameOfAttributeTo
 import model.constants.IsihogyClientConstants.nameOfAttributeZ
 import java.io.File
-import java.lang.Double.valueOf
 import java.util.*
 
 /**
@@ -22,32 +20,71 @@ import java.util.*
  */
 fun averageZByInterval(intervalWells: List<MutableMap<String, String>>,
                        nameOfZAttribute:String = "Z") {
-  var from: Double
-  var to: Double
-  var z: Double
-  for (probe in intervalWells) {
-    from = valueOf(probe["От"])
-    to = valueOf(probe["До"])
-    z = valueOf(probe["Z"])
-    from = z - from
-    to = z - to
-    var averageZ = (from + to) / 2
-    averageZ = Math.round(averageZ * 100.0) / 100.0
-    probe[nameOfZAttribute] = averageZ.toString()
+  val from = CentimetreColumn(intervalWells, "От")
+  val to = CentimetreColumn(intervalWells, "До")
+  val z = CentimetreColumn(intervalWells, "Z")
+  for (i in 0 until z.size) {
+    val absFrom = z[i] - from[i]
+    val absTo = z[i] - to[i]
+    val sum = absFrom + absTo
+    z[i] = if (sum % 2 == 0L) sum / 2 else {
+      // середина интервала приходится на половину сантиметра: она
+      // округляется так же, как при вычислении в метрах
+      val zOfWell = Centimetres.toMetres(z[i])
+      val averageZ = ((zOfWell - Centimetres.toMetres(from[i])) +
+              (zOfWell - Centimetres.toMetres(to[i]))) / 2
+      Centimetres.of(averageZ)
+    }
+  }
+  z.store(nameOfZAttribute, all = true)
+}
+
+/**
+ * Возвращает интервалы [intervalWells], отсортированные сначала по
+ * id-номеру скважины (IDW), потом по отметке кровли ("От"). Сортировка
+ * устойчивая, как у sortedWith(compareBy(...)), но значения ключей
+ * разбираются не при каждом сравнении, а один раз для каждой строки.
+ */
+fun sortByWellAndFrom(intervalWells: List<MutableMap<String, String>>):
+        MutableList<MutableMap<String, String>> {
+  if (intervalWells.size < 2) return intervalWells.toMutableList()
+  val idw = IntArray(intervalWells.size)
+  val from = DoubleArray(intervalWells.size)
+  // ключи разбираются при первом обращении (как и при сравнении строк,
+  // отметка кровли нужна только для скважин с несколькими интервалами)
+  val parsedIDW = BooleanArray(intervalWells.size)
+  val parsedFrom = BooleanArray(intervalWells.size)
+  fun idwOf(i: Int): Int {
+    if (!parsedIDW[i]) {
+      idw[i] = intervalWells[i]["IDW"]!!.toInt()
+      parsedIDW[i] = true
+    }
+    return idw[i]
+  }
+  fun fromOf(i: Int): Double {
+    if (!parsedFrom[i]) {
+      from[i] = DecimalCodec.parse(intervalWells[i]["От"]!!)
+      parsedFrom[i] = true
+    }
+    return from[i]
   }
+  val indexes = Array(intervalWells.size) { it }
+  indexes.sortWith(Comparator { a, b ->
+    val byWell = Integer.compare(idwOf(a), idwOf(b))
+    if (byWell != 0) byWell else java.lang.Double.compare(fromOf(a), fromOf(b))
+  })
+  return indexes.mapTo(ArrayList(intervalWells.size)) { intervalWells[it] }
 }
 
 /** Для дополнительных точек вычисляются абсолютные отметки */
 fun calculateAbsZForAdditionalPoints(intervalWells: List<MutableMap<String, String>>,
         nameOfZAttribute: String = "Z") {
-  var generateZ: Double
-  var absZOfWell: Double
+  var generateZ: Long // см
+  var absZOfWell: Long // см
   for (probe in intervalWells) {
-    generateZ = probe[nameOfAttributeGenerateZ]?.toDouble() ?: 2000.0
-    absZOfWell = probe["Z"]?.toDouble() ?: 1000.0
-    var newZ = absZOfWell - generateZ
-    newZ = (Math.round(newZ * 100.0) / 100.0)
-    probe[nameOfZAttribute] = newZ.toString()
+    generateZ = probe[nameOfAttributeGenerateZ]?.let { Centimetres.parse(it) } ?: 200000
+    absZOfWell = probe["Z"]?.let { Centimetres.parse(it) } ?: 100000
+    probe[nameOfZAttribute] = Centimetres.format(absZOfWell - generateZ)
   }
 }
 
@@ -70,44 +107,42 @@ fun calculateAbsZForAdditionalPoints(intervalWells: List<MutableMap<String, Stri
  */
 fun addPointsToIntervals(intervals: List<Map<String, String>>, frequency: Int = 1):
     List<MutableMap<String, String>> {
-  var start: Double // начало интервала
-  var end: Double // конец интервала
-  var length: Double // длина пробы
+  var start: Long // начало интервала, см
+  var end: Long // конец интервала, см
+  var length: Long // длина пробы, см
   val intervalsWithAdditionalPoints = ArrayList<MutableMap<String, String>>()
   intervals.forEach { interval ->
-    start = interval["От"]?.toDouble() ?: 1000.0
-    end = interval["До"]?.toDouble() ?: 1100.0
-    length = Math.round((end - start) * 100.0) / 100.0
+    start = interval["От"]?.let { Centimetres.parse(it) } ?: 100000
+    end = interval["До"]?.let { Centimetres.parse(it) } ?: 110000
+    length = end - start
     // в случае, когда точку не нужно добалять при интервале меньше
     // метра, следует использовать:
-    // val ceil = Math.ceil(length)
+    // val ceil = Math.floorDiv(length + 99, 100)
     // если интервал меньше одного метра все равно добавлять точки
-    var ceil = if (length <= 1.0) 2.0 else Math.ceil(length)
+    var ceil = if (length <= 100) 2 else Math.floorDiv(length + 99, 100).toInt()
     ceil *= frequency // участить точки
     // определить шаг, через который будут идти дополнительные точки
-    // ceil() округляет число до большего: 0.1 вернет 1. Если
-    // интервал меньше одного метра, точки добавлены не будут
-    val step = Math.round((length / ceil) * 100.0) / 100.0
-    val listOfGenerateZ = ArrayList<Double>()
+    // (округленный до сантиметров)
+    val step = Centimetres.of(Centimetres.toMetres(length) / ceil)
+    val listOfGenerateZ = LongArray(ceil + 1)
     var generateZ = start // генерируемое значение Z для каждой точки
-    listOfGenerateZ.add(generateZ)
-    // если интервал меньше метра, то и шаг будет меньше единицы
-    // и цикл не запуститься, т.е. на выходе будут только два генерируемых
-    // значения z (start и end), т.е. дополнительных точек не будет
-    for (it in 0 until ceil.toInt()) {
-      generateZ = Math.round((generateZ + step) * 100.0) / 100.0
-      listOfGenerateZ.add(generateZ)
+    listOfGenerateZ[0] = generateZ
+    for (i in 1..ceil) {
+      generateZ += step
+      listOfGenerateZ[i] = generateZ
     }
-    // перезаписать последний элемент, поскольку сумма элементов
-    // с десятичным шагом может вернуть последний элемент, значение
-    // которого будет немного отличаться
-    listOfGenerateZ[listOfGenerateZ.lastIndex] = end
+    // перезаписать последний элемент, поскольку шаг округлен до
+    // сантиметров и сумма шагов может немного отличаться от длины
+    // интервала
+    listOfGenerateZ[ceil] = end
     // размножить исходный интевал, и каждому размноженному интервалу
     // добавить атрибут с сгенериованным значением Z для точки
     listOfGenerateZ.forEach {
-      val c = interval.toMutableMap() // копировать исходный интервал
+      // точка - производная от исходного интервала строка (атрибуты
+      // интервала не копируются, исходный интервал больше не изменяется)
+      val c = DerivedRow(interval)
       // добавить интервалу атрибут со сгенерированным значением Z для точки
-      c[nameOfAttributeGenerateZ] = it.toString()
+      c[nameOfAttributeGenerateZ] = Centimetres.format(it)
       // добавить полученный интервал в общую коллекцию интервалов со
       // сгенерированными точками
       intervalsWithAdditionalPoints.add(c)
@@ -126,30 +161,28 @@ fun correctPointsOfIntervals(intervals: List<MutableMap<String, String>>) {
   fun correctIntervalsForWell(well: List<MutableMap<String, String>>) {
     // получить группы с одинаковым значением атрибута generateZ
     val groupWithEqualZ = well
-            .groupBy { it[nameOfAttributeGenerateZ]?.toDouble() }
+            .groupBy { it[nameOfAttributeGenerateZ]?.let { Centimetres.parse(it) } }
             .values.filter { it.size == 2 } // взять группы с двумя элементами
     // группы со скорректированными значениями generateZ
     val groupWithCorrectZ = groupWithEqualZ.toMutableList()
-    var v: Double
+    var v: Long // см
     groupWithCorrectZ.forEach { // перебор групп
       // взять значение generateZ из первого элемента группы. Первый
       // и второй элементы группы равны, поэтому здесь и далее
       // используется только первый элемент
-      v = it.first()[nameOfAttributeGenerateZ]?.toDouble() ?: 0.0
+      v = it.first()[nameOfAttributeGenerateZ]?.let { Centimetres.parse(it) } ?: 0
       // скорректировать значения: первую отметку незначительно
-      // приподнять, вторую отметку незначительно опустить
-      it[0][nameOfAttributeGenerateZ] = (Math.round((v - 0.01) * 100.0) / 100.0).toString()
-      it[1][nameOfAttributeGenerateZ] = (Math.round((v + 0.01) * 100.0) / 100.0).toString()
+      // приподнять, вторую отметку незначительно опустить (на 1 см)
+      it[0][nameOfAttributeGenerateZ] = Centimetres.format(v - 1)
+      it[1][nameOfAttributeGenerateZ] = Centimetres.format(v + 1)
     }
     // заменить элементы исходных групп на элементы из групп со
     // скорректированными значениями
     Collections.replaceAll(well as List<Any>?, groupWithEqualZ, groupWithCorrectZ)
   }
 
-  val ids = intervals.map {it[nameOfAttributeID]}.toSet() // уникальные ID
-  ids.forEach { idWell ->
-    // получить интервалы текущей скважины
-    val layersForCurrentWell = intervals.filter { it[nameOfAttributeID] == idWell }
+  // перебор интервалов каждой скважины
+  GroupedTable(intervals).forEachGroup { _, layersForCurrentWell ->
     correctIntervalsForWell(layersForCurrentWell)
   }
 }
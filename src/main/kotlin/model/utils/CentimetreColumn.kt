@@ -0,0 +1,45 @@
+package model.utils
+
+/**
+ * Столбец [name] таблицы [table] с отметками (глубины, интервалы,
+ * высоты): значения всех строк один раз переводятся в сантиметры
+ * (см. [Centimetres]), вычисления выполняются над массивом, а в строки
+ * таблицы методом [store] записываются только измененные значения.
+ * Значение атрибута должно быть во всех строках и быть числом, иначе
+ * выбрасывается NumberFormatException.
+ */
+class CentimetreColumn(private val table: List<MutableMap<String, String>>, val name: String) {
+  private val column = Row.Column(name)
+  private val values = LongArray(table.size)
+  // номера строк с измененными значениями
+  private val changed = BooleanArray(table.size)
+
+  init {
+    table.forEachIndexed { i, row -> values[i] = Centimetres.parse(column[row]!!) }
+  }
+
+  /** Количество строк */
+  val size get() = values.size
+
+  /** Значение в сантиметрах */
+  operator fun get(index: Int) = values[index]
+
+  operator fun set(index: Int, centimetres: Long) {
+    values[index] = centimetres
+    changed[index] = true
+  }
+
+  /** Записать измененные значения в строки таблицы (в атрибут [name]) */
+  fun store() = store(name)
+
+  /**
+   * Записать измененные значения в атрибут [nameOfAttribute] строк
+   * таблицы; если [all] = true - записать все значения
+   */
+  fun store(nameOfAttribute: String, all: Boolean = false) {
+    val target = if (nameOfAttribute == name) column else Row.Column(nameOfAttribute)
+    for (i in values.indices) {
+      if (all || changed[i]) target[table[i]] = Centimetres.format(values[i])
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package model.utils
+
+/**
+ * Отметки глубин, интервалов и высот в сантиметрах (целое число типа
+ * Long). Почти все вычисления с отметками округляются до двух знаков,
+ * поэтому в сантиметрах они выполняются точно: без округления на
+ * каждом шаге и без накопления ошибки округления double. Значения
+ * хранятся в обычном Long, а не в отдельном классе, чтобы вычисления
+ * в циклах не создавали объектов.
+ */
+object Centimetres {
+  // наибольшее количество цифр, при котором значение помещается в Long
+  private const val maxDigits = 15
+
+  /**
+   * Значение [value] (м) в сантиметрах: "245,06" -> 24506. Разделитель
+   * дробной части - точка или запятая. Значения с большим количеством
+   * знаков округляются до сантиметров так же, как Math.round(x * 100.0).
+   * @throws NumberFormatException если [value] - не число
+   */
+  fun parse(value: CharSequence): Long {
+    val end = value.length
+    var i = 0
+    val negative = end > 0 && value[0] == '-'
+    if (negative) i++
+    var centimetres = 0L
+    var digits = 0
+    var fractionDigits = -1 // -1 - разделителя нет
+    while (i < end) {
+      val c = value[i++]
+      if (c in '0'..'9') {
+        if (++digits > maxDigits || fractionDigits == 2) return parseSlowly(value)
+        centimetres = centimetres * 10 + (c - '0')
+        if (fractionDigits >= 0) fractionDigits++
+      } else if ((c == '.' || c == ',') && fractionDigits < 0 && digits > 0) {
+        fractionDigits = 0
+      } else return parseSlowly(value)
+    }
+    if (digits == 0 || fractionDigits == 0) return parseSlowly(value)
+    when (fractionDigits) {
+      -1 -> centimetres *= 100
+      1 -> centimetres *= 10
+    }
+    return if (negative) -centimetres else centimetres
+  }
+
+  private fun parseSlowly(value: CharSequence) = of(DecimalCodec.parse(value))
+
+  /** Значение [value] (м), округленное до сантиметров */
+  fun of(value: Double): Long = Math.round(value * 100.0)
+
+  /** Значение [centimetres] в метрах */
+  fun toMetres(centimetres: Long): Double = centimetres / 100.0
+
+  /** Строка со значением [centimetres] в метрах - та же, что toMetres(centimetres).toString() */
+  fun format(centimetres: Long): String = DecimalCodec.formatCents(centimetres)
+}
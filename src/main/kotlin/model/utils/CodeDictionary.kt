@@ -0,0 +1,81 @@
+package model.utils
+
+import model.constants.CommonConstants.noData
+import java.math.BigDecimal
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Словарь для расшифровки кодов (справочники ИСИХОГИ: состояние
+ * документирования, тип пробы, стратиграфия, литология). [codes] -
+ * ассоциативный массив, где ключ - код, а значение - расшифровка
+ * (без элемента с названием поля кодов). Код ищется в хеш-таблице,
+ * а не перебором всех кодов справочника. Если код не найден как есть,
+ * он сравнивается в нормализованном числовом виде (например, "12.0",
+ * "12,0" и "12" - один и тот же код). Расшифровка - это один и тот же
+ * экземпляр строки для всех строк таблицы с одинаковым кодом.
+ * Справочники во всех файлах ИСИХОГИ обычно одинаковые, поэтому словари
+ * для прочитанных листов лучше получать методом [of].
+ */
+class CodeDictionary(private val codes: Map<String, String>) {
+  // коды справочника в нормализованном виде
+  private val normalizedCodes = HashMap<String, String>()
+  // расшифровки кодов, которые не нашлись в справочнике как есть
+  // (словарь может использоваться несколькими потоками)
+  private val decodedCodes = ConcurrentHashMap<String, String>()
+
+  init {
+    codes.forEach { code, value ->
+      normalize(code)?.let { if (!normalizedCodes.containsKey(it)) normalizedCodes[it] = value }
+    }
+  }
+
+  /** Расшифровка кода [code] или "Нет данных", если код не найден */
+  fun decode(code: String): String = codes[code] ?: decodedCodes.getOrPut(code) {
+    normalize(code)?.let { normalizedCodes[it] } ?: noData
+  }
+
+  /**
+   * Расшифровать значения атрибута [nameOfAttribute] в таблице [table].
+   * В строки, в которых атрибута нет, добавляется значение "Нет данных".
+   */
+  fun decodeColumn(table: List<MutableMap<String, String>>, nameOfAttribute: String) {
+    val column = Row.Column(nameOfAttribute)
+    for (row in table) {
+      val code = column[row]
+      column[row] = if (code == null) noData else decode(code)
+    }
+  }
+
+  // числовой код без незначащих нулей и с точкой в качестве
+  // разделителя ("12.0" -> "12"); null - если код не числовой
+  private fun normalize(code: String): String? {
+    val value = code.trim().replace(',', '.')
+    if (!numericCode.matches(value)) return null
+    return BigDecimal(value).stripTrailingZeros().toPlainString()
+  }
+
+  companion object {
+    private val numericCode = Regex("[-+]?\\d+(\\.\\d*)?")
+    private const val maxNumberOfDictionaries = 64
+    // построенные словари; ключ - отпечаток листа-справочника
+    private val dictionaries = ConcurrentHashMap<String, CodeDictionary>()
+
+    /**
+     * Словарь для справочника [codes]. Если коды прочитаны из листа
+     * ([CodesOfSheet]) и лист с тем же отпечатком уже встречался
+     * (например, в предыдущем файле), возвращается построенный для него
+     * словарь: коды не нормализуются заново, а расшифровки во всех файлах
+     * будут одними и теми же экземплярами строк. Отпечаток описывает
+     * лист, поэтому до вызова из [codes] допустимо удалить только
+     * элемент с названием поля кодов (его удаляют одинаково для всех
+     * файлов).
+     */
+    fun of(codes: Map<String, String>): CodeDictionary {
+      val fingerprint = (codes as? CodesOfSheet)?.fingerprint ?: return CodeDictionary(codes)
+      dictionaries[fingerprint]?.let { return it }
+      if (dictionaries.size >= maxNumberOfDictionaries) dictionaries.clear()
+      val dictionary = CodeDictionary(HashMap(codes))
+      return dictionaries.putIfAbsent(fingerprint, dictionary) ?: dictionary
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package model.utils
+
+import java.nio.charset.StandardCharsets
+import java.security.MessageDigest
+
+/**
+ * Коды листа-справочника ИСИХОГИ и их расшифровки (как их возвращает
+ * ExcelUtils.getCodesOfIsihogyClient) вместе с отпечатком [fingerprint]
+ * содержимого листа. Отпечаток вычисляется по значениям ячеек по мере
+ * чтения листа (см. [Fingerprint]) и одинаков у листов с одинаковым
+ * содержимым в разных файлах, поэтому по нему [CodeDictionary.of]
+ * находит уже построенный словарь.
+ */
+class CodesOfSheet(val fingerprint: String): HashMap<String, String>() {
+
+  /**
+   * Отпечаток содержимого листа: SHA-256 от номеров строк и значений
+   * ячеек в порядке добавления (перед каждым значением - его длина,
+   * поэтому разные последовательности значений не дают один отпечаток)
+   */
+  class Fingerprint {
+    private val digest = MessageDigest.getInstance("SHA-256")
+
+    fun add(value: Int) {
+      for (shift in 24 downTo 0 step 8) digest.update((value ushr shift).toByte())
+    }
+
+    fun add(value: String?) {
+      if (value == null) {
+        add(-1)
+        return
+      }
+      val bytes = value.toByteArray(StandardCharsets.UTF_8)
+      add(bytes.size)
+      digest.update(bytes)
+    }
+
+    override fun toString(): String =
+            digest.digest().joinToString("") { String.format("%02x", it) }
+  }
+}
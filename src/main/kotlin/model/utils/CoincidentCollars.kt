@@ -0,0 +1,125 @@
+package model.utils
+
+/**
+ * Устранение совпадающих устьев скважин: если у скважин с разными
+ * идентификаторами (атрибут [nameOfID]) совпадают координаты
+ * ([nameOfX], [nameOfY], [nameOfZ]), координата X первой скважины группы
+ * округляется до двух знаков, а каждой следующей - увеличивается на 0.01 м
+ * больше предыдущей. Скважины группируются в том же порядке, что и при
+ * сравнении каждой скважины с каждой, но поиск совпадений выполняется
+ * по хеш-таблице, поэтому таблица просматривается за один проход.
+ * При [tolerance] = 0 координаты сравниваются как строки; при
+ * [tolerance] > 0 совпадающими считаются устья, расстояние между
+ * которыми не больше [tolerance] м (например, 0.005 - чтобы разнести
+ * устья, отличающиеся меньше чем на сантиметр). В этом случае устья
+ * ищутся в соседних ячейках сетки с шагом [tolerance], а скважины с
+ * нечисловыми координатами сравниваются как строки.
+ */
+class CoincidentCollars(private val nameOfID: String,
+                        private val nameOfX: String,
+                        private val nameOfY: String,
+                        private val nameOfZ: String,
+                        private val tolerance: Double = 0.0) {
+  // ключ для точного сравнения координат
+  private data class Coordinates(val x: String?, val y: String?, val z: String?)
+
+  // ячейка сетки с шагом tolerance
+  private data class Cell(val x: Long, val y: Long, val z: Long)
+
+  init {
+    if (tolerance < 0.0 || tolerance.isNaN()) {
+      throw IllegalArgumentException("Недопустимый радиус совпадения устьев: $tolerance")
+    }
+  }
+
+  fun fix(wells: List<MutableMap<String, String>>) {
+    // скважины, которые еще участвуют в поиске совпадений. Координаты
+    // таких скважин не изменяются, поэтому их ключи остаются верными
+    val forSearch = BooleanArray(wells.size) { true }
+    // номера скважин, участвующих в поиске, по ключам (в порядке следования)
+    val indexes = HashMap<Any, MutableList<Int>>()
+    wells.forEachIndexed { i, well ->
+      indexes.getOrPut(keyOf(well)) { ArrayList() }.add(i)
+    }
+    val coincidentWells = ArrayList<Int>()
+    wells.forEachIndexed { i, well ->
+      // координаты текущей скважины могли измениться, если она входила
+      // в группу совпадающих устьев раньше, поэтому ключ вычисляется заново
+      val key = keyOf(well)
+      if (key is Cell) {
+        for (dx in -1L..1L) for (dy in -1L..1L) for (dz in -1L..1L) {
+          val nearby = indexes[Cell(key.x + dx, key.y + dy, key.z + dz)] ?: continue
+          addCoincident(well, nearby, wells, forSearch, coincidentWells)
+        }
+        coincidentWells.sort() // в порядке следования скважин
+      } else {
+        indexes[key]?.let { addCoincident(well, it, wells, forSearch, coincidentWells) }
+      }
+      if (coincidentWells.isNotEmpty()) {
+        forSearch[i] = false
+        var increment = 0.0
+        shift(well, increment)
+        for (j in coincidentWells) {
+          forSearch[j] = false
+          // координата следующей скважины будет смещена на 0.01 м
+          increment += 0.01
+          shift(wells[j], increment)
+        }
+        coincidentWells.clear()
+      }
+      forSearch[i] = false // исключить текущую скважину из поиска
+    }
+  }
+
+  // добавить в coincidentWells скважины из nearby, совпавшие с well;
+  // заодно из nearby удаляются скважины, уже не участвующие в поиске
+  private fun addCoincident(well: Map<String, String>, nearby: MutableList<Int>,
+                            wells: List<Map<String, String>>, forSearch: BooleanArray,
+                            coincidentWells: MutableList<Int>) {
+    nearby.retainAll { forSearch[it] }
+    nearby.forEach { j ->
+      val other = wells[j]
+      if (well[nameOfID] != other[nameOfID] && isCoincident(well, other)) coincidentWells.add(j)
+    }
+  }
+
+  private fun isCoincident(well: Map<String, String>, other: Map<String, String>): Boolean {
+    if (tolerance == 0.0) return sameStrings(well, other)
+    val a = coordinatesOf(well)
+    val b = coordinatesOf(other)
+    if (a == null || b == null) return sameStrings(well, other)
+    val dx = a[0] - b[0]
+    val dy = a[1] - b[1]
+    val dz = a[2] - b[2]
+    return dx * dx + dy * dy + dz * dz <= tolerance * tolerance
+  }
+
+  private fun sameStrings(well: Map<String, String>, other: Map<String, String>) =
+          well[nameOfX] == other[nameOfX] && well[nameOfY] == other[nameOfY]
+                  && well[nameOfZ] == other[nameOfZ]
+
+  private fun keyOf(well: Map<String, String>): Any {
+    if (tolerance > 0.0) {
+      val c = coordinatesOf(well)
+      if (c != null) {
+        return Cell(Math.floor(c[0] / tolerance).toLong(),
+                Math.floor(c[1] / tolerance).toLong(), Math.floor(c[2] / tolerance).toLong())
+      }
+    }
+    return Coordinates(well[nameOfX], well[nameOfY], well[nameOfZ])
+  }
+
+  private fun coordinatesOf(well: Map<String, String>): DoubleArray? {
+    val x = well[nameOfX]?.toDoubleOrNull() ?: return null
+    val y = well[nameOfY]?.toDoubleOrNull() ?: return null
+    val z = well[nameOfZ]?.toDoubleOrNull() ?: return null
+    return if (x.isInfinite() || y.isInfinite() || z.isInfinite()
+            || x.isNaN() || y.isNaN() || z.isNaN()) null else doubleArrayOf(x, y, z)
+  }
+
+  private fun shift(well: MutableMap<String, String>, increment: Double) {
+    var x: Double = well[nameOfX]!!.toDouble() + increment
+    x = Math.round(x * 100.0) / 100.0 // округлить до двух знаков
+    well[nameOfX] = x.toString()
+  }
+}
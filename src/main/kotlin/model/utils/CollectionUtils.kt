@@ -3,21 +3,34 @@ package model.utils
 object CollectionUtils {
 
   /**
-   * Полностью копирует список со вложенными коллекциями
-   * Map<String, String> (глубокое копирование)
+   * Копирует список со вложенными коллекциями Map<String, String>:
+   * каждое отображение копируется методом [copyOfMap].
+   * Строки таблиц [Row] копируются при записи: копия использует те же
+   * массивы значений, что и исходная строка, и получает собственные
+   * массивы только после первого изменения копии или исходной строки.
+   * Остальные отображения копируются полностью.
    * [inputList] копируемый список с вложенными отображениями
-   * Возвращает полную копию списка [inputList]
+   * Возвращает копию списка [inputList]
    */
   fun copyListWithSubMap(inputList: List<MutableMap<String, String>>):
           MutableList<MutableMap<String, String>> {
-    val copyList = ArrayList<MutableMap<String, String>>()
+    val copyList = ArrayList<MutableMap<String, String>>(inputList.size)
     inputList.forEach { e ->
-      val copyMap = e.toMutableMap() // или val copyMap = HashMap(e)
+      val copyMap = copyOfMap(e) // или val copyMap = HashMap(e)
       copyList.add(copyMap)
     }
     return copyList
   }
 
+  /**
+   * Копия отображения [map]. Строки таблиц [Row] копируются без
+   * копирования значений: до первой записи в копию или в исходную
+   * строку они используют общие массивы значений (см. [Row.copy]).
+   * Остальные отображения копируются в LinkedHashMap.
+   */
+  fun copyOfMap(map: Map<String, String>): MutableMap<String, String> =
+          if (map is Row) map.copy() else map.toMutableMap()
+
   /**
    * Для вложенных коллекций оставляет только те элементы ключ-значение,
    * ключи которых соответствуют списку ключей [requiredFields]
@@ -0,0 +1,142 @@
+package model.utils
+
+/**
+ * Разбор и запись десятичных чисел в строках таблиц. Значения приходят
+ * в виде "245,06", "245.06" или "15 л"; числа разбираются прямо из
+ * последовательности символов, без промежуточных строк. Числа с двумя
+ * знаками после точки (результат округления до двух знаков) записываются
+ * без Double.toString, в буфер потока, - строка получается та же, что
+ * у Double.toString. Значения, которые не подходят для быстрого разбора
+ * или записи, обрабатываются как прежде - через java.lang.Double.
+ */
+object DecimalCodec {
+  // наибольшее количество значащих цифр, при котором мантисса и
+  // результат деления на степень десяти вычисляются точно
+  private const val maxDigits = 15
+  // степени десяти до 10^22 представлены в double точно
+  private val powersOf10 = DoubleArray(23).also {
+    it[0] = 1.0
+    for (i in 1 until it.size) it[i] = it[i - 1] * 10.0
+  }
+  // значения с двумя знаками записываются без Double.toString, пока
+  // Double.toString не переходит к экспоненциальной записи (от 10^7)
+  private const val maxCents = 1_000_000_000L
+  private const val noCents = Long.MIN_VALUE
+  private val buffer = object: ThreadLocal<CharArray>() {
+    override fun initialValue() = CharArray(24)
+  }
+
+  /**
+   * Разобрать число из [value]. Разделитель дробной части - точка или
+   * запятая. Если указана единица измерения [unit], она может стоять
+   * после числа (через пробелы), например "15 л".
+   * @throws NumberFormatException если [value] - не число
+   */
+  fun parse(value: CharSequence, unit: String = ""): Double {
+    var end = value.length
+    if (unit.isNotEmpty()) {
+      while (end > 0 && value[end - 1] == ' ') end--
+      if (end < unit.length || !value.regionMatches(end - unit.length, unit)) {
+        return parseSlowly(value, unit)
+      }
+      end -= unit.length
+      while (end > 0 && value[end - 1] == ' ') end--
+    }
+    var i = 0
+    val negative = end > 0 && value[0] == '-'
+    if (negative) i++
+    var mantissa = 0L
+    var digits = 0 // значащие цифры
+    var integerDigits = 0
+    var fractionDigits = -1 // -1 - разделителя нет
+    while (i < end) {
+      val c = value[i++]
+      if (c in '0'..'9') {
+        if (mantissa != 0L || c != '0') digits++
+        if (digits > maxDigits) return parseSlowly(value, unit)
+        mantissa = mantissa * 10 + (c - '0')
+        if (fractionDigits < 0) integerDigits++ else fractionDigits++
+      } else if ((c == '.' || c == ',') && fractionDigits < 0 && integerDigits > 0) {
+        fractionDigits = 0
+      } else return parseSlowly(value, unit)
+    }
+    if (integerDigits == 0 || fractionDigits == 0 || fractionDigits >= powersOf10.size) {
+      return parseSlowly(value, unit)
+    }
+    val result = if (fractionDigits < 0) mantissa.toDouble()
+                 else mantissa.toDouble() / powersOf10[fractionDigits]
+    return if (negative) -result else result
+  }
+
+  // разбор в прежнем виде: без единицы измерения, запятая заменяется точкой
+  private fun parseSlowly(value: CharSequence, unit: String): Double {
+    var s = value.toString()
+    if (unit.isNotEmpty()) s = s.replace(unit, "").trim()
+    return java.lang.Double.valueOf(s.replace(',', '.'))
+  }
+
+  private fun CharSequence.regionMatches(start: Int, other: String): Boolean {
+    for (i in other.indices) if (this[start + i] != other[i]) return false
+    return true
+  }
+
+  /** Округлить [value] до двух знаков после точки */
+  fun round(value: Double) = Math.round(value * 100.0) / 100.0
+
+  /** Строка для [value] - та же, что value.toString() */
+  fun format(value: Double): String {
+    val cents = centsOf(value)
+    return if (cents == noCents) value.toString() else formatCents(cents)
+  }
+
+  // строка для числа [cents] сотых - та же, что (cents / 100.0).toString()
+  internal fun formatCents(cents: Long): String {
+    if (cents <= -maxCents || cents >= maxCents) return (cents / 100.0).toString()
+    val buffer = buffer.get()
+    val start = writeCents(cents, buffer)
+    return String(buffer, start, buffer.size - start)
+  }
+
+  /** Добавить в [out] строку для [value] - ту же, что value.toString() */
+  fun append(out: StringBuilder, value: Double): StringBuilder {
+    val cents = centsOf(value)
+    if (cents == noCents) return out.append(value)
+    val buffer = buffer.get()
+    val start = writeCents(cents, buffer)
+    return out.append(buffer, start, buffer.size - start)
+  }
+
+  // значение в сотых, если [value] - ближайшее к числу с двумя знаками
+  // значение double (например, результат round), иначе noCents
+  private fun centsOf(value: Double): Long {
+    if (value == 0.0) return noCents // 0.0 и -0.0
+    val cents = Math.round(value * 100.0)
+    return if (cents > -maxCents && cents < maxCents && cents / 100.0 == value) cents
+           else noCents
+  }
+
+  // записать в конец [buffer] число [cents] сотых, как его записывает
+  // Double.toString: без незначащих нулей, но хотя бы с одним знаком
+  // после точки; возвращает номер первого символа
+  private fun writeCents(cents: Long, buffer: CharArray): Int {
+    var value = Math.abs(cents)
+    var position = buffer.size
+    val fraction = (value % 100).toInt()
+    when {
+      fraction == 0 -> buffer[--position] = '0'
+      fraction % 10 == 0 -> buffer[--position] = '0' + fraction / 10
+      else -> {
+        buffer[--position] = '0' + fraction % 10
+        buffer[--position] = '0' + fraction / 10
+      }
+    }
+    buffer[--position] = '.'
+    value /= 100
+    do {
+      buffer[--position] = '0' + (value % 10).toInt()
+      value /= 10
+    } while (value != 0L)
+    if (cents < 0) buffer[--position] = '-'
+    return position
+  }
+}
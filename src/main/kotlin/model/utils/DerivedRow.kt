@@ -0,0 +1,127 @@
+package model.utils
+
+/**
+ * Строка, производная от строки [base]: хранит только измененные,
+ * удаленные и добавленные атрибуты, остальные значения берутся из
+ * [base]. Поэтому создание производной строки не требует копирования
+ * всех атрибутов исходной строки (например, для размножения интервала
+ * в точки, которые отличаются только отметкой Z). Порядок перебора
+ * такой же, как у копии LinkedHashMap(base): сначала атрибуты [base]
+ * в порядке ее перебора, затем добавленные атрибуты в порядке
+ * добавления. Исходная строка [base] не должна изменяться, пока
+ * используется производная строка.
+ */
+class DerivedRow(private val base: Map<String, String>): AbstractMutableMap<String, String>() {
+  // новые значения атрибутов исходной строки
+  private var changed: HashMap<String, String>? = null
+  // удаленные атрибуты исходной строки
+  private var removed: HashSet<String>? = null
+  // добавленные атрибуты (и повторно добавленные удаленные) в порядке добавления
+  private var added: LinkedHashMap<String, String>? = null
+
+  override val size: Int
+    get() = base.size - (removed?.size ?: 0) + (added?.size ?: 0)
+
+  override fun isEmpty() = size == 0
+
+  override fun containsKey(key: String): Boolean = get(key) != null
+
+  override fun get(key: String): String? {
+    added?.get(key)?.let { return it }
+    if (removed?.contains(key) == true) return null
+    return changed?.get(key) ?: base[key]
+  }
+
+  override fun put(key: String, value: String): String? {
+    val added = added
+    if (added != null && added.containsKey(key)) return added.put(key, value)
+    if (inBase(key)) {
+      val previous = get(key)
+      val changed = changed ?: HashMap<String, String>().also { changed = it }
+      changed[key] = value
+      return previous
+    }
+    (added ?: LinkedHashMap<String, String>().also { this.added = it })[key] = value
+    return null
+  }
+
+  override fun remove(key: String): String? {
+    added?.remove(key)?.let { return it }
+    if (!inBase(key)) return null
+    val previous = get(key)
+    changed?.remove(key)
+    (removed ?: HashSet<String>().also { removed = it }).add(key)
+    return previous
+  }
+
+  override fun clear() {
+    removed = HashSet(base.keys)
+    changed = null
+    added = null
+  }
+
+  // атрибут исходной строки, который не удалялся
+  private fun inBase(key: String) =
+          base.containsKey(key) && removed?.contains(key) != true
+
+  override val entries: MutableSet<MutableMap.MutableEntry<String, String>> =
+          object: AbstractMutableSet<MutableMap.MutableEntry<String, String>>() {
+    override val size get() = this@DerivedRow.size
+
+    override fun add(element: MutableMap.MutableEntry<String, String>): Boolean =
+            throw UnsupportedOperationException()
+
+    override fun iterator(): MutableIterator<MutableMap.MutableEntry<String, String>> =
+            EntryIterator()
+  }
+
+  // перебор атрибутов исходной строки, затем добавленных атрибутов
+  private inner class EntryIterator: MutableIterator<MutableMap.MutableEntry<String, String>> {
+    private val keysOfBase = base.keys.iterator()
+    // добавленные атрибуты перебираются по копии списка ключей,
+    // поэтому их можно удалять при переборе
+    private var keysOfAdded: Iterator<String>? = null
+    private var next: String? = null
+    private var last: String? = null
+
+    override fun hasNext(): Boolean {
+      if (next != null) return true
+      while (keysOfBase.hasNext()) {
+        val key = keysOfBase.next()
+        if (removed?.contains(key) != true) {
+          next = key
+          return true
+        }
+      }
+      val keysOfAdded = keysOfAdded ?: added?.keys?.toList()?.iterator()?.also { keysOfAdded = it }
+      if (keysOfAdded != null && keysOfAdded.hasNext()) next = keysOfAdded.next()
+      return next != null
+    }
+
+    override fun next(): MutableMap.MutableEntry<String, String> {
+      if (!hasNext()) throw NoSuchElementException()
+      val key = next!!
+      next = null
+      last = key
+      return Entry(key)
+    }
+
+    override fun remove() {
+      this@DerivedRow.remove(last ?: throw IllegalStateException())
+      last = null
+    }
+  }
+
+  private inner class Entry(override val key: String): MutableMap.MutableEntry<String, String> {
+    override val value: String get() = this@DerivedRow[key]!!
+
+    override fun setValue(newValue: String): String = put(key, newValue)!!
+
+    override fun equals(other: Any?) = other is Map.Entry<*, *>
+            && key == other.key && value == other.value
+
+    override fun hashCode() = key.hashCode() xor value.hashCode()
+
+    override fun toString() = "$key=$value"
+  }
+}
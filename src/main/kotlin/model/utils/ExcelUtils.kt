@@ -7,14 +7,11 @@ import model.constants.ProbesWithMSDConstants
 import model.exception.ExcelException
 import model.constants.ProbesWithMSDConstants.nameOfList
 import model.constants.ProbesWithoutMSDConstants
-import org.apache.poi.hssf.usermodel.HSSFWorkbook
-import org.apache.poi.ss.usermodel.Cell
-import org.apache.poi.ss.usermodel.Row
-import org.apache.poi.ss.usermodel.Sheet
-import org.apache.poi.ss.usermodel.Workbook
-import org.apache.poi.xssf.usermodel.XSSFWorkbook
+import model.file.ExcelWorkbook
+import model.file.RowConsumer
+import model.file.XlsEventReader
+import model.file.XlsxStreamReader
 import java.io.File
-import java.io.FileInputStream
 import java.io.IOException
 import java.nio.file.Files
 import java.nio.file.Path
@@ -44,21 +41,31 @@ object ExcelUtils {
     return Files.isRegularFile(file) && Files.isReadable(file)
   }
 
-  /**
-   * Получить объект листа excel из файла с минералогическими пробами,
-   * загруженного с web-ресурса ИСИХОГИ.
-   * [Sheet] - объект листа excel
-   */
+  // передать строки листа excel-файла, загруженного с web-ресурса
+  // ИСИХОГИ, обработчику [consumer]. Лист читается потоково: xls-файл
+  // - с помощью событийной модели HSSF, xlsx-файл - с помощью SAX
   @Throws(ExcelException::class)
-  fun getSheetOfWebResource(excelFile: File): Sheet {
+  private fun readSheetOfWebResource(excelFile: File, consumer: RowConsumer) {
     try {
-      val workbook = getWorkBook(excelFile)
-      if (workbook.numberOfNames == 1
-              && workbook.getSheetName(0) == nameOfList) {
-        return workbook.getSheetAt(0)
+      if (isXlsxFile(excelFile)) {
+        XlsxStreamReader(excelFile).use { reader ->
+          checkSheetOfWebResource(reader.numberOfNames, reader.namesOfSheets)
+          reader.readSheet(nameOfList, consumer)
+        }
       } else {
-        logger.info("Excel sheet ${"Page 1"} not found")
-        throw ExcelException("Лист ${"Page 1"} не найден")
+        XlsEventReader(excelFile).use { reader ->
+          // названия листов и диапазонов известны после чтения общей
+          // части книги, т.е. к моменту получения первой строки листа
+          var checked = false
+          reader.readSheet(0) { indexRow, cells ->
+            if (!checked) {
+              checkSheetOfWebResource(reader.numberOfNames, reader.namesOfSheets)
+              checked = true
+            }
+            consumer(indexRow, cells)
+          }
+          if (!checked) checkSheetOfWebResource(reader.numberOfNames, reader.namesOfSheets)
+        }
       }
     } catch (e: IOException) {
       logger.info("Excel sheet object was not create")
@@ -66,18 +73,48 @@ object ExcelUtils {
     }
   }
 
+  // книга, загруженная с web-ресурса, должна содержать один лист "Page 1"
+  @Throws(ExcelException::class)
+  private fun checkSheetOfWebResource(numberOfNames: Int, namesOfSheets: List<String>) {
+    if (numberOfNames != 1 || namesOfSheets.firstOrNull() != nameOfList) {
+      logger.info("Excel sheet ${"Page 1"} not found")
+      throw ExcelException("Лист ${"Page 1"} не найден")
+    }
+  }
+
+  private fun getExtensionOfFile(fileName: String): String {
+    val extensionOfFile = fileName.substring(
+            fileName.lastIndexOf(".") + 1)
+    return extensionOfFile.toLowerCase()
+  }
+
+  private fun isXlsxFile(excelFile: File) = getExtensionOfFile(excelFile.name) == "xlsx"
+
   /**
-   * Получить объект листа excel из файла, загруженного из клиента ИСИХОГИ
+   * Открыть excel-файл [excelFile], загруженный из клиента ИСИХОГИ, для
+   * чтения листов. Книга открывается один раз для всех листов, после
+   * чтения ее нужно закрыть.
    * [Throws] ExcelException
    */
   @Throws(ExcelException::class)
-  fun getSheetOfIsihogyClient(excelFile: File, nameOfSheet: String): Sheet {
+  fun openWorkbookOfIsihogyClient(excelFile: File): ExcelWorkbook {
     try {
-      val workbook = getWorkBook(excelFile)
-      val sheet = workbook.getSheet(nameOfSheet)
-      if (sheet != null) {
-        return sheet
-      } else {
+      return ExcelWorkbook(excelFile)
+    } catch (e: IOException) {
+      logger.info("Excel workbook object was not create")
+      throw ExcelException("Объект excel-книги не был создан")
+    }
+  }
+
+  // передать строки листа [nameOfSheet] книги [workbook] обработчику
+  // [consumer]. Листы xlsx-файлов читаются потоково, без загрузки всей
+  // книги в память, листы xls-файлов - через объектную модель книги
+  @Throws(ExcelException::class)
+  private fun readSheetOfIsihogyClient(workbook: ExcelWorkbook, nameOfSheet: String,
+                                       consumer: RowConsumer,
+                                       stopAfterRow: Int = Int.MAX_VALUE) {
+    try {
+      if (!workbook.readSheet(nameOfSheet, consumer, stopAfterRow)) {
         logger.info("Excel sheet: $nameOfSheet not found")
         throw ExcelException("Лист excel-файла: $nameOfSheet не найден")
       }
@@ -87,182 +124,285 @@ object ExcelUtils {
     }
   }
 
-  @Throws(IOException::class)
-  private fun getWorkBook(excelFile: File): Workbook {
-    FileInputStream(excelFile).use { input ->
-      // try с ресурсами
-      val extension = getExtensionOfFile(excelFile.name)
-      return if (extension == "xls") HSSFWorkbook(input) else XSSFWorkbook(input)
-    }
-  }
-
-  private fun getExtensionOfFile(fileName: String): String {
-    val extensionOfFile = fileName.substring(
-            fileName.lastIndexOf(".") + 1)
-    return extensionOfFile.toLowerCase()
-  }
+  /**
+   * Возвращает список строк листа [nameOfSheet] книги [workbook],
+   * загруженной из клиента ИСИХОГИ. Для xlsx-файлов строки листа
+   * считываются потоково, без загрузки всей книги в память. Если
+   * указан список столбцов [columns], в отображения строк попадают
+   * только эти столбцы, остальные ячейки пропускаются при чтении.
+   * [Throws] ExcelException
+   */
+  @Throws(ExcelException::class)
+  fun getTableOfIsihogyClient(workbook: ExcelWorkbook, nameOfSheet: String,
+                              columns: Collection<String>? = null):
+          MutableList<MutableMap<String, String>> =
+          tableOfIsihogyClient(columns) { consumer ->
+            readSheetOfIsihogyClient(workbook, nameOfSheet, consumer) }
 
   /**
-   * На основе excel-листа [sheet] из файла, загруженного из клиента
-   * ИСИХОГИ, возвращает список строк листа. Каждая строка представлена
-   * отдельным отображением, где ключ - название столбца,
-   * значение - содержимое ячейки.
+   * Возвращает список строк листа [nameOfSheet] файла [excelFile],
+   * загруженного из клиента ИСИХОГИ
+   * [Throws] ExcelException
    */
-  fun getTableOfIsihogyClient(sheet: Sheet):
+  @Throws(ExcelException::class)
+  fun getTableOfIsihogyClient(excelFile: File, nameOfSheet: String):
+          MutableList<MutableMap<String, String>> =
+          openWorkbookOfIsihogyClient(excelFile).use {
+            getTableOfIsihogyClient(it, nameOfSheet) }
+
+  private fun tableOfIsihogyClient(columns: Collection<String>? = null,
+                                   readRows: (RowConsumer) -> Unit):
           MutableList<MutableMap<String, String>> {
     val table: MutableList<MutableMap<String, String>> = ArrayList()
     val title: MutableMap<Int, String> = HashMap()
-    // если таблица содержит строку заголовка, и хотя бы одну строку с данными
-    if (sheet.lastRowNum > 1) {
-      val firstRow = sheet.getRow(0) // заголовок
-      firstRow.forEach { title[it.columnIndex] = it.toString() }
-      // считать все строки листа кроме заголовка
-      (1..sheet.lastRowNum).forEach { row ->
-        val currentRow: Row = sheet.getRow(row)
-        val line = getCurrentLineOfSheet(currentRow, title)
+    var titleOfRows = TitleOfRows(title)
+    var lastRowNum = -1
+    readRows { indexRow, cells ->
+      if (indexRow == 0) { // заголовок
+        title.putAll(cells)
+        titleOfRows = TitleOfRows(title,
+                if (columns != null) title.filterValues { it in columns } else title)
+      } else {
+        val line = getCurrentLineOfSheet(titleOfRows) { cells[it] }
         if (line.isNotEmpty()) table.add(line)
       }
+      lastRowNum = indexRow
     }
+    // в таблице должны быть строка заголовка и хотя бы одна строка с данными
+    if (lastRowNum <= 1) table.clear()
     return table
   }
 
   /**
-   * На основе excel-листа [sheet] из файла, загруженного с помощью
-   * клиента ИСИХОГИ, возвращает заголовок листа (список атрибутов)
+   * Возвращает заголовок (список атрибутов) листа [nameOfSheet]
+   * книги [workbook], загруженной с помощью клиента ИСИХОГИ. Лист
+   * считывается только до второй строки, по которой видно, что он не пуст.
+   * [Throws] ExcelException
    */
-  fun getTitleTableOfIsihogyClient(sheet: Sheet): List<String> {
+  @Throws(ExcelException::class)
+  fun getTitleTableOfIsihogyClient(workbook: ExcelWorkbook, nameOfSheet: String):
+          List<String> = titleTableOfIsihogyClient { consumer ->
+            readSheetOfIsihogyClient(workbook, nameOfSheet, consumer, stopAfterRow = 1) }
+
+  /**
+   * Возвращает заголовок (список атрибутов) листа [nameOfSheet]
+   * файла [excelFile], загруженного с помощью клиента ИСИХОГИ
+   * [Throws] ExcelException
+   */
+  @Throws(ExcelException::class)
+  fun getTitleTableOfIsihogyClient(excelFile: File, nameOfSheet: String): List<String> =
+          openWorkbookOfIsihogyClient(excelFile).use {
+            getTitleTableOfIsihogyClient(it, nameOfSheet) }
+
+  private fun titleTableOfIsihogyClient(readRows: (RowConsumer) -> Unit): List<String> {
     val title = ArrayList<String>()
-    if (sheet.lastRowNum > 0) {
-      sheet.getRow(0).forEach { title.add(it.toString()) }
+    var lastRowNum = -1
+    readRows { indexRow, cells ->
+      if (indexRow == 0) cells.keys.sorted().forEach { title.add(cells[it]!!) }
+      lastRowNum = indexRow
     }
+    if (lastRowNum <= 0) title.clear()
     return title
   }
 
   /**
-   * На основе excel-листа [sheet] из файла, загруженного с помощью
-   * клиента ИСИХОГИ, возвращает ассоциативный массив. В этом массиве,
+   * Возвращает ассоциативный массив кодов и их расшифровок листа
+   * [nameOfSheet] книги [workbook], загруженной с помощью клиента ИСИХОГИ:
    * ключ - код, а значение - расшифрованное значение. В массиве также
    * есть элемент у которого ключ - IsihogyClientConstants.nameOfCodeAttribute
    * и значение - название кода, которое должно использоваться при
    * расшифровке.
+   * [Throws] ExcelException
+   */
+  @Throws(ExcelException::class)
+  fun getCodesOfIsihogyClient(workbook: ExcelWorkbook, nameOfSheet: String):
+          MutableMap<String, String> =
+          codesOfIsihogyClient { consumer ->
+            readSheetOfIsihogyClient(workbook, nameOfSheet, consumer) }
+
+  /**
+   * Возвращает ассоциативный массив кодов и их расшифровок листа
+   * [nameOfSheet] файла [excelFile], загруженного с помощью клиента ИСИХОГИ
+   * [Throws] ExcelException
    */
-  fun getCodesOfIsihogyClient(sheet: Sheet): MutableMap<String, String> {
+  @Throws(ExcelException::class)
+  fun getCodesOfIsihogyClient(excelFile: File, nameOfSheet: String):
+          MutableMap<String, String> =
+          openWorkbookOfIsihogyClient(excelFile).use {
+            getCodesOfIsihogyClient(it, nameOfSheet) }
+
+  // коды листа вместе с отпечатком его содержимого (см. CodesOfSheet):
+  // в отпечаток попадают все значения, от которых зависит результат
+  private fun codesOfIsihogyClient(readRows: (RowConsumer) -> Unit):
+          MutableMap<String, String> {
     val codes: MutableMap<String, String> = HashMap()
-    val firstRow = sheet.getRow(0)
-    // если таблица содержит строку заголовка, и хотя бы одну строку с данными,
-    // а также если таблица содержит две колонки: для ключей и расшифровок
-    if (sheet.lastRowNum > 1 && firstRow.lastCellNum == 2.toShort()) {
-      //добавить название кода, которое должно использоваться при расшифровке
-      codes[nameOfCodeAttribute] = firstRow.getCell(0).toString()
-      (1..sheet.lastRowNum).forEach { row ->
-        val r: Row = sheet.getRow(row)
-        codes[r.getCell(0).toString()] = r.getCell(1).toString()
+    val fingerprint = CodesOfSheet.Fingerprint()
+    var numberOfCellsInTitle = 0
+    var lastRowNum = -1
+    readRows { indexRow, cells ->
+      fingerprint.add(indexRow)
+      if (indexRow == 0) {
+        numberOfCellsInTitle = (cells.keys.max() ?: -1) + 1
+        fingerprint.add(numberOfCellsInTitle)
+        fingerprint.add(cells[0])
+        //добавить название кода, которое должно использоваться при расшифровке
+        codes[nameOfCodeAttribute] = cells[0].toString()
+      } else {
+        fingerprint.add(cells[0])
+        fingerprint.add(cells[1])
+        codes[cells[0].toString()] = cells[1].toString()
       }
+      lastRowNum = indexRow
     }
-    return codes
+    // в таблице должны быть строка заголовка и хотя бы одна строка с данными,
+    // а также две колонки: для ключей и расшифровок
+    if (lastRowNum <= 1 || numberOfCellsInTitle != 2) codes.clear()
+    val codesOfSheet = CodesOfSheet(fingerprint.toString())
+    codesOfSheet.putAll(codes)
+    return codesOfSheet
+  }
+
+  // Заголовок (title) - это ассоциативный массив, где в качестве ключа
+  // хранятся индексы ячеек, а в качестве значений - их имена. В строки
+  // таблицы попадают только столбцы заголовка [requiredTitle]; схема
+  // строк и номера ее столбцов для ячеек определяются один раз.
+  // [zeroColumns] - столбцы, в которых обычно нули (см. Schema)
+  private class TitleOfRows(val title: Map<Int, String>,
+                            val requiredTitle: Map<Int, String> = title,
+                            zeroColumns: Collection<String> = emptySet()) {
+    val schema = Schema(requiredTitle.values, zeroColumns)
+    val indexesOfCells = requiredTitle.keys.toIntArray()
+    val indexesInSchema = requiredTitle.values.map { schema.indexOf(it) }.toIntArray()
   }
 
-  // получить отображение с данными текущей строки (row) листа
-  // excel-файла, загруженного с web-ресурса. Заголовок (title)
-  // - это ассоциативный массив, где в качестве ключа хранятся
-  // индексы ячеек, а в качестве значений - их имена.
-  private fun getCurrentLineOfSheet(row: Row, title: Map<Int, String>):
+  // получить строку с данными текущей строки листа excel-файла,
+  // [cellOfRow] возвращает содержимое ячейки строки по ее индексу.
+  // Пустой строка считается только если пусты все ячейки заголовка.
+  private fun getCurrentLineOfSheet(titleOfRows: TitleOfRows,
+                                    cellOfRow: (Int) -> String?):
           MutableMap<String, String> {
     var emptyString = true
-    val map = HashMap<String, String>()
-    title.forEach { indexColumn, nameColumn ->
-      val cell: Cell? = row.getCell(indexColumn)
+    val values = arrayOfNulls<String>(titleOfRows.schema.size)
+    for (i in titleOfRows.indexesOfCells.indices) {
+      val cell: String? = cellOfRow(titleOfRows.indexesOfCells[i])
       var valueCell = CommonConstants.noData
-      if (cell != null && cell.toString().isNotEmpty()
-              && cell.toString() != " ") {
-        valueCell = cell.toString()
+      if (isNotEmptyCell(cell)) {
+        valueCell = cell!!
         emptyString = false
       }
-      map[nameColumn] = valueCell
+      values[titleOfRows.indexesInSchema[i]] = valueCell
+    }
+    val row = Row(titleOfRows.schema, values)
+    // непрочитанные столбцы проверяются без создания отображения
+    if (emptyString && titleOfRows.requiredTitle !== titleOfRows.title) {
+      emptyString = isEmptyLine(titleOfRows.title, cellOfRow)
     }
     //если пустая строка (все значения = "Нет данных"), вернуть пустой массив
-    if (emptyString) map.clear()
-    return map
+    if (emptyString) row.clear()
+    return row
   }
 
+  private fun isNotEmptyCell(cell: String?) =
+          cell != null && cell.isNotEmpty() && cell != " "
+
+  private fun isEmptyLine(title: Map<Int, String>, cellOfRow: (Int) -> String?) =
+          title.keys.none { isNotEmptyCell(cellOfRow(it)) }
+
   /**
-   * На основе excel-листа из файла с минералогическими пробами,
-   * загруженного с web-ресурса ИСИХОГИ "МСА по всем объектам",
-   * возвращает список строк листа. Каждая строка листа храниться
-   * в отдельном отображении, где ключ - название столбца,
-   * значение - содержимое ячейки
+   * Условие отбора строк листа, которое проверяется при чтении - до
+   * того, как для строки будет создано отображение. [condition] получает
+   * значение ячейки столбца [nameOfColumn] в том виде, в каком оно
+   * попало бы в отображение строки (для пустой ячейки - "Нет данных"),
+   * либо null, если вся строка пустая и ее отображение было бы пустым.
    */
-  @Throws(ExcelException::class)
-  fun getTableOfProbesWithMSD(sheet: Sheet):
-          MutableList<MutableMap<String, String>> {
-    if (!verifyTableOfProbesWithMSD(sheet)) {
-      logger.info("Excel page has the wrong format")
-      throw ExcelException("лист excel имеет неверный формат")
-    }
-    val table: MutableList<MutableMap<String, String>> = ArrayList()
-    // считать все строки листа кроме заголовка
-    (ProbesWithMSDConstants.firstRowData..sheet.lastRowNum).forEach { row ->
-      val currentRow: Row = sheet.getRow(row)
-      table.add(getCurrentLineOfSheet(currentRow,
-              ProbesWithMSDConstants.indexAndNameOfColumns))
+  class RowFilter(val nameOfColumn: String, val condition: (String?) -> Boolean) {
+
+    private var titleOfColumn: Map<Int, String>? = null
+    private var indexColumn: Int? = null
+
+    // проверить строку с ячейками [cellOfRow] для заголовка [title]
+    fun accept(title: Map<Int, String>, cellOfRow: (Int) -> String?): Boolean {
+      if (title !== titleOfColumn) { // индекс столбца ищется один раз для заголовка
+        indexColumn = title.entries.lastOrNull { it.value == nameOfColumn }?.key
+        titleOfColumn = title
+      }
+      val indexColumn = indexColumn
+      val cell = if (indexColumn != null) cellOfRow(indexColumn) else null
+      return when {
+        isNotEmptyCell(cell) -> condition(cell)
+        isEmptyLine(title, cellOfRow) -> condition(null)
+        indexColumn != null -> condition(CommonConstants.noData)
+        else -> condition(null)
+      }
     }
-    return table
   }
 
-  // минимальная проверка формата листа excel-файла, загруженного с web-ресурса
-  private fun verifyTableOfProbesWithMSD(sheet: Sheet): Boolean = when {
-  // проверка на минимальное количество строк
-    sheet.lastRowNum < ProbesWithMSDConstants.firstRowData -> false
-  // проверка на минимальное количество столбцов
-    sheet.getRow(ProbesWithMSDConstants.firstRowData).lastCellNum !=
-            ProbesWithMSDConstants.numberOfColumn -> false
-    else -> true
-  }
+  /**
+   * Таблица с минералогическими пробами из excel-файла, загруженного
+   * с web-ресурса ИСИХОГИ. [nameOfObject] - название объекта для таблицы
+   * "Пробы без МСА", для таблицы "МСА по всем объектам" - null
+   */
+  class TableOfWebResource(val nameOfObject: String?,
+                           val table: MutableList<MutableMap<String, String>>)
 
   /**
-   * На основе excel-листа из файла с минералогическими пробами,
-   * загруженного с web-ресурса ИСИХОГИ "Пробы без МСА",
-   * возвращает список строк листа. Каждая строка листа храниться
-   * в отдельном отображении, где ключ - название столбца,
-   * значение - содержимое ячейки
+   * Считывает таблицу с минералогическими пробами из файла [excelFile],
+   * загруженного с web-ресурса ИСИХОГИ. [withoutMSD] - тип таблицы:
+   * true - "Пробы без МСА", false - "МСА по всем объектам", null - тип
+   * определяется по первой ячейке листа. Строки листа обрабатываются
+   * по мере чтения, объект листа excel не создается. Строки, не
+   * удовлетворяющие условию [filter], отбрасываются до создания их
+   * отображений.
    */
   @Throws(ExcelException::class)
-  fun getTableOfProbesWithoutMSD(sheet: Sheet):
-          MutableList<MutableMap<String, String>> {
-    if (!verifyTableOfProbesWithoutMSD(sheet)) {
+  fun getTableOfWebResource(excelFile: File, withoutMSD: Boolean? = null,
+                            filter: RowFilter? = null): TableOfWebResource {
+    val table: MutableList<MutableMap<String, String>> = ArrayList()
+    var firstCell = ""
+    var isWithoutMSD = withoutMSD ?: false
+    var lastRowNum = -1
+    var numberOfColumn = -1
+    var titleOfRows: TitleOfRows? = null
+    readSheetOfWebResource(excelFile) { indexRow, cells ->
+      if (indexRow == 0) {
+        firstCell = cells[0].toString()
+        if (withoutMSD == null) isWithoutMSD = firstCell.contains(markOfObject)
+      }
+      val firstRowData = if (isWithoutMSD) ProbesWithoutMSDConstants.firstRowData
+                         else ProbesWithMSDConstants.firstRowData
+      if (indexRow == firstRowData) numberOfColumn = (cells.keys.max() ?: -1) + 1
+      // считать все строки листа кроме заголовка
+      if (indexRow >= firstRowData) {
+        val title = if (isWithoutMSD) ProbesWithoutMSDConstants.indexAndNameOfColumns
+                    else ProbesWithMSDConstants.indexAndNameOfColumns
+        if (filter == null || filter.accept(title) { cells[it] }) {
+          var currentTitle = titleOfRows
+          if (currentTitle == null || currentTitle.title !== title) {
+            // количество кристаллов МСА хранится только для ненулевых значений
+            currentTitle = if (isWithoutMSD) TitleOfRows(title)
+                           else TitleOfRows(title, title, ProbesWithMSDConstants.namesOfNumberColumns)
+            titleOfRows = currentTitle
+          }
+          table.add(getCurrentLineOfSheet(currentTitle) { cells[it] })
+        }
+      }
+      lastRowNum = indexRow
+    }
+    // минимальная проверка формата листа: количество строк и столбцов
+    val verified = if (isWithoutMSD) {
+      lastRowNum >= ProbesWithoutMSDConstants.firstRowData
+              && numberOfColumn == ProbesWithoutMSDConstants.numberOfColumn.toInt()
+    } else {
+      lastRowNum >= ProbesWithMSDConstants.firstRowData
+              && numberOfColumn == ProbesWithMSDConstants.numberOfColumn.toInt()
+    }
+    if (!verified) {
       logger.info("Excel page has the wrong format")
       throw ExcelException("лист excel имеет неверный формат")
     }
-    val table: MutableList<MutableMap<String, String>> = ArrayList()
-    // считать все строки листа кроме заголовка
-    (ProbesWithoutMSDConstants.firstRowData..sheet.lastRowNum).forEach { row ->
-      val currentRow: Row = sheet.getRow(row)
-      table.add(getCurrentLineOfSheet(currentRow,
-              ProbesWithoutMSDConstants.indexAndNameOfColumns))
-    }
-    return table
+    return TableOfWebResource(
+            if (isWithoutMSD) firstCell.split(markOfObject)[1] else null, table)
   }
 
-  // минимальная проверка формата листа excel-файла,
-  // загруженного с web-ресурса "Пробы без МСА"
-  private fun verifyTableOfProbesWithoutMSD(sheet: Sheet): Boolean = when {
-  // проверка на минимальное количество строк
-    sheet.lastRowNum < ProbesWithoutMSDConstants.firstRowData -> false
-  // проверка на минимальное количество столбцов
-    sheet.getRow(ProbesWithoutMSDConstants.firstRowData).lastCellNum !=
-            ProbesWithoutMSDConstants.numberOfColumn -> false
-    else -> true
-  }
-
-  fun isTableOfProbesWithoutMSD(sheet: Sheet): Boolean {
-    val firstRow: Row = sheet.getRow(0)
-    val firstCell: String = firstRow.getCell(0).toString()
-    return firstCell.contains("По Объекту: ")
-  }
-
-  fun getNameOfObject(sheet: Sheet): String {
-    val firstRow: Row = sheet.getRow(0)
-    val firstCell: String = firstRow.getCell(0).toString()
-    return firstCell.split("По Объекту: ")[1]
-  }
-}
\ No newline at end of file
+  private const val markOfObject = "По Объекту: "
+}
@@ -0,0 +1,72 @@
+package model.utils
+
+import model.constants.IsihogyClientConstants.nameOfAttributeID
+
+/**
+ * Таблица [table], сгруппированная по значению атрибута [nameOfKey]
+ * (по умолчанию - идентификатор скважины "ID ТН"). Группировка
+ * выполняется за один проход: строки каждой группы лежат подряд, в
+ * порядке следования в таблице, а сами группы - в порядке первого
+ * появления ключа. Поэтому для перебора скважин не нужно фильтровать
+ * всю таблицу по каждому идентификатору. Строки без атрибута-ключа
+ * образуют группу с ключом null.
+ */
+class GroupedTable<T: Map<String, String>>(table: List<T>,
+                                           val nameOfKey: String = nameOfAttributeID): Groups<T> {
+  // строки таблицы, упорядоченные по группам
+  private val rows: List<T>
+  // номер группы для каждого ключа
+  private val indexOfGroup = HashMap<String?, Int>()
+  // начало каждой группы в rows; в последнем элементе - размер таблицы
+  private val starts: IntArray
+
+  /** Ключи групп в порядке их первого появления в таблице */
+  val keys: List<String?>
+
+  init {
+    val keys = ArrayList<String?>()
+    val groupOfRow = IntArray(table.size)
+    var sizes = IntArray(16)
+    table.forEachIndexed { i, row ->
+      val key = row[nameOfKey]
+      var group = indexOfGroup[key]
+      if (group == null) {
+        group = keys.size
+        indexOfGroup[key] = group
+        keys.add(key)
+        if (group == sizes.size) sizes = sizes.copyOf(sizes.size * 2)
+      }
+      groupOfRow[i] = group
+      sizes[group]++
+    }
+    starts = IntArray(keys.size + 1)
+    for (group in keys.indices) starts[group + 1] = starts[group] + sizes[group]
+    val positions = starts.copyOf(keys.size)
+    val ordered = arrayOfNulls<Any>(table.size)
+    table.forEachIndexed { i, row -> ordered[positions[groupOfRow[i]]++] = row }
+    @Suppress("UNCHECKED_CAST")
+    rows = ordered.asList() as List<T>
+    this.keys = keys
+  }
+
+  /** Количество групп */
+  val size get() = keys.size
+
+  override val numberOfRows get() = rows.size.toLong()
+
+  override operator fun get(key: String?): List<T> {
+    val group = indexOfGroup[key] ?: return emptyList()
+    return rows.subList(starts[group], starts[group + 1])
+  }
+
+  /** Перебор групп: ключ и строки группы, в порядке первого появления ключа */
+  inline fun forEachGroup(action: (String?, List<T>) -> Unit) {
+    keys.forEach { action(it, get(it)) }
+  }
+
+  override fun keysInHashOrder(): Set<String?> {
+    val set = HashSet<String?>() // элементы добавляются по одному, как в Collectors.toSet()
+    set.addAll(keys)
+    return set
+  }
+}
@@ -0,0 +1,28 @@
+package model.utils
+
+import java.io.Closeable
+
+/**
+ * Строки таблицы, сгруппированные по значению атрибута-ключа (обычно -
+ * по скважинам). Реализации: [GroupedTable] - таблица в памяти, и
+ * model.file.GroupsOfFile - группы строк файла, который не помещается
+ * в память. Группы нужно закрыть методом [close], когда они больше не
+ * нужны (таблица в памяти ресурсов не занимает).
+ */
+interface Groups<out T>: Closeable {
+  /** Количество строк во всех группах */
+  val numberOfRows: Long
+
+  /** Строки группы с ключом [key] (пустой список, если такой группы нет) */
+  operator fun get(key: String?): List<T>
+
+  /**
+   * Ключи групп в том порядке, в каком их перебирает HashSet, собранный
+   * из значений ключа по всей таблице (например, через
+   * Collectors.toSet()). Нужен там, где от порядка перебора скважин
+   * зависит порядок строк в результате.
+   */
+  fun keysInHashOrder(): Set<String?>
+
+  override fun close() {}
+}
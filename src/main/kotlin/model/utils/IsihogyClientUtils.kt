@@ -19,23 +19,28 @@ import model.constants.IsihogyClientConstants.nameOfAttributeLCodeAge
 import model.constants.IsihogyClientConstants.numberOfLayers
 import model.exception.DataException
 import java.util.stream.Collectors
-import java.lang.Double.valueOf as toDouble
 
 object IsihogyClientUtils {
 
   /** Поменять местами координаты X и Y, поскольку в ИСИХОГИ они перепутаны */
   fun interchangeXY(wells: List<MutableMap<String, String>>) {
+    val columnX = Row.Column(nameOfAttributeX)
+    val columnY = Row.Column(nameOfAttributeY)
     wells.forEach {
-      val x = it[nameOfAttributeX].toString()
-      it.replace(nameOfAttributeX, it[nameOfAttributeY].toString())
-      it.replace(nameOfAttributeY, x)
+      val x = columnX[it]
+      val y = columnY[it]
+      if (x != null) columnX[it] = y.toString()
+      if (y != null) columnY[it] = x.toString()
     }
   }
 
   /**
    * В таблице [table] декодировать значения для поля с кодами. Коды
    * находятся в ассоциативном массиве [codes]. В этом же массиве хранится
-   * название поля с кодами (ключ IsihogyClientConstants.nameOfCodeAttribute)
+   * название поля с кодами (ключ IsihogyClientConstants.nameOfCodeAttribute).
+   * Если код не найден или в строке нет поля с кодами, значение -
+   * "Нет данных". Коды ищутся по словарю [CodeDictionary], который для
+   * одинаковых листов-справочников разных файлов строится один раз.
    */
   @Throws(DataException::class)
   fun decodingField(table: List<MutableMap<String, String>>,
@@ -53,19 +58,8 @@ object IsihogyClientUtils {
     val codeAttribute: String = codes[nameOfCodeAttribute].toString()
     codes.remove(nameOfCodeAttribute)
 
-    for (row in table) {
-      val codeOfRow = row[codeAttribute].toString()
-      run find@{ // break для обыного цикла for
-        codes.forEach { // перебор кодов
-          if (codeOfRow == it.key) {
-            row[codeAttribute] = it.value // расшифровка
-            return@find
-          }
-        }
-        // выполняется после перебора кодов, если совпадений не найдено
-        row[codeAttribute] = noData // если код для расшифровки не найден
-      }
-    }
+    // если код для расшифровки не найден, значение - "Нет данных"
+    CodeDictionary.of(codes).decodeColumn(table, codeAttribute)
   }
 
   /**
@@ -155,7 +149,8 @@ object IsihogyClientUtils {
 
   /** Удалить дробную часть атрибутов, для которых эта часть ненужна */
   fun deleteDecimalPart(attribute: String, table: List<MutableMap<String, String>>) {
-    table.forEach { it[attribute] = it[attribute]!!.split(".")[0] }
+    val column = Row.Column(attribute)
+    table.forEach { column[it] = column[it]!!.split(".")[0] }
   }
 
   /**
@@ -164,33 +159,20 @@ object IsihogyClientUtils {
    */
   fun getWellsWithProbes(observationsPointsTable: List<Map<String, String>>,
                          mineralogyTable: List<Map<String, String>>):
-    List<MutableMap<String, String>> {
-
-    val wellsWithProbes = ArrayList<MutableMap<String, String>>()
-    observationsPointsTable.forEach find@{ well -> // break для цикла forEach
-      mineralogyTable.forEach { probe ->
-        if (well[nameOfAttributeID] == probe[nameOfAttributeID]) {
-          wellsWithProbes.add(HashMap(well))
-          return@find
-        }
-      }
-    }
-    return wellsWithProbes
-  }
+    List<MutableMap<String, String>> =
+          TableIndex(mineralogyTable).semiJoin(observationsPointsTable).map { HashMap(it) }
 
   /* поправка ИСИХОГИ */
   fun makeAmendment(wells: List<MutableMap<String, String>>) {
-    wells.forEach { well ->
-      var x = toDouble(well[nameOfAttributeX])
-      var y = toDouble(well[nameOfAttributeY])
-      x -= 20_000
-      y -= 10_000
+    val x = NumericColumn(wells, nameOfAttributeX)
+    val y = NumericColumn(wells, nameOfAttributeY)
+    for (i in 0 until x.size) {
       /* округлить координаты до двух знаков */
-      x = Math.round(x * 100.0) / 100.0
-      y = Math.round(y * 100.0) / 100.0
-      well.replace(nameOfAttributeX, x.toString())
-      well.replace(nameOfAttributeY, y.toString())
+      x[i] = Math.round((x[i] - 20_000) * 100.0) / 100.0
+      y[i] = Math.round((y[i] - 10_000) * 100.0) / 100.0
     }
+    x.store()
+    y.store()
   }
 
   /**
@@ -209,52 +191,14 @@ object IsihogyClientUtils {
   /**
    * Устранить проблему совпадающих устьев, когда у разных скважин совпадают
    * координаты X,Y,Z. В этом случае, для координаты X устанавливается
-   * минимальное приращение на 0.01 м
+   * минимальное приращение на 0.01 м.
+   * [tolerance] - расстояние (м), при котором устья считаются совпадающими;
+   * при 0 координаты должны совпадать точно (см. [CoincidentCollars])
    */
-  fun fixCoincidentCollarOfWell(topWells: List<MutableMap<String, String>>) {
-    // коллекция с которой сопоставляется каждый элемент на предмет совпадения
-    // по XYZ. Размер коллекции уменьшается в процессе перебора.
-    val wellsForSearch = ArrayList(topWells)
-    // коллекция, куда сохраняются совпавшие по XYZ скважины, включая текущую
-    // проверяемую скважину
-    val coincidentWells: MutableList<MutableMap<String, String>> = ArrayList()
-    for (e1 in topWells) { // перебор всех скважин
-      var wasCoincidence = false // определяет, были ли уже совпадения
-      // текущая скважина e1 сопоставляется с остальными на предмет совпадения
-      wellsForSearch.forEach { e2 ->
-        if (e1[nameOfAttributeID] != e2[nameOfAttributeID]
-                && e1[nameOfAttributeX] == e2[nameOfAttributeX]
-                && e1[nameOfAttributeY] == e2[nameOfAttributeY]
-                && e1[nameOfAttributeZ] == e2[nameOfAttributeZ]) {
-          // если совпадение встречено впервые, добавить сразу текущий элемент
-          if (!wasCoincidence) {
-            coincidentWells.add(e1)
-            wasCoincidence = true
-          }
-          coincidentWells.add(e2) // добавить элемент, который совпал
-        }
-      }
-      // если были найдены совпадения по XYZ для текущей скважины
-      if (coincidentWells.size != 0) {
-        wellsForSearch.removeAll(coincidentWells)
-        var increment = 0.0
-        // перебрать все скважины, совпавшие по XYZ
-        for (well in coincidentWells) {
-          var x: Double = well[nameOfAttributeX]!!.toDouble() + increment
-          x = Math.round(x * 100.0) / 100.0 // округлить до двух знаков
-          // необязательно делать изменение отображений в коллекции topWells,
-          // достаточно лишь изменить отображения в текущей коллекции
-          // совпавших по XYZ скважин, поскольку в нее добавлены отображения,
-          // ссылающиеся на коллекцию topWells
-          well[nameOfAttributeX] = x.toString()
-          // координата следующей скважины будет смещена на 0.01 м
-          increment += 0.01
-        }
-        coincidentWells.clear()
-      }
-      wellsForSearch.remove(e1) // исключить текущий элемент из поиска
-    }
-  }
+  fun fixCoincidentCollarOfWell(topWells: List<MutableMap<String, String>>,
+                                tolerance: Double = 0.0) =
+          CoincidentCollars(nameOfAttributeID, nameOfAttributeX, nameOfAttributeY,
+                  nameOfAttributeZ, tolerance).fix(topWells)
 
   /**
    * Каждой пробе в таблице минералогии добавляется атрибут "Все МСА"
@@ -263,12 +207,12 @@ object IsihogyClientUtils {
    */
   fun addAttributeOfAllMinerals(probes: List<MutableMap<String, String>>,
                                 attributesOfMineralogy: List<String>) {
+    // у большинства проб находок нет, нулевые значения не разбираются
+    val columns = Row.Columns(attributesOfMineralogy)
     var allMinerals: Double
     probes.forEach { probe ->
       allMinerals = 0.0
-      attributesOfMineralogy.forEach { attribute ->
-        allMinerals += probe[attribute]!!.toDouble()
-      }
+      columns.forEachNonZero(probe) { _, value -> allMinerals += value.toDouble() }
       probe[nameOfAttributeAllMinerals] = allMinerals.toString()
     }
   }
@@ -281,16 +225,14 @@ object IsihogyClientUtils {
    */
   fun fixWhenIntervalMoreThanDepth(wells: List<MutableMap<String, String>>,
                                    probes: List<MutableMap<String, String>>) {
+    val probesOfWells = TableIndex(probes)
     wells.forEach { well ->
-      var maxTo = 0.0 // максимальное значение для отметки "До"
-      probes.forEach { probe ->
-        if (well[nameOfAttributeID] == probe[nameOfAttributeID]) {
-          val depth = well[nameOfAttributeDepth]!!.toDouble()
-          val to = probe[nameOfAttributeTo]!!.toDouble()
-          if (to > depth) { // значение "До" пробы больше глубины скважины
-            if (to > maxTo) maxTo = to // наибольшее значение "До" среди проб
-          }
-        }
+      // максимальное значение для отметки "До" среди проб скважины
+      val maxTo = probesOfWells.aggregate(well, 0.0) { maxTo, probe ->
+        val depth = well[nameOfAttributeDepth]!!.toDouble()
+        val to = probe[nameOfAttributeTo]!!.toDouble()
+        // значение "До" пробы больше глубины скважины и наибольшее среди проб
+        if (to > depth && to > maxTo) to else maxTo
       }
       // если значение "До" пробы оказалось больше глубины скважины
       if (maxTo > 0.0) well[nameOfAttributeDepth] = maxTo.toString()
@@ -303,21 +245,9 @@ object IsihogyClientUtils {
    */
   fun unionTablesForDotWells(wells: List<Map<String, String>>,
                              probes: List<Map<String, String>>):
-      List<MutableMap<String, String>> {
-    val probesWithDataOfWells: MutableList<MutableMap<String, String>> = ArrayList()
-    probes.forEach find@{ probe -> // break для forEach, перейти к следующей пробе
-      wells.forEach { well ->
-        if (probe[nameOfAttributeID] == well[nameOfAttributeID]) {
-          val dotWell: MutableMap<String, String> = HashMap()
-          dotWell.putAll(probe) // добавить атрибуты пробы
-          dotWell.putAll(well) // добавить атрибуты точки наблюдения
-          probesWithDataOfWells.add(dotWell)
-          return@find
-        }
-      }
-    }
-    return probesWithDataOfWells
-  }
+      List<MutableMap<String, String>> =
+          // к атрибутам пробы добавляются атрибуты точки наблюдения
+          TableIndex(wells).innerJoin(probes)
 
   /**
    * В зависимости от типа выборки по стратиграфии, произвести
@@ -356,14 +286,12 @@ object IsihogyClientUtils {
 
   /** Вставить атрибут со значением абсолютной отметки забоя скважин */
   fun putBottomOfWellValue(wells: List<MutableMap<String, String>>) {
-    var z: Double
-    var depth: Double
-    var bottomABS: Double
+    var z: Long // см
+    var depth: Long // см
     wells.forEach {
-      z = it[nameOfAttributeZ]!!.toDouble()
-      depth = it[nameOfAttributeDepth]!!.toDouble()
-      bottomABS = Math.round((z - depth) * 100.0) / 100.0
-      it[nameOfAttributeBottomWell] = bottomABS.toString()
+      z = Centimetres.parse(it[nameOfAttributeZ]!!)
+      depth = Centimetres.parse(it[nameOfAttributeDepth]!!)
+      it[nameOfAttributeBottomWell] = Centimetres.format(z - depth)
     }
   }
 
@@ -380,12 +308,8 @@ object IsihogyClientUtils {
    * имелось только одно значение z.
    */
   fun assignEachLayersNumberLayersInWell(layers: List<MutableMap<String, String>>) {
-    val ids = layers.stream()
-            .map { it[nameOfAttributeID] }
-            .collect(Collectors.toSet()) // получить набор уникальных id скважин
-    ids.forEach { idWell -> // перебор скважин
-      val layersForCurrentWell = layers
-              .filter { it[nameOfAttributeID] == idWell }
+    // перебор скважин
+    GroupedTable(layers).forEachGroup { _, layersForCurrentWell ->
       layersForCurrentWell.forEach {
         it[numberOfLayers] = layersForCurrentWell.size.toString()
       }
@@ -398,10 +322,10 @@ object IsihogyClientUtils {
    */
   fun absOfFromTo(layers: List<MutableMap<String, String>>) {
     fun getABSValues(layer: Map<String, String>): Pair<String, String> {
-      val z = java.lang.Double.valueOf(layer[nameOfAttributeZ])
-      val absFrom = Math.round((z - java.lang.Double.valueOf(layer[nameOfAttributeFrom])) * 100.0) / 100.0
-      val absTo = Math.round((z - java.lang.Double.valueOf(layer[nameOfAttributeTo])) * 100.0) / 100.0
-      return Pair(absFrom.toString(), absTo.toString())
+      val z = Centimetres.parse(layer[nameOfAttributeZ]!!)
+      val absFrom = z - Centimetres.parse(layer[nameOfAttributeFrom]!!)
+      val absTo = z - Centimetres.parse(layer[nameOfAttributeTo]!!)
+      return Pair(Centimetres.format(absFrom), Centimetres.format(absTo))
     }
     layers.forEach {
       val (from, to) = getABSValues(it) // деструктурирование
@@ -0,0 +1,46 @@
+package model.utils
+
+/**
+ * Числовой столбец [name] таблицы [table]: значения всех строк
+ * разбираются в массив double один раз, вычисления выполняются над
+ * массивом, а в строки таблицы методом [store] записываются (один раз
+ * преобразуются в строку) только измененные значения. Значения, которые
+ * не изменялись, остаются в строках в исходном виде.
+ * Значение атрибута должно быть во всех строках и быть числом (см.
+ * [DecimalCodec.parse]), иначе выбрасывается NumberFormatException.
+ * Значения записываются так же, как их записывает Double.toString.
+ */
+class NumericColumn(private val table: List<MutableMap<String, String>>, val name: String) {
+  private val column = Row.Column(name)
+  private val values = DoubleArray(table.size)
+  // номера строк с измененными значениями
+  private val changed = BooleanArray(table.size)
+
+  init {
+    table.forEachIndexed { i, row -> values[i] = DecimalCodec.parse(column[row]!!) }
+  }
+
+  /** Количество строк */
+  val size get() = values.size
+
+  operator fun get(index: Int) = values[index]
+
+  operator fun set(index: Int, value: Double) {
+    values[index] = value
+    changed[index] = true
+  }
+
+  /** Записать измененные значения в строки таблицы (в атрибут [name]) */
+  fun store() = store(name)
+
+  /**
+   * Записать измененные значения в атрибут [nameOfAttribute] строк
+   * таблицы; если [all] = true - записать все значения
+   */
+  fun store(nameOfAttribute: String, all: Boolean = false) {
+    val target = if (nameOfAttribute == name) column else Row.Column(nameOfAttribute)
+    for (i in values.indices) {
+      if (all || changed[i]) target[table[i]] = DecimalCodec.format(values[i])
+    }
+  }
+}
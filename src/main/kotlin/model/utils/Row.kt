@@ -0,0 +1,378 @@
+package model.utils
+
+/**
+ * Строка таблицы со схемой [schema]: значения хранятся в массиве по
+ * номерам столбцов схемы, а не в отдельных элементах HashMap. Для
+ * совместимости строка остается отображением MutableMap<String, String>:
+ * значения можно изменять и удалять, а порядок перебора, equals,
+ * hashCode и toString такие же, как у HashMap с теми же значениями.
+ * Если в строку без удаленных атрибутов добавляется атрибут, которого
+ * нет в схеме, строка переходит на схему, дополненную этим атрибутом
+ * (общую для всех таких строк). В остальных случаях (атрибут
+ * добавляется после удаления атрибутов или повторно добавляется
+ * удаленный атрибут) строка один раз преобразуется в HashMap с той же
+ * историей изменений и дальше работает как обычное отображение. Для
+ * столбцов нулей схемы хранятся только ненулевые значения: битовая
+ * маска столбцов с ненулевыми значениями и сами значения подряд, в
+ * порядке битов (удаление атрибута из такого столбца тоже преобразует
+ * строку в HashMap).
+ * Копия строки [copy] использует массивы значений исходной строки
+ * совместно с ней, пока одна из строк не будет изменена (копирование
+ * при записи).
+ * Для перебора большого числа строк значения лучше получать через
+ * [Column], который определяет номер столбца один раз для схемы.
+ */
+class Row private constructor(schema: Schema): AbstractMutableMap<String, String>() {
+  /** Схема строки */
+  var schema = schema
+    private set
+  // значения обычных столбцов (null - атрибут удален);
+  // null - строка преобразована в map
+  private var cells: Array<String?>? = null
+  // биты столбцов нулей с ненулевыми значениями
+  private var nonZero: LongArray = noBits
+  // ненулевые значения столбцов нулей в порядке битов
+  private var packed: Array<String?> = noValues
+  private var numberOfPacked = 0
+  private var map: HashMap<String, String>? = null
+  private var numberOfValues = 0
+  // true - массивы значений могут использоваться другой строкой (копией)
+  private var shared = false
+
+  /** Строка со значениями [cells] по номерам столбцов схемы [schema] */
+  constructor(schema: Schema, cells: Array<String?>): this(schema) {
+    if (cells.size != schema.size) {
+      throw IllegalArgumentException("Количество значений строки не совпадает со схемой")
+    }
+    cells.forEach { if (it != null) numberOfValues++ }
+    if (schema.indexesOfZeroColumns.isEmpty()) {
+      this.cells = cells
+    } else {
+      val dense = arrayOfNulls<String>(schema.numberOfDenseColumns)
+      nonZero = LongArray((schema.indexesOfZeroColumns.size + 63) ushr 6)
+      this.cells = dense
+      var absentZero = false
+      for (i in cells.indices) {
+        val value = cells[i]
+        if (!schema.isZeroColumn[i]) dense[schema.positions[i]] = value
+        else if (value != null) setZeroColumn(schema.positions[i], value)
+        else absentZero = true
+      }
+      // столбцы нулей не могут быть удалены в массиве
+      if (absentZero) toMap(cells::get)
+    }
+  }
+
+  /**
+   * Копия строки. Пока строка хранится в массиве, копия создается без
+   * копирования значений: массивы копируются при первом изменении
+   * копии или исходной строки. Строка, преобразованная в HashMap,
+   * копируется в LinkedHashMap.
+   */
+  fun copy(): MutableMap<String, String> {
+    val map = map
+    if (map != null) return LinkedHashMap(map)
+    val copy = Row(schema)
+    copy.cells = cells
+    copy.nonZero = nonZero
+    copy.packed = packed
+    copy.numberOfPacked = numberOfPacked
+    copy.numberOfValues = numberOfValues
+    copy.shared = true
+    shared = true
+    return copy
+  }
+
+  override val size: Int get() = map?.size ?: numberOfValues
+
+  override fun isEmpty() = size == 0
+
+  override fun containsKey(key: String): Boolean = get(key) != null
+
+  override fun get(key: String): String? {
+    if (cells == null) return map!![key]
+    val index = schema.indexOf(key)
+    return if (index < 0) null else valueAt(index)
+  }
+
+  override fun put(key: String, value: String): String? {
+    val cells = cells
+    if (cells != null) {
+      val index = schema.indexOf(key)
+      val previous = if (index < 0) null else valueAt(index)
+      if (previous != null) {
+        setValueAt(index, value)
+        return previous
+      }
+      // порядок перебора дополненной схемы совпадает с порядком HashMap,
+      // только если из строки ничего не удалялось
+      if (index < 0 && numberOfValues == schema.size) {
+        unshare()
+        schema = schema.extendedWith(key)
+        val extended = this.cells!!.copyOf(schema.numberOfDenseColumns)
+        extended[schema.positions[schema.size - 1]] = value
+        this.cells = extended
+        numberOfValues++
+        return null
+      }
+    }
+    return toMap().put(key, value)
+  }
+
+  override fun remove(key: String): String? {
+    if (cells == null) return map!!.remove(key)
+    val index = schema.indexOf(key)
+    if (index < 0) return null
+    if (schema.isZeroColumn[index]) return toMap().remove(key)
+    val position = schema.positions[index]
+    val previous = cells!![position]
+    if (previous != null) {
+      unshare()
+      cells!![position] = null
+      numberOfValues--
+    }
+    return previous
+  }
+
+  override fun clear() {
+    if (cells == null || schema.indexesOfZeroColumns.isNotEmpty()) toMap().clear() else {
+      unshare()
+      cells!!.fill(null)
+      numberOfValues = 0
+    }
+  }
+
+  /** Значение столбца схемы с номером [index] (null, если его нет) */
+  fun valueAt(index: Int): String? {
+    val cells = cells ?: return map!![schema.nameOf(index)]
+    val position = schema.positions[index]
+    return if (schema.isZeroColumn[index]) valueOfZeroColumn(position) else cells[position]
+  }
+
+  /** Заменить значение столбца схемы с номером [index] */
+  fun setValueAt(index: Int, value: String) {
+    if (cells != null) {
+      val position = schema.positions[index]
+      if (schema.isZeroColumn[index]) {
+        unshare()
+        setZeroColumn(position, value)
+        return
+      }
+      if (cells!![position] != null) {
+        unshare()
+        cells!![position] = value
+        return
+      }
+    }
+    put(schema.nameOf(index), value)
+  }
+
+  // перед изменением массивов значений, которые используются
+  // совместно с копией строки, скопировать их
+  private fun unshare() {
+    if (!shared) return
+    cells = cells!!.copyOf()
+    nonZero = nonZero.copyOf()
+    packed = packed.copyOf()
+    shared = false
+  }
+
+  // значение столбца нулей с битом [bit]
+  private fun valueOfZeroColumn(bit: Int): String =
+          if ((nonZero[bit ushr 6] and (1L shl bit)) == 0L) zero
+          else packed[rankOf(bit)]!!
+
+  // номер значения столбца нулей с битом [bit] в массиве packed
+  // (количество ненулевых значений в предшествующих столбцах нулей)
+  private fun rankOf(bit: Int): Int {
+    val word = bit ushr 6
+    var rank = 0
+    for (i in 0 until word) rank += java.lang.Long.bitCount(nonZero[i])
+    return rank + java.lang.Long.bitCount(nonZero[word] and ((1L shl bit) - 1))
+  }
+
+  private fun setZeroColumn(bit: Int, value: String) {
+    val word = bit ushr 6
+    val mask = 1L shl bit
+    val rank = rankOf(bit)
+    if ((nonZero[word] and mask) != 0L) {
+      if (value != zero) packed[rank] = value else {
+        System.arraycopy(packed, rank + 1, packed, rank, numberOfPacked - rank - 1)
+        packed[--numberOfPacked] = null
+        nonZero[word] = nonZero[word] and mask.inv()
+      }
+    } else if (value != zero) {
+      if (numberOfPacked == packed.size) packed = packed.copyOf(maxOf(4, packed.size * 2))
+      System.arraycopy(packed, rank, packed, rank + 1, numberOfPacked - rank)
+      packed[rank] = value
+      numberOfPacked++
+      nonZero[word] = nonZero[word] or mask
+    }
+  }
+
+  override val entries: MutableSet<MutableMap.MutableEntry<String, String>> =
+          object: AbstractMutableSet<MutableMap.MutableEntry<String, String>>() {
+    override val size get() = this@Row.size
+
+    override fun add(element: MutableMap.MutableEntry<String, String>): Boolean =
+            throw UnsupportedOperationException()
+
+    override fun iterator(): MutableIterator<MutableMap.MutableEntry<String, String>> =
+            map?.entries?.iterator() ?: EntryIterator()
+  }
+
+  // перебор значений массива в порядке перебора HashMap
+  private inner class EntryIterator: MutableIterator<MutableMap.MutableEntry<String, String>> {
+    private val order = schema.order
+    private var next = 0
+    private var last = -1
+
+    override fun hasNext(): Boolean {
+      while (next < order.size && valueAt(order[next]) == null) next++
+      return next < order.size
+    }
+
+    override fun next(): MutableMap.MutableEntry<String, String> {
+      if (!hasNext()) throw NoSuchElementException()
+      last = order[next++]
+      return Entry(schema.nameOf(last))
+    }
+
+    override fun remove() {
+      if (last < 0) throw IllegalStateException()
+      this@Row.remove(schema.nameOf(last))
+      last = -1
+    }
+  }
+
+  private inner class Entry(override val key: String): MutableMap.MutableEntry<String, String> {
+    override val value: String get() = this@Row[key]!!
+
+    override fun setValue(newValue: String): String = put(key, newValue)!!
+
+    override fun equals(other: Any?) = other is Map.Entry<*, *>
+            && key == other.key && value == other.value
+
+    override fun hashCode() = key.hashCode() xor value.hashCode()
+
+    override fun toString() = "$key=$value"
+  }
+
+  // преобразовать строку в HashMap: значения добавляются так же, как при
+  // заполнении отображения строки, затем удаляются отсутствующие
+  private fun toMap(valueAt: (Int) -> String? = this::valueAt): HashMap<String, String> {
+    map?.let { return it }
+    val map = HashMap<String, String>()
+    for (i in 0 until schema.size) map[schema.nameOf(i)] = valueAt(i) ?: ""
+    for (i in 0 until schema.size) if (valueAt(i) == null) map.remove(schema.nameOf(i))
+    this.map = map
+    cells = null
+    nonZero = noBits
+    packed = noValues
+    numberOfPacked = 0
+    return map
+  }
+
+  /**
+   * Столбец [name] таблицы. Номер столбца определяется один раз для
+   * схемы строк, поэтому для строк [Row] значение получается из массива
+   * без поиска по названию. Для других отображений используется поиск
+   * по названию. Объект не потокобезопасен.
+   */
+  class Column(val name: String) {
+    private var schema: Schema? = null
+    private var index = -1
+
+    operator fun get(row: Map<String, String>): String? {
+      if (row !is Row) return row[name]
+      val index = indexIn(row.schema)
+      return if (index < 0) null else row.valueAt(index)
+    }
+
+    operator fun set(row: MutableMap<String, String>, value: String) {
+      if (row !is Row) {
+        row[name] = value
+        return
+      }
+      val index = indexIn(row.schema)
+      if (index < 0) row[name] = value else row.setValueAt(index, value)
+    }
+
+    private fun indexIn(schema: Schema): Int {
+      if (schema !== this.schema) {
+        index = schema.indexOf(name)
+        this.schema = schema
+      }
+      return index
+    }
+  }
+
+  /**
+   * Группа столбцов [names] таблицы (например, количество кристаллов
+   * МСА), в которых у большинства строк значение "0". Если в схеме
+   * строки [Row] все эти столбцы - столбцы нулей, ненулевые значения
+   * перебираются по битовой маске, без обращения к нулевым столбцам.
+   * Объект не потокобезопасен.
+   */
+  class Columns(val names: List<String>) {
+    private val columns = names.map { Column(it) }
+    private var schema: Schema? = null
+    // номер в names по номеру бита столбца нулей схемы (-1 - не из группы);
+    // null - не все столбцы группы хранятся в схеме как столбцы нулей
+    private var indexesOfBits: IntArray? = null
+
+    /** Столбец группы с номером [index] */
+    operator fun get(index: Int) = columns[index]
+
+    /**
+     * Перебор ненулевых значений столбцов группы в строке [row]:
+     * [action] получает номер столбца в [names] и его значение.
+     * В [action] значение столбца строки можно заменить, но не на "0".
+     */
+    fun forEachNonZero(row: Map<String, String>, action: (Int, String) -> Unit) {
+      val indexesOfBits = if (row is Row && row.cells != null) indexesIn(row.schema) else null
+      if (indexesOfBits == null) {
+        for (i in columns.indices) {
+          val value = columns[i][row]
+          if (value != null && value != zero) action(i, value)
+        }
+        return
+      }
+      row as Row
+      var rank = 0
+      for (word in row.nonZero.indices) {
+        var bits = row.nonZero[word]
+        while (bits != 0L) {
+          val bit = (word shl 6) + java.lang.Long.numberOfTrailingZeros(bits)
+          val index = indexesOfBits[bit]
+          if (index >= 0) action(index, row.packed[rank]!!)
+          rank++
+          bits = bits and (bits - 1)
+        }
+      }
+    }
+
+    private fun indexesIn(schema: Schema): IntArray? {
+      if (schema !== this.schema) {
+        val indexesOfBits = IntArray(schema.indexesOfZeroColumns.size) { -1 }
+        var allZero = true
+        names.forEachIndexed { i, name ->
+          val index = schema.indexOf(name)
+          if (index >= 0 && schema.isZeroColumn[index]) {
+            indexesOfBits[schema.positions[index]] = i
+          } else allZero = false
+        }
+        this.indexesOfBits = if (allZero) indexesOfBits else null
+        this.schema = schema
+      }
+      return indexesOfBits
+    }
+  }
+
+  companion object {
+    /** Значение столбца нулей, которое не хранится в строке */
+    const val zero = "0"
+    private val noBits = LongArray(0)
+    private val noValues = arrayOfNulls<String>(0)
+  }
+}
@@ -0,0 +1,82 @@
+package model.utils
+
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Схема таблицы: названия столбцов и их номера в строках [Row].
+ * Номера назначаются в порядке следования столбцов [columns]
+ * (повторяющиеся названия получают номер первого вхождения). Порядок
+ * перебора столбцов строки - тот же, что у HashMap, в который значения
+ * добавлялись в порядке [columns], поэтому строки [Row] перебираются
+ * (и записываются в файлы) так же, как прежние отображения HashMap.
+ * [zeroColumns] - столбцы, в которых у большинства строк значение "0"
+ * (например, количество кристаллов МСА): строки [Row] хранят для них
+ * только ненулевые значения.
+ */
+class Schema(columns: Iterable<String>, zeroColumns: Collection<String> = emptySet()) {
+  private val slots = HashMap<String, Int>()
+  private val names = ArrayList<String>()
+
+  init {
+    columns.forEach { name ->
+      if (!slots.containsKey(name)) {
+        slots[name] = names.size
+        names.add(name)
+      }
+    }
+  }
+
+  // номера столбцов в порядке перебора HashMap
+  internal val order: IntArray = slots.values.toIntArray()
+
+  // true - столбец с номером (индекс массива) хранится как столбец нулей
+  internal val isZeroColumn = BooleanArray(names.size) { names[it] in zeroColumns }
+
+  // для обычного столбца - номер в массиве значений строки,
+  // для столбца нулей - номер бита в битовой маске ненулевых значений
+  internal val positions = IntArray(names.size)
+
+  // номера столбцов нулей по номерам их битов
+  internal val indexesOfZeroColumns: IntArray
+
+  // количество обычных столбцов
+  internal val numberOfDenseColumns: Int
+
+  init {
+    var dense = 0
+    val zero = ArrayList<Int>()
+    for (i in names.indices) {
+      if (isZeroColumn[i]) {
+        positions[i] = zero.size
+        zero.add(i)
+      } else positions[i] = dense++
+    }
+    indexesOfZeroColumns = zero.toIntArray()
+    numberOfDenseColumns = dense
+  }
+
+  /** Количество столбцов */
+  val size get() = names.size
+
+  /** Названия столбцов в порядке их номеров */
+  val columns: List<String> get() = names
+
+  /** Номер столбца [name] или -1, если такого столбца в схеме нет */
+  fun indexOf(name: String): Int = slots[name] ?: -1
+
+  /** Название столбца с номером [index] */
+  fun nameOf(index: Int): String = names[index]
+
+  // схемы, дополненные одним столбцом (строки таблицы обычно дополняются
+  // одними и теми же атрибутами, поэтому схема создается один раз)
+  private val extensions = ConcurrentHashMap<String, Schema>()
+
+  /**
+   * Схема, дополненная столбцом [name] (он получает последний номер).
+   * Порядок перебора столбцов дополненной схемы - тот же, что у HashMap,
+   * в который после столбцов этой схемы добавили [name].
+   */
+  fun extendedWith(name: String): Schema = extensions.getOrPut(name) {
+    Schema(names + name, names.filterIndexed { i, _ -> isZeroColumn[i] })
+  }
+}
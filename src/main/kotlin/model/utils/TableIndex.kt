@@ -0,0 +1,89 @@
+package model.utils
+
+import model.constants.IsihogyClientConstants.nameOfAttributeID
+
+/**
+ * Хеш-индекс таблицы [table] по значению атрибута [nameOfKey] (по
+ * умолчанию - идентификатор точки наблюдения "ID ТН"). Индекс строится
+ * один раз, после чего поиск строк с тем же значением ключа выполняется
+ * без перебора всей таблицы. Строки с одинаковым ключом хранятся в
+ * порядке следования в таблице; строки без атрибута-ключа тоже
+ * индексируются (ключ null), - так же, как при сравнении значений
+ * атрибутов через "==".
+ */
+class TableIndex<T: Map<String, String>>(table: List<T>,
+                                         val nameOfKey: String = nameOfAttributeID) {
+  private val groups = HashMap<String?, MutableList<T>>()
+
+  init {
+    table.forEach { row ->
+      val key = row[nameOfKey]
+      val group = groups[key]
+      if (group == null) groups[key] = arrayListOf(row) else group.add(row)
+    }
+  }
+
+  /** Есть ли в индексе строки с тем же значением ключа, что у строки [row] */
+  fun contains(row: Map<String, String>) = groups.containsKey(row[nameOfKey])
+
+  /** Первая строка таблицы с тем же значением ключа, что у строки [row] */
+  fun firstMatch(row: Map<String, String>): T? = groups[row[nameOfKey]]?.get(0)
+
+  /** Все строки таблицы с тем же значением ключа, что у строки [row] */
+  fun matches(row: Map<String, String>): List<T> = groups[row[nameOfKey]] ?: emptyList()
+
+  /**
+   * Полусоединение: строки [rows], для которых в индексе есть строки
+   * с тем же значением ключа (в порядке следования в [rows])
+   */
+  fun <R: Map<String, String>> semiJoin(rows: List<R>): List<R> = rows.filter { contains(it) }
+
+  /**
+   * Внутреннее соединение: для каждой строки из [rows], для которой в
+   * индексе есть строка с тем же значением ключа, создается новая строка
+   * с атрибутами строки из [rows] и атрибутами первой найденной строки
+   * индекса (при совпадении названий значение берется из индекса).
+   * Если задан список [attributes], в новую строку добавляются только
+   * эти атрибуты.
+   */
+  fun innerJoin(rows: List<Map<String, String>>, attributes: Collection<String>? = null):
+          List<MutableMap<String, String>> {
+    val joinedRows = ArrayList<MutableMap<String, String>>()
+    rows.forEach { row ->
+      val match = firstMatch(row) ?: return@forEach
+      val joinedRow: MutableMap<String, String> = HashMap()
+      putAttributes(joinedRow, row, attributes)
+      putAttributes(joinedRow, match, attributes)
+      joinedRows.add(joinedRow)
+    }
+    return joinedRows
+  }
+
+  /**
+   * Добавляет в строку [row] атрибуты первой строки индекса с тем же
+   * значением ключа (если задан список [attributes] - только эти
+   * атрибуты). Возвращает false, если такой строки в индексе нет.
+   */
+  fun joinTo(row: MutableMap<String, String>, attributes: Collection<String>? = null): Boolean {
+    val match = firstMatch(row) ?: return false
+    putAttributes(row, match, attributes)
+    return true
+  }
+
+  /**
+   * Агрегирование по группе: последовательно применяет операцию
+   * [operation] к значению [initial] и строкам индекса с тем же
+   * значением ключа, что у строки [row]
+   */
+  inline fun <A> aggregate(row: Map<String, String>, initial: A, operation: (A, T) -> A): A =
+          matches(row).fold(initial, operation)
+
+  private fun putAttributes(target: MutableMap<String, String>, source: Map<String, String>,
+                            attributes: Collection<String>?) {
+    if (attributes == null) {
+      target.putAll(source)
+    } else {
+      attributes.forEach { name -> source[name]?.let { target[name] = it } }
+    }
+  }
+}
@@ -5,7 +5,6 @@ import model.constants.IsihogyClientConstants.nameOfAttributeID
 import model.constants.IsihogyClientConstants.nameOfAttributeLCodeAge
 import model.constants.IsihogyClientConstants.nameOfAttributeTo
 import model.utils.CollectionUtils.copyListWithSubMap
-import java.util.stream.Collectors
 
 /**
  * Класс позволяет объединить сопредельные стратиграфические слои с
@@ -35,11 +34,10 @@ class UnionAgeLayers(layersForUnion: List<MutableMap<String, String>>) {
   }
 
   fun getTableWithUnionLayers(): List<MutableMap<String, String>> {
-    val ids = layersForUnion.stream()
-            .map { it[nameOfAttributeID] }
-            .collect(Collectors.toSet()) // получить набор уникальных id скважин
-    ids.forEach { idWell -> // перебор скважин
-      val layersForCurrentWell = layersForUnion.filter { it[nameOfAttributeID] == idWell }
+    val layersOfWells = GroupedTable(layersForUnion)
+    // перебор скважин (в прежнем порядке - от него зависит порядок слоев)
+    layersOfWells.keysInHashOrder().forEach { idWell ->
+      val layersForCurrentWell = layersOfWells[idWell]
       // запомнить данные по первому слою
       var from = layersForCurrentWell[0][nameOfAttributeFrom]
       var to = layersForCurrentWell[0][nameOfAttributeTo]
@@ -1,17 +1,12 @@
 package model.utils
 
-import model.constants.CommonConstants.nameOfAttributeDepth
 import model.constants.CommonConstants.noData
 import model.constants.ProbesWithMSDConstants
-import model.constants.ProbesWithMSDConstants.firstIndexOfNumberCrystal
-import model.constants.ProbesWithMSDConstants.firstIndexOfNumberMineral
-import model.constants.ProbesWithMSDConstants.indexAndNameOfColumns
-import model.constants.ProbesWithMSDConstants.lastIndexOfNumberCrystal
-import model.constants.ProbesWithMSDConstants.lastIndexOfNumberMineral
+import model.constants.ProbesWithMSDConstants.namesOfNumberColumns
 import model.constants.ProbesWithMSDConstants.numberOfProbe
 import model.constants.ProbesWithoutMSDConstants
+import model.utils.ExcelUtils.RowFilter
 import java.util.stream.Collectors
-import java.lang.Double.valueOf as toDouble
 
 /**
  * Набор утилит для решения задач, связанных с данными, загруженными с
@@ -19,66 +14,27 @@ import java.lang.Double.valueOf as toDouble
  */
 object WebServiceUtils {
 
-  /**
-   * Возвращает список скважин с уникальными именемами скважин(номер/линия).
-   * Используется для создания файла устьев скважин - чтобы нескольким пробам
-   * из одной скважины соответствовала только одна скважина в файле устьев
-   * Используется для задач, связанных с обработкой данных минералогии
-   * из excel-файла  и загрузкой их в Micromine.
-   * [topWells] список скважин, где возможны скважины с повторяющимися именами
-   * @return скважины с уникальными именами
-   */
-  fun getWellsWithUniqueNames(topWells: List<MutableMap<String, String>>):
-          MutableList<MutableMap<String, String>> {
-    val uniqueValues = ArrayList<MutableMap<String, String>>()
-    uniqueValues.add(HashMap(topWells.first()))
-    // переменная определяет, добавлена ли скважина в список уникальных скважин
-    var addedWell: Boolean
-    for (i in 1 until topWells.size) {
-      var k = 0
-      do { // перебор уникальных скважин
-        addedWell = equalsNamesWells(topWells[i], uniqueValues[k])
-        k++
-      // если список уникальных скважин пройден или найдена новая скважина
-      } while (k < uniqueValues.size && !addedWell)
-      if (!addedWell) { // если текущей скважины нет в списке уникальных скважин
-        uniqueValues.add(HashMap(topWells[i])) // добавить ее в список
-      }
-    }
-    return uniqueValues
-  }
-
-  private fun equalsNamesWells(list1: Map<String, String>,
-                               list2: Map<String, String>): Boolean =
-    list1["Линия"] == list2["Линия"] && list1["Точка"] == list2["Точка"]
-
   /* поправка ИСИХОГИ */
   fun makeAmendment(wells: List<MutableMap<String, String>>) {
-    wells.forEach { well ->
-      var x = toDouble(well["X"])
-      var y = toDouble(well["Y"])
-      var z = toDouble(well["Z"])
-      x -= 20000
-      y -= 10000
+    val x = NumericColumn(wells, "X")
+    val y = NumericColumn(wells, "Y")
+    val z = NumericColumn(wells, "Z")
+    for (i in 0 until x.size) {
       /* округлить координаты до двух знаков */
-      x = Math.round(x * 100.0) / 100.0
-      y = Math.round(y * 100.0) / 100.0
-      z = Math.round(z * 100.0) / 100.0
-      well.replace("X", x.toString())
-      well.replace("Y", y.toString())
-      well.replace("Z", z.toString())
+      x[i] = Math.round((x[i] - 20000) * 100.0) / 100.0
+      y[i] = Math.round((y[i] - 10000) * 100.0) / 100.0
+      z[i] = Math.round(z[i] * 100.0) / 100.0
     }
+    x.store()
+    y.store()
+    z.store()
   }
 
   /** Заменить запятую на точку для некоторых атрибутов */
   fun replaceCommaForWells(wells: List<MutableMap<String, String>>) {
+    val columns = listOf("X", "Y", "Z", "От", "До", "Объем").map { Row.Column(it) }
     wells.forEach { currentProbe ->
-      currentProbe.replace("X", currentProbe["X"]!!.replace(",", "."))
-      currentProbe.replace("Y", currentProbe["Y"]!!.replace(",", "."))
-      currentProbe.replace("Z", currentProbe["Z"]!!.replace(",", "."))
-      currentProbe.replace("От", currentProbe["От"]!!.replace(",", "."))
-      currentProbe.replace("До", currentProbe["До"]!!.replace(",", "."))
-      currentProbe.replace("Объем", currentProbe["Объем"]!!.replace(",", "."))
+      columns.forEach { it[currentProbe] = it[currentProbe]!!.replace(',', '.') }
     }
   }
 
@@ -87,17 +43,12 @@ object WebServiceUtils {
    * значению "До" присвоить значение "От" + 0.1
    */
   fun checkSequenceIntervals(intervalWells: List<MutableMap<String, String>>) {
-    var from: Double
-    var to: Double
-    for (probe in intervalWells) {
-      from = probe["От"]!!.toDouble()
-      to = probe["До"]!!.toDouble()
-      if (from >= to) {
-        var newTo = from + 0.1
-        newTo = Math.round(newTo * 100.0) / 100.0 // округлить до двух знаков
-        probe["До"] = newTo.toString()
-      }
+    val from = CentimetreColumn(intervalWells, "От")
+    val to = CentimetreColumn(intervalWells, "До")
+    for (i in 0 until from.size) {
+      if (from[i] >= to[i]) to[i] = from[i] + 10 // 0.1 м
     }
+    to.store()
   }
 
   /**
@@ -106,24 +57,34 @@ object WebServiceUtils {
    */
   fun selectionByGeologicalAge(probes: MutableList<MutableMap<String, String>>,
                                typeOfSelectionAge: String):
-          MutableList<MutableMap<String, String>> = when (typeOfSelectionAge) {
-      "Все пробы" -> probes
-      "По всем возрастам" -> probes.stream()
-                .filter { it["Стратиграфия"] != "Нет данных"}
-                .collect(Collectors.toList())
-      "Без возрастов" -> probes.stream()
-                .filter { it["Стратиграфия"] == "Нет данных" }
-                .collect(Collectors.toList())
-      else -> {
-        // проверяется вложенность: например если искомый стратиграфический
-        // индекс будет J1tn, то J1tn! тоже попадет в итоговую коллекцию
-        probes.stream()
-                .filter { val s = it["Стратиграфия"] ?: ""; s.contains(typeOfSelectionAge) }
-                .collect(Collectors.toList())
-        // если нужно строгое соответствие индексов
-        // тогда следует использовать выражение:
-        // probes.stream().filter { it["Стратиграфия"] == typeOfSelectionAge }
-      }
+          MutableList<MutableMap<String, String>> {
+    val condition = conditionOfGeologicalAge(typeOfSelectionAge) ?: return probes
+    return probes.stream()
+            .filter { condition(it["Стратиграфия"]) }
+            .collect(Collectors.toList())
+  }
+
+  /**
+   * Условие выборки по стратиграфии, которое проверяется при чтении
+   * excel-листа (см. ExcelUtils.getTableOfWebResource) - строки, не
+   * попавшие в выборку, не загружаются в таблицу. Для выборки
+   * "Все пробы" возвращает null.
+   */
+  fun filterOfGeologicalAge(typeOfSelectionAge: String): RowFilter? =
+          conditionOfGeologicalAge(typeOfSelectionAge)?.let {
+            RowFilter("Стратиграфия", it) }
+
+  // значение null - стратиграфия в строке отсутствует (пустая строка)
+  private fun conditionOfGeologicalAge(typeOfSelectionAge: String):
+          ((String?) -> Boolean)? = when (typeOfSelectionAge) {
+      "Все пробы" -> null
+      "По всем возрастам" -> { s -> s != "Нет данных" }
+      "Без возрастов" -> { s -> s == "Нет данных" }
+      // проверяется вложенность: например если искомый стратиграфический
+      // индекс будет J1tn, то J1tn! тоже попадет в итоговую коллекцию
+      else -> { s -> (s ?: "").contains(typeOfSelectionAge) }
+      // если нужно строгое соответствие индексов
+      // тогда следует использовать выражение: s == typeOfSelectionAge
   }
 
   /**
@@ -173,61 +134,24 @@ object WebServiceUtils {
   /**
    * Устранить проблему совпадающих устьев, когда у разных скважин совпадают
    * координаты X,Y,Z. В этом случае, для координаты X устанавливается
-   * минимальное приращение на 0.01 м
+   * минимальное приращение на 0.01 м.
+   * [tolerance] - расстояние (м), при котором устья считаются совпадающими;
+   * при 0 координаты должны совпадать точно (см. [CoincidentCollars])
    */
-  fun fixCoincidentCollarOfWell(topWells: List<MutableMap<String, String>>) {
-    // коллекция с которой сопоставляется каждый элемент на предмет совпадения
-    // по XYZ. Размер коллекции уменьшается в процессе перебора.
-    val wellsForSearch = ArrayList(topWells)
-    // коллекция, куда сохраняются совпавшие по XYZ скважины, включая текущую
-    // проверяемую скважину
-    val coincidentWells: MutableList<MutableMap<String, String>> = ArrayList()
-    for (e1 in topWells) { // перебор всех скважин
-      var wasCoincidence = false // определяет, были ли уже совпадения
-      // текущая скважина e1 сопоставляется с остальными на предмет совпадения
-      wellsForSearch.forEach { e2 ->
-        if (e1["IDW"] != e2["IDW"] && e1["X"] == e2["X"] && e1["Y"] == e2["Y"]
-                && e1["Z"] == e2["Z"]) {
-          // если совпадение встречено впервые, добавить сразу текущий элемент
-          if (!wasCoincidence) {
-            coincidentWells.add(e1)
-            wasCoincidence = true
-          }
-          coincidentWells.add(e2) // добавить элемент, который совпал
-        }
-      }
-      // если были найдены совпадения по XYZ для текущей скважины
-      if (coincidentWells.size != 0) {
-        wellsForSearch.removeAll(coincidentWells)
-        var increment = 0.0
-        // перебрать все скважины, совпавшие по XYZ
-        for (well in coincidentWells) {
-          var x: Double = well["X"]!!.toDouble() + increment
-          x = Math.round(x * 100.0) / 100.0 // округлить до двух знаков
-          // необязательно делать изменение отображений в коллекции topWells,
-          // достаточно лишь изменить отображения в текущей коллекции
-          // совпавших по XYZ скважин, поскольку в нее добавлены отображения,
-          // ссылающиеся на коллекцию topWells
-          well["X"] = x.toString()
-          // координата следующей скважины будет смещена на 0.01 м
-          increment += 0.01
-        }
-        coincidentWells.clear()
-      }
-      wellsForSearch.remove(e1) // исключить текущий элемент из поиска
-    }
-  }
+  fun fixCoincidentCollarOfWell(topWells: List<MutableMap<String, String>>,
+                                tolerance: Double = 0.0) =
+          CoincidentCollars("IDW", "X", "Y", "Z", tolerance).fix(topWells)
 
   /**
-   * Присвоить интервалам id-номера из таблицы устьев скважин, с той целью,
-   * чтобы потом связать файл устьев и файл интервалов в Micromine
+   * Сдвинуть идентификаторы скважин (IDW) в таблицах [tables] на
+   * [offset]. Нужно для данных файлов, подготовленных независимо друг
+   * от друга: при записи идентификаторы продолжают общую нумерацию.
    */
-  fun assignIDToIntervals(uniqueTopWells: List<MutableMap<String, String>>,
-                          intervalWells: List<MutableMap<String, String>>) {
-    uniqueTopWells.forEach { top ->
-      intervalWells.forEach { interval ->
-        if (equalsNamesWells(top, interval))
-          interval["IDW"] = top["IDW"].toString()
+  fun shiftIDOfWells(offset: Int, vararg tables: List<MutableMap<String, String>>) {
+    if (offset == 0) return
+    tables.forEach { table ->
+      table.forEach { row ->
+        row["IDW"]?.let { row["IDW"] = (it.toInt() + offset).toString() }
       }
     }
   }
@@ -242,42 +166,30 @@ object WebServiceUtils {
    */
   fun updateCrystalNumberWithMSD(intervalWells: List<MutableMap<String, String>>,
                                  referenceVolumeProbe: Byte) {
+    // столбцы с количеством кристаллов МСА для различных типов минералов и
+    // с количеством минералов (альмандин, гроссуляр); в большинстве проб
+    // значения в них нулевые, поэтому перебираются только ненулевые
+    val columns = Row.Columns(namesOfNumberColumns)
+    val volume = Row.Column("Объем")
     intervalWells.forEach { currentProbe ->
-      var realProbeVolume: String? = currentProbe["Объем"]
+      val realProbeVolume: String? = volume[currentProbe]
       if (realProbeVolume != null && realProbeVolume != noData) {
-        realProbeVolume = realProbeVolume.replace("л", "").trim()
-        // перебрать все значения с количеством кристаллов МСА для различных типов
-        // минералов, и заменить эти значения на пересчитанные с эталонным объемом
-        (firstIndexOfNumberCrystal..lastIndexOfNumberCrystal).forEach {
-          recalculationVolumeWithMSD(it, currentProbe, referenceVolumeProbe,
-                  realProbeVolume)
-        }
-
-        // перебрать все значения с количеством минералов (альмандин, гроссуляр)
-        // и заменить эти значения на пересчитанные с эталонным объемом
-        (firstIndexOfNumberMineral..lastIndexOfNumberMineral).forEach {
-          recalculationVolumeWithMSD(it, currentProbe, referenceVolumeProbe,
-                  realProbeVolume)
+        // объем разбирается один раз для пробы, при первой ненулевой находке
+        var volumeOfProbe = Double.NaN
+        // заменить значения на пересчитанные с эталонным объемом
+        columns.forEachNonZero(currentProbe) { i, value ->
+          val numberOfCrystal = DecimalCodec.parse(value)
+          if (numberOfCrystal != 0.0) {
+            if (volumeOfProbe.isNaN()) volumeOfProbe = DecimalCodec.parse(realProbeVolume, "л")
+            // округлить до двух знаков
+            val newValue = DecimalCodec.round(numberOfCrystal * referenceVolumeProbe / volumeOfProbe)
+            columns[i][currentProbe] = DecimalCodec.format(newValue)
+          }
         }
       }
     }
   }
 
-  private fun recalculationVolumeWithMSD(index: Int, currentProbe: MutableMap<String, String>,
-                                         referenceVolume: Byte, realVolume: String) {
-    val numberOfCrystal = toDouble(
-            currentProbe[indexAndNameOfColumns[index]]!!.replace(",","."))
-    if (numberOfCrystal != 0.0) {
-      var newValue = numberOfCrystal * referenceVolume / toDouble(realVolume)
-      // округлить до двух знаков
-      newValue = Math.round(newValue * 100.0) / 100.0
-      val key: String? = indexAndNameOfColumns[index]
-      if (key != null) {
-        currentProbe[key] = newValue.toString()
-      }
-    }
-  }
-
   /**
    * Пересчет количеста найденных минералов (Сервис "Пробы без МСА")
    * на определенный объем (например на 5, 10, 15, 20 литров).
@@ -288,55 +200,29 @@ object WebServiceUtils {
    */
   fun updateCrystalNumberWithoutMSD(intervalWells: List<MutableMap<String, String>>,
                                     referenceVolumeProbe: Byte) {
+    // столбцы с количеством минералов (альмандин, гроссуляр)
+    val columns = (ProbesWithoutMSDConstants.firstIndexOfNumberMineral..
+            ProbesWithoutMSDConstants.lastIndexOfNumberMineral)
+            .map { Row.Column(ProbesWithoutMSDConstants.indexAndNameOfColumns[it]!!) }
     intervalWells.forEach { currentProbe ->
       var realProbeVolume: String? = currentProbe["Объем"]
       if (realProbeVolume != noData) {
         realProbeVolume = realProbeVolume!!.substring(0,
                 realProbeVolume.length - 2)
-
+        // объем разбирается один раз для пробы, при первой ненулевой находке
+        var volumeOfProbe = Double.NaN
         // перебрать все значения с количеством минералов (альмандин, гроссуляр)
         // и заменить эти значения на пересчитанные с эталонным объемом
-        (ProbesWithoutMSDConstants.firstIndexOfNumberMineral..ProbesWithoutMSDConstants.lastIndexOfNumberMineral).forEach {
-          recalculationVolumeWithoutMSD(it, currentProbe, referenceVolumeProbe,
-                  realProbeVolume)
+        columns.forEach { column ->
+          val numberOfCrystal = DecimalCodec.parse(column[currentProbe]!!)
+          if (numberOfCrystal != 0.0) {
+            if (volumeOfProbe.isNaN()) volumeOfProbe = DecimalCodec.parse(realProbeVolume)
+            // округлить до двух знаков
+            val newValue = DecimalCodec.round(numberOfCrystal * referenceVolumeProbe / volumeOfProbe)
+            column[currentProbe] = DecimalCodec.format(newValue)
+          }
         }
       }
     }
   }
-
-  private fun recalculationVolumeWithoutMSD(index: Int, currentProbe: MutableMap<String, String>,
-                                            referenceVolume: Byte, realVolume: String) {
-    val numberOfCrystal = toDouble(
-            currentProbe[ProbesWithoutMSDConstants.indexAndNameOfColumns[index]]!!.replace(",", "."))
-    if (numberOfCrystal != 0.0) {
-      var newValue = numberOfCrystal * referenceVolume / toDouble(realVolume)
-      // округлить до двух знаков
-      newValue = Math.round(newValue * 100.0) / 100.0
-      val key: String? = ProbesWithoutMSDConstants.indexAndNameOfColumns[index]
-      if (key != null) {
-        currentProbe[key] = newValue.toString()
-      }
-    }
-  }
-
-
-  /**
-   * Для каждой скважины находится самый глубокий интервал
-   * опробования, подошва этого интервала и будет значением
-   * глубины скважины.
-   */
-  fun defineDepthOfWells(topWells: List<MutableMap<String, String>>,
-                         intervalWells: List<MutableMap<String, String>>) {
-    topWells.forEach { well ->
-      // максимальное значение подошвы интервала опробования, которое
-      // и будет глубиной скважины. Последовательность sequence
-      // позволяет ускорить процесс нахождения максимального значения
-      val max = intervalWells.asSequence()
-              .filter { it["IDW"] == well["IDW"] } // слои для текущей скважины
-              .map { it["До"]?.toDouble()?: 1000.0 } // получить значение подошвы
-              .max() // получить максимальное значение
-              .toString()
-      well[nameOfAttributeDepth] = max
-    }
-  }
 }
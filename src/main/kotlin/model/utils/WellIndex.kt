@@ -0,0 +1,79 @@
+package model.utils
+
+import model.constants.CommonConstants.nameOfAttributeDepth
+
+/**
+ * Индекс скважин, загруженных с Web-ресурса "МСА по всем объектам".
+ * Скважины индексируются по имени (атрибуты "Линия" и "Точка"), пробы -
+ * по идентификатору скважины (атрибут "IDW"). Поиск повторяющихся
+ * скважин, присвоение идентификаторов интервалам и вычисление глубины
+ * скважин выполняются за один проход по таблице вместо перебора всех
+ * пар скважина - скважина (скважина - интервал).
+ * [topWells] - список скважин, где возможны скважины с повторяющимися именами
+ */
+class WellIndex(topWells: List<MutableMap<String, String>>) {
+  // имя скважины: линия и точка (значения могут отсутствовать)
+  private data class NameOfWell(val line: String?, val point: String?)
+
+  private val wellsByName = HashMap<NameOfWell, MutableMap<String, String>>()
+
+  /**
+   * Скважины с уникальными именами (копии первых скважин с таким именем,
+   * в порядке следования в исходном списке). Используется для создания
+   * файла устьев скважин - чтобы нескольким пробам из одной скважины
+   * соответствовала только одна скважина в файле устьев
+   */
+  val uniqueWells: MutableList<MutableMap<String, String>> = ArrayList()
+
+  init {
+    topWells.forEach { well ->
+      val name = nameOf(well)
+      if (!wellsByName.containsKey(name)) {
+        val uniqueWell = CollectionUtils.copyOfMap(well)
+        wellsByName[name] = uniqueWell
+        uniqueWells.add(uniqueWell)
+      }
+    }
+  }
+
+  /**
+   * Присвоить интервалам [intervalWells] id-номера (IDW) скважин с тем же
+   * именем из [uniqueWells], с той целью, чтобы потом связать файл устьев
+   * и файл интервалов в Micromine. Номера должны быть уже присвоены
+   * скважинам. Интервалы, для которых скважина не найдена, не изменяются.
+   */
+  fun assignIDToIntervals(intervalWells: List<MutableMap<String, String>>) {
+    intervalWells.forEach { interval ->
+      wellsByName[nameOf(interval)]?.let { interval["IDW"] = it["IDW"].toString() }
+    }
+  }
+
+  /**
+   * Для каждой скважины из [uniqueWells] находится самый глубокий
+   * интервал опробования из [intervalWells], подошва этого интервала и
+   * будет значением глубины скважины. Если интервалов для скважины нет,
+   * глубина равна "null".
+   */
+  fun defineDepthOfWells(intervalWells: List<MutableMap<String, String>>) {
+    val maxDepths = HashMap<String?, Double>()
+    intervalWells.forEach { interval ->
+      val depth = interval["До"]?.toDouble() ?: 1000.0 // значение подошвы
+      val idw = interval["IDW"]
+      val max = maxDepths[idw]
+      // так же, как Sequence<Double>.max(): NaN - максимальное значение
+      if (max == null || (!max.isNaN() && (depth.isNaN() || max < depth))) {
+        maxDepths[idw] = depth
+      }
+    }
+    uniqueWells.forEach { well -> well[nameOfAttributeDepth] = maxDepths[well["IDW"]].toString() }
+  }
+
+  /**
+   * Интервалы [intervalWells], сгруппированные по идентификатору
+   * скважины (IDW), в порядке следования в исходном списке
+   */
+  fun intervalsOfWells(intervalWells: List<MutableMap<String, String>>):
+          GroupedTable<MutableMap<String, String>> = GroupedTable(intervalWells, "IDW")
+
+  private fun nameOf(well: Map<String, String>) = NameOfWell(well["Линия"], well["Точка"])
+}
@@ -0,0 +1,65 @@
+package model.file
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook
+import org.apache.poi.ss.usermodel.Workbook
+import org.apache.poi.xssf.usermodel.XSSFWorkbook
+import org.junit.jupiter.api.AfterAll
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import java.io.File
+import java.io.FileOutputStream
+
+internal class ExcelWorkbookTest {
+  private val xlsFile = createFile(HSSFWorkbook(), ".xls")
+  private val xlsxFile = createFile(XSSFWorkbook(), ".xlsx")
+
+  private fun createFile(workbook: Workbook, extension: String): File {
+    val file = File.createTempFile("ExcelWorkbookTest", extension)
+    val codes = workbook.createSheet("Справ. Стратиграфия")
+    listOf("L_Code возраста" to "Возраст", "1.0" to "J1uk", "2.0" to "O1ol")
+            .forEachIndexed { i, (code, value) ->
+              val row = codes.createRow(i)
+              row.createCell(0).setCellValue(code)
+              row.createCell(1).setCellValue(value)
+            }
+    val points = workbook.createSheet("Точки наблюдений")
+    (0..5).forEach { points.createRow(it).createCell(0).setCellValue(it.toDouble()) }
+    FileOutputStream(file).use { workbook.write(it) }
+    return file
+  }
+
+  @AfterAll
+  fun deleteFiles() {
+    xlsFile.delete()
+    xlsxFile.delete()
+  }
+
+  private fun rowsOfSheet(workbook: ExcelWorkbook, nameOfSheet: String,
+                          stopAfterRow: Int = Int.MAX_VALUE): List<Map<Int, String>> {
+    val rows = ArrayList<Map<Int, String>>()
+    assertTrue(workbook.readSheet(nameOfSheet, { _, cells -> rows.add(HashMap(cells)) },
+            stopAfterRow))
+    return rows
+  }
+
+  @Test
+  fun `all sheets are read from one opened workbook`() {
+    ExcelWorkbook(xlsFile).use { xls ->
+      ExcelWorkbook(xlsxFile).use { xlsx ->
+        assertEquals(rowsOfSheet(xls, "Справ. Стратиграфия"),
+                rowsOfSheet(xlsx, "Справ. Стратиграфия"))
+        assertEquals(rowsOfSheet(xls, "Точки наблюдений"),
+                rowsOfSheet(xlsx, "Точки наблюдений"))
+        assertEquals(6, rowsOfSheet(xlsx, "Точки наблюдений").size)
+        assertFalse(xls.readSheet("Литостратиграфия", { _, _ -> }))
+        assertFalse(xlsx.readSheet("Литостратиграфия", { _, _ -> }))
+      }
+    }
+  }
+
+  @Test
+  fun `reading stops after required row`() {
+    ExcelWorkbook(xlsFile).use { assertEquals(2, rowsOfSheet(it, "Точки наблюдений", 1).size) }
+    ExcelWorkbook(xlsxFile).use { assertEquals(2, rowsOfSheet(it, "Точки наблюдений", 1).size) }
+  }
+}
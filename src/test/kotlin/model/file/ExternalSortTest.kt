@@ -0,0 +1,33 @@
+package model.file
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import java.util.*
+
+internal class ExternalSortTest {
+
+  @Test
+  fun `sorted rows are the same as after stable sort`() {
+    val random = Random(19)
+    val rows = List(1000) { listOf("${random.nextInt(30)}", "$it", "Скважина;${random.nextInt()}") }
+    val comparator = compareBy<List<String>> { it[0].toInt() }
+    for (memoryForRows in listOf(0L, 1000L, 20_000L, Long.MAX_VALUE)) {
+      ExternalSort(comparator, memoryForRows).use { sort ->
+        rows.forEach { sort.add(it) }
+        assertEquals(rows.size.toLong(), sort.size)
+        assertEquals(rows.sortedWith(comparator), sort.sorted().asSequence().toList())
+      }
+    }
+  }
+
+  @Test
+  fun `size of row`() {
+    assertEquals(16L + 4L * 2 + (40L + 2L * 3) + (40L + 2L * 6),
+            ExternalSort.sizeOf(listOf("Р-1", "245.06")))
+  }
+
+  @Test
+  fun `no rows`() {
+    ExternalSort(compareBy { it[0] }, 2).use { assertFalse(it.sorted().hasNext()) }
+  }
+}
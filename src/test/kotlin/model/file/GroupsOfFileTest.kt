@@ -0,0 +1,65 @@
+package model.file
+
+import model.utils.GroupedTable
+import org.junit.jupiter.api.AfterAll
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import java.nio.file.Files
+import java.util.*
+
+internal class GroupsOfFileTest {
+  private val file = Files.createTempFile("GroupsOfFileTest", ".txt")
+
+  init {
+    val random = Random(23)
+    val lines = arrayListOf("N;ID;От;Прочее")
+    repeat(500) { lines.add("$it;Р-${random.nextInt(40)};${random.nextInt(100)};${"x".repeat(50)}") }
+    Files.write(file, lines.joinToString("\r\n").toByteArray(charset("Windows-1251")))
+  }
+
+  @AfterAll
+  fun deleteFile() {
+    Files.delete(file)
+  }
+
+  // в строках остаются только три атрибута из четырех
+  private fun read(memoryForTable: Long, memoryForGroups: Long = Long.MAX_VALUE) =
+          GroupsOfFile.read(file, 4..4, 1,
+          title = { assertEquals(listOf("N", "ID", "От", "Прочее"), it) },
+          memoryForTable = memoryForTable, memoryForSort = 2000,
+          memoryForGroups = memoryForGroups) {
+    hashMapOf("N" to it[0], "ID" to it[1], "От" to it[2])
+  }
+
+  @Test
+  fun `groups are the same as in memory`() {
+    val expected = read(Long.MAX_VALUE)
+    assertTrue(expected is GroupedTable)
+    read(0).use { groups ->
+      assertTrue(groups is GroupsOfFile)
+      assertEquals(500L, groups.numberOfRows)
+      assertEquals(expected.keysInHashOrder().toList(), groups.keysInHashOrder().toList())
+      groups.keysInHashOrder().forEach { assertEquals(expected[it], groups[it], it) }
+      assertEquals(emptyList<Map<String, String>>(), groups["Р-100"])
+    }
+  }
+
+  @Test
+  fun `groups out of order are kept within the limit`() {
+    val expected = read(Long.MAX_VALUE)
+    read(0).use { groups ->
+      // все группы, кроме последней, пропускаются и хранятся в памяти
+      val keys = groups.keysInHashOrder().reversed()
+      keys.forEach { assertEquals(expected[it], groups[it], it) }
+    }
+  }
+
+  @Test
+  fun `groups out of order beyond the limit`() {
+    read(0, memoryForGroups = 1000).use { groups ->
+      val keys = groups.keysInHashOrder().toList()
+      assertEquals(keys[0], groups[keys[0]][0]["ID"])
+      assertThrows(IllegalStateException::class.java) { groups[keys.last()] }
+    }
+  }
+}
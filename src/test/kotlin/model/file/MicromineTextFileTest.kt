@@ -69,4 +69,71 @@ internal class MicromineTextFileTest {
     }
     assertEquals("Список атрибутов для записи в файл пуст", e.message)
   }
-}
\ No newline at end of file
+
+  @Test
+  @Order(4)
+  fun `write values after close`() {
+    val path = Files.createTempFile("MicromineTextFileTest", ".txt")
+    MicromineTextFile(path).use {
+      it.writeTitle(listOf("ID", "Описание"))
+      it.writeContent(listOf(mapOf("ID" to "1", "Описание" to "а;б\nв")))
+    }
+    val file = MicromineTextFile(path)
+    file.writeTitle(listOf("ID", "Описание"))
+    file.close()
+    file.writeContentWithoutSomeKeys(listOf(mapOf("ID" to "2")))
+    file.close()
+    assertIterableEquals(listOf("ID;Описание", "2;0"),
+            Files.readAllLines(path, charset("Windows-1251")))
+    Files.delete(path)
+  }
+
+  @Test
+  @Order(5)
+  fun `write behind`() {
+    val path = Files.createTempFile("MicromineTextFileTest", ".txt")
+    val file = MicromineTextFile(path)
+    file.startWriteBehind(1)
+    file.writeTitle(listOf("ID", "Z"))
+    val rows = ArrayList<Map<String, String>>()
+    (1..100).forEach { i ->
+      rows.add(mapOf("ID" to "$i", "Z" to "0,5"))
+      file.writeContent(rows)
+      rows.clear() // в очередь передается копия списка
+    }
+    file.awaitWriting()
+    val lines = Files.readAllLines(path, charset("Windows-1251"))
+    assertEquals(101, lines.size)
+    assertEquals("100;0,5", lines[100])
+    file.close()
+
+    // ошибка записи в потоке передается вызывающему потоку
+    val wrongFile = MicromineTextFile(path)
+    Files.delete(path)
+    Files.createDirectory(path)
+    wrongFile.startWriteBehind()
+    wrongFile.writeTitle(listOf("ID"))
+    assertThrows(IOException::class.java) { wrongFile.awaitWriting() }
+    assertThrows(IOException::class.java) { wrongFile.writeTitle(listOf("ID")) }
+    assertThrows(IOException::class.java) { wrongFile.close() }
+    Files.delete(path)
+  }
+
+  @Test
+  @Order(6)
+  fun `write behind after error in writing thread`() {
+    // Error в потоке записи не должен приводить к бесконечному ожиданию
+    val path = Files.createTempFile("MicromineTextFileTest", ".txt")
+    val file = MicromineTextFile(path)
+    file.startWriteBehind(1)
+    file.writeTitle(listOf("ID"))
+    val wrongRow = object: HashMap<String, String>(mapOf("ID" to "1")) {
+      override fun get(key: String): String? = throw AssertionError("Ошибка строки")
+    }
+    file.writeContent(listOf(wrongRow))
+    assertThrows(IOException::class.java) { file.awaitWriting() }
+    assertThrows(IOException::class.java) { file.writeContent(listOf(mapOf("ID" to "2"))) }
+    assertThrows(IOException::class.java) { file.close() }
+    Files.delete(path)
+  }
+}
@@ -0,0 +1,107 @@
+package model.file
+
+import org.junit.jupiter.api.AfterAll
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import java.io.IOException
+import java.nio.file.Files
+
+internal class MicromineTextReaderTest {
+  private val file = Files.createTempFile("MicromineTextReaderTest", ".txt")
+  private val longValue = "ж".repeat(100000) // больше буфера чтения
+  private val content = "ID;Скважина;От;До\r\n1;Р-15;0,0;\r\n\r2;$longValue;;1\n" +
+          "3;Ё;2,5;3\r4;;;"
+
+  init {
+    Files.write(file, content.toByteArray(charset("Windows-1251")))
+  }
+
+  @AfterAll
+  fun deleteFile() {
+    Files.delete(file)
+  }
+
+  @Test
+  fun `lines are the same as after split`() {
+    val expected = Files.newBufferedReader(file, charset("Windows-1251")).use {
+      it.readLines().map { line -> line.split(";") }
+    }
+    val lines = ArrayList<List<String>>()
+    MicromineTextReader(file).use { while (it.nextLine()) lines.add(it.fields()) }
+    assertEquals(expected, lines)
+    assertEquals(6, lines.size)
+  }
+
+  @Test
+  fun `only required values`() {
+    MicromineTextReader(file).use {
+      assertTrue(it.nextLine())
+      assertEquals("Скважина", it.currentLine[1])
+      assertTrue(it.nextLine())
+      assertEquals(4, it.currentLine.size)
+      assertEquals("", it.field(3))
+      assertTrue(it.fieldEquals(1, "Р-15"))
+      assertFalse(it.fieldEquals(1, "Р-1"))
+      assertFalse(it.fieldEquals(4, "Р-15"))
+      assertThrows(IndexOutOfBoundsException::class.java) { it.field(4) }
+    }
+  }
+
+  @Test
+  fun `incorrect number of values`() {
+    MicromineTextReader(file, 4..4).use {
+      assertTrue(it.nextLine())
+      assertTrue(it.nextLine())
+      assertThrows(IOException::class.java) { it.nextLine() } // пустая строка
+      assertEquals(3, it.numberOfLine)
+    }
+  }
+
+  @Test
+  fun `seek to offset of line`() {
+    val offsets = ArrayList<Long>()
+    val lines = ArrayList<List<String>>()
+    MicromineTextReader(file).use {
+      while (it.nextLine()) {
+        offsets.add(it.offsetOfLine)
+        lines.add(it.fields())
+      }
+      for (i in offsets.indices.reversed()) {
+        it.seek(offsets[i])
+        assertTrue(it.nextLine())
+        assertEquals(lines[i], it.fields())
+      }
+    }
+  }
+
+  @Test
+  fun `read in parallel is the same as line by line`() {
+    val expected = ArrayList<List<String>>()
+    MicromineTextReader(file).use { while (it.nextLine()) expected.add(it.fields()) }
+    for (sizeOfChunk in listOf(1, 2, 3, 5, 8, 13, 100, 1 shl 20)) {
+      var title: List<String> = emptyList()
+      val lines = MicromineTextReader.readInParallel(file, sizeOfChunk = sizeOfChunk,
+              title = { title = it.fields() }) { it.fields() }
+      assertEquals(expected[0], title)
+      assertEquals(expected.drop(1), lines, "sizeOfChunk = $sizeOfChunk")
+    }
+  }
+
+  @Test
+  fun `read in parallel reports number of incorrect line`() {
+    val incorrect = Files.createTempFile("MicromineTextReaderTest", ".txt")
+    try {
+      val lines = (1..200).map { if (it == 150) "$it;1;2" else "$it;1;2;3" }
+      Files.write(incorrect, lines.joinToString("\r\n").toByteArray(charset("Windows-1251")))
+      val expected = assertThrows(IOException::class.java) {
+        MicromineTextReader(incorrect, 4..4).use { while (it.nextLine()) it.fields() }
+      }
+      val actual = assertThrows(IOException::class.java) {
+        MicromineTextReader.readInParallel(incorrect, 4..4, 64, title = {}) { it.fields() }
+      }
+      assertEquals(expected.message, actual.message)
+    } finally {
+      Files.delete(incorrect)
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package model.file
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import java.io.ByteArrayOutputStream
+import java.io.OutputStreamWriter
+import java.nio.channels.Channels
+import java.nio.charset.CodingErrorAction
+import java.util.*
+
+internal class Windows1251Test {
+  private val charset = charset("Windows-1251")
+
+  @Test
+  fun `decode is the same as charset`() {
+    val all = ByteArray(256) { it.toByte() }
+    assertEquals(String(all, charset), Windows1251.decode(all, 0, all.size))
+    assertEquals("245.06", Windows1251.decode("Р-15;245.06".toByteArray(charset), 5, 6))
+    val random = Random(3)
+    repeat(10_000) {
+      val bytes = ByteArray(random.nextInt(300)) { (random.nextInt(256)).toByte() }
+      assertEquals(String(bytes, charset), Windows1251.decode(bytes, 0, bytes.size))
+    }
+  }
+
+  @Test
+  fun `writer output is the same as charset encoder`() {
+    val random = Random(17)
+    val text = StringBuilder("Скважина;Ё;245,06;€;😀;\uD800;中\n")
+    repeat(100_000) { text.append(random.nextInt(0x500).toChar()) }
+    val expected = ByteArrayOutputStream()
+    val encoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE)
+    OutputStreamWriter(expected, encoder).use { it.write(text.toString()) }
+    val actual = ByteArrayOutputStream()
+    Windows1251Writer(Channels.newChannel(actual), 100).use {
+      it.write(text.substring(0, 10))
+      it.write(text[10].toInt())
+      it.write(text.toString(), 11, text.length - 11)
+    }
+    assertArrayEquals(expected.toByteArray(), actual.toByteArray())
+  }
+}
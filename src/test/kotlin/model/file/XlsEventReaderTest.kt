@@ -0,0 +1,75 @@
+package model.file
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook
+import org.junit.jupiter.api.AfterAll
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.util.*
+
+internal class XlsEventReaderTest {
+  private val file = File.createTempFile("XlsEventReaderTest", ".xls")
+
+  init {
+    val workbook = HSSFWorkbook()
+    val dateStyle = workbook.createCellStyle()
+    dateStyle.dataFormat = workbook.creationHelper.createDataFormat().getFormat("dd.mm.yyyy")
+    val sheet = workbook.createSheet("Page 1")
+    sheet.createRow(0).createCell(0).setCellValue("МСА по всем объектам")
+    sheet.createRow(2) // строка без ячеек
+    val row = sheet.createRow(4)
+    row.createCell(0).setCellValue("Нижне-Накынский-4")
+    row.createCell(1).setCellValue(517753.5)
+    row.createCell(2).setCellValue("225,90")
+    row.createCell(4) // пустая ячейка
+    row.createCell(5).setCellValue(GregorianCalendar(2019, 2, 14).time)
+    row.getCell(5).setCellStyle(dateStyle)
+    row.createCell(6).cellFormula = "B5*2"
+    row.createCell(7).setCellValue(false)
+    sheet.createRow(6).createCell(3).setCellValue(24.0)
+    workbook.createSheet("Лист2").createRow(0).createCell(0).setCellValue("2")
+    workbook.createName().nameName = "Диапазон"
+    workbook.getNameAt(0).refersToFormula = "'Page 1'!\$A\$1"
+    FileOutputStream(file).use { workbook.write(it) }
+  }
+
+  @AfterAll
+  fun deleteFile() {
+    file.delete()
+  }
+
+  @Test
+  fun `rows are the same as in the object model`() {
+    val streamRows = TreeMap<Int, Map<Int, String>>()
+    val order = ArrayList<Int>()
+    XlsEventReader(file).use { reader ->
+      assertTrue(reader.readSheet(0) { index, cells ->
+        streamRows[index] = HashMap(cells)
+        order.add(index)
+      })
+      assertIterableEquals(listOf("Page 1", "Лист2"), reader.namesOfSheets)
+      assertEquals(1, reader.numberOfNames)
+    }
+    val domRows = TreeMap<Int, Map<Int, String>>()
+    val workbook = FileInputStream(file).use { HSSFWorkbook(it) }
+    workbook.getSheetAt(0).forEach { row ->
+      domRows[row.rowNum] = row.associate { it.columnIndex to it.toString() }
+    }
+    assertEquals(domRows, streamRows)
+    assertIterableEquals(listOf(0, 2, 4, 6), order)
+    assertEquals("B5*2", streamRows[4]!![6])
+    assertEquals("FALSE", streamRows[4]!![7])
+  }
+
+  @Test
+  fun `second sheet and missing sheet`() {
+    XlsEventReader(file).use { reader ->
+      val rows = ArrayList<String>()
+      assertTrue(reader.readSheet(1) { _, cells -> rows.add(cells[0]!!) })
+      assertIterableEquals(listOf("2"), rows)
+      assertFalse(reader.readSheet(2) { _, _ -> fail<Unit>("") })
+    }
+  }
+}
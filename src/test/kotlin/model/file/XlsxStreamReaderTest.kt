@@ -0,0 +1,77 @@
+package model.file
+
+import org.apache.poi.ss.usermodel.Workbook
+import org.apache.poi.xssf.usermodel.XSSFWorkbook
+import org.junit.jupiter.api.AfterAll
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.util.*
+
+internal class XlsxStreamReaderTest {
+  private val file = File.createTempFile("XlsxStreamReaderTest", ".xlsx")
+
+  init {
+    val workbook = XSSFWorkbook()
+    val dateStyle = workbook.createCellStyle()
+    dateStyle.dataFormat = workbook.creationHelper.createDataFormat().getFormat("dd.mm.yyyy")
+    workbook.createSheet("Справ. Стратиграфия")
+    val sheet = workbook.createSheet("Точки наблюдений")
+    val title = sheet.createRow(0)
+    listOf("ID ТН", "X факт.", "Y факт.", "Z", "Дата", "Формула", "Флаг")
+            .forEachIndexed { i, name -> title.createCell(i).setCellValue(name) }
+    val row = sheet.createRow(1)
+    row.createCell(0).setCellValue(178051.0)
+    row.createCell(1).setCellValue("517753,5")
+    row.createCell(2).setCellValue(7215163.25)
+    row.createCell(3) // пустая ячейка
+    row.createCell(4).setCellValue(GregorianCalendar(2019, 2, 14).time)
+    row.getCell(4).cellStyle = dateStyle
+    row.createCell(5).cellFormula = "B2+1"
+    row.createCell(6).setCellValue(true)
+    sheet.createRow(3).createCell(2).setCellValue(" ")
+    FileOutputStream(file).use { workbook.write(it) }
+  }
+
+  @AfterAll
+  fun deleteFile() {
+    file.delete()
+  }
+
+  @Test
+  fun `names of sheets`() {
+    XlsxStreamReader(file).use {
+      assertIterableEquals(listOf("Справ. Стратиграфия", "Точки наблюдений"), it.namesOfSheets)
+      assertEquals(0, it.numberOfNames)
+    }
+  }
+
+  @Test
+  fun `rows are the same as in the object model`() {
+    val streamRows = TreeMap<Int, Map<Int, String>>()
+    XlsxStreamReader(file).use {
+      // ячейки строки передаются в повторно используемом массиве
+      assertTrue(it.readSheet("Точки наблюдений", { index, cells ->
+        streamRows[index] = HashMap(cells)
+      }))
+    }
+    val domRows = TreeMap<Int, Map<Int, String>>()
+    val workbook: Workbook = FileInputStream(file).use { XSSFWorkbook(it) }
+    workbook.getSheet("Точки наблюдений").forEach { row ->
+      domRows[row.rowNum] = row.associate { it.columnIndex to it.toString() }
+    }
+    assertEquals(domRows, streamRows)
+    assertEquals("", streamRows[1]!![3])
+    assertEquals("B2+1", streamRows[1]!![5])
+    assertEquals("TRUE", streamRows[1]!![6])
+  }
+
+  @Test
+  fun `sheet not found`() {
+    XlsxStreamReader(file).use {
+      assertFalse(it.readSheet("Литостратиграфия", { _, _ -> fail<Unit>("") }))
+    }
+  }
+}
@@ -14,7 +14,10 @@ import TestUtils.outputFolderProbesWithMSD
 import model.constants.CommonConstants.nameOfDotWellsFile
 import model.constants.CommonConstants.nameOfIntervalWellsFile
 import model.constants.CommonConstants.nameOfTopWellsFile
+import model.file.MicromineTextReader
+import model.task.mineralogy.ProbesWithMSD
 import model.task.thread.ManyFilesThreadTask
+import java.nio.file.Path
 
 internal class ManyFilesThreadTaskTest {
 
@@ -44,4 +47,71 @@ internal class ManyFilesThreadTaskTest {
     assertTrue(Files.exists(intervalWellsFile))
     assertTrue(Files.exists(dotWellsFile))
   }
-}
\ No newline at end of file
+
+  @Test
+  fun `parallel output is the same as sequential`() {
+    val inputFolder = inputFolderWithBrokenFile()
+    val sequential = performProbesWithMSD(inputFolder, parallel = false, cancel = false)
+    val parallel = performProbesWithMSD(inputFolder, parallel = true, cancel = false)
+    assertOutputEquals(sequential, parallel)
+    // идентификаторы скважин сдвигаются на количество скважин
+    // предыдущих файлов, а файл с ошибкой пропускается
+    val topWellsFile = parallel.resolve(nameOfTopWellsFile)
+    val idOfWells = ArrayList<String>()
+    MicromineTextReader(topWellsFile).use {
+      it.nextLine()
+      val indexOfIDW = it.fields().indexOf("IDW")
+      while (it.nextLine()) idOfWells.add(it.field(indexOfIDW))
+    }
+    assertTrue(idOfWells.size > 0)
+    assertEquals(List(idOfWells.size) { "$it" }, idOfWells)
+    listOf(inputFolder, sequential, parallel).forEach { deleteFolder(it) }
+  }
+
+  @Test
+  fun `canceled task stops before the first file`() {
+    val inputFolder = inputFolderWithBrokenFile()
+    val sequential = performProbesWithMSD(inputFolder, parallel = false, cancel = true)
+    val parallel = performProbesWithMSD(inputFolder, parallel = true, cancel = true)
+    assertOutputEquals(sequential, parallel)
+    listOf(inputFolder, sequential, parallel).forEach { deleteFolder(it) }
+  }
+
+  // каталог с тремя копиями файла проб и файлом с ошибкой формата
+  private fun inputFolderWithBrokenFile(): Path {
+    val folder = Files.createTempDirectory("ManyFilesThreadTaskTest")
+    val excelFile = Paths.get(javaClass.classLoader.getResource(
+            "input/excel files All MSD/Нижне-Накынский-4_withMSD.xls").toURI())
+    listOf("1.xls", "2.xls", "4.xls").forEach { Files.copy(excelFile, folder.resolve(it)) }
+    Files.write(folder.resolve("3.xls"), "не файл Excel".toByteArray())
+    return folder
+  }
+
+  // выполнить задачу "Пробы с МСА" и вернуть каталог выходных файлов
+  private fun performProbesWithMSD(inputFolder: Path, parallel: Boolean, cancel: Boolean): Path {
+    val outputFolder = Files.createTempDirectory("ManyFilesThreadTaskTest")
+    val parameters: Map<String, Any> = mapOf("inputFolder" to inputFolder.toString(),
+            "outputFolder" to outputFolder.toString(),
+            "probeVolume" to "15 л", "useReferenceVolume" to true,
+            "useAmendment" to true, "createDotFile" to true,
+            "typeOfSelectionAge" to "Все пробы")
+    val task = ManyFilesThreadTask(ProbesWithMSD(parameters), parallel)
+    if (cancel) {
+      task.cancel()
+      assertFalse(task.call())
+    } else assertTrue(task.call())
+    return outputFolder
+  }
+
+  private fun deleteFolder(folder: Path) {
+    Files.list(folder).use { files -> files.forEach { Files.delete(it) } }
+    Files.delete(folder)
+  }
+
+  private fun assertOutputEquals(expected: Path, actual: Path) {
+    listOf(nameOfTopWellsFile, nameOfIntervalWellsFile, nameOfDotWellsFile).forEach {
+      assertArrayEquals(Files.readAllBytes(expected.resolve(it)),
+              Files.readAllBytes(actual.resolve(it)), it)
+    }
+  }
+}
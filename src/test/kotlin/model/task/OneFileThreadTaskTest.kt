@@ -0,0 +1,115 @@
+package model.task
+
+import TestUtils.initToolkit
+import TestUtils.inputFileIntervalWellsOnlyMSD
+import model.exception.GeoTaskException
+import model.task.mineralogy.IntervalsOfSamplingToPoints
+import model.task.thread.OneFileThreadTask
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import java.nio.file.Files
+import java.nio.file.Path
+
+internal class OneFileThreadTaskTest {
+  // больше двух блоков параллельной обработки
+  private val numberOfElements = Runtime.getRuntime().availableProcessors() * 256 * 3 + 17
+
+  init {
+    initToolkit()
+  }
+
+  @Test
+  fun `parallel results are the same as sequential`() {
+    val sequential = SquaresTask(numberOfElements, failingElement = -1)
+    assertTrue(OneFileThreadTask(sequential, parallel = false).call())
+    val parallel = SquaresTask(numberOfElements, failingElement = -1)
+    assertTrue(OneFileThreadTask(parallel, parallel = true).call())
+    assertEquals(List(numberOfElements) { it.toLong() * it }, sequential.results)
+    assertEquals(sequential.results, parallel.results)
+    assertTrue(sequential.written)
+    assertTrue(parallel.written)
+  }
+
+  @Test
+  fun `results are saved up to the failing element`() {
+    // ошибка во втором блоке: результаты первого блока и элементов
+    // второго блока до ошибки сохраняются, данные не записываются
+    val failingElement = Runtime.getRuntime().availableProcessors() * 256 + 5
+    val sequential = SquaresTask(numberOfElements, failingElement)
+    assertFalse(OneFileThreadTask(sequential, parallel = false).call())
+    val parallel = SquaresTask(numberOfElements, failingElement)
+    assertFalse(OneFileThreadTask(parallel, parallel = true).call())
+    assertEquals(List(failingElement) { it.toLong() * it }, sequential.results)
+    assertEquals(sequential.results, parallel.results)
+    assertFalse(sequential.written)
+    assertFalse(parallel.written)
+  }
+
+  @Test
+  fun `errors other than GeoTaskException are thrown`() {
+    val failingElement = Runtime.getRuntime().availableProcessors() * 256 + 5
+    val sequential = SquaresTask(numberOfElements, failingElement, ::IllegalStateException)
+    assertThrows(IllegalStateException::class.java) {
+      OneFileThreadTask(sequential, parallel = false).call()
+    }
+    val parallel = SquaresTask(numberOfElements, failingElement, ::IllegalStateException)
+    assertThrows(IllegalStateException::class.java) {
+      OneFileThreadTask(parallel, parallel = true).call()
+    }
+    assertEquals(sequential.results, parallel.results)
+    assertFalse(parallel.written)
+  }
+
+  @Test
+  fun `parallel output file is the same as sequential`() {
+    val sequential = performIntervalsOfSamplingToPoints(parallel = false)
+    val parallel = performIntervalsOfSamplingToPoints(parallel = true)
+    assertArrayEquals(Files.readAllBytes(sequential), Files.readAllBytes(parallel))
+    Files.delete(sequential)
+    Files.delete(parallel)
+  }
+
+  // выполнить задачу "Интервалы опробования в точки" и вернуть выходной файл
+  private fun performIntervalsOfSamplingToPoints(parallel: Boolean): Path {
+    val outputFile = Files.createTempFile("OneFileThreadTaskTest", ".txt")
+    Files.delete(outputFile)
+    val parameters = mapOf("inputFile" to inputFileIntervalWellsOnlyMSD,
+            "outputFile" to outputFile.toString(), "frequency" to 1,
+            "taskName" to "highlightByFind")
+    assertTrue(OneFileThreadTask(IntervalsOfSamplingToPoints(parameters), parallel).call())
+    return outputFile
+  }
+
+  // квадраты чисел от 0 до [size]; для элемента [failingElement]
+  // вычисления заканчиваются ошибкой, которую создает [failure]
+  private class SquaresTask(private val size: Int, private val failingElement: Int,
+                            private val failure: (String) -> Exception = ::GeoTaskException):
+          GeoTaskOneFile(emptyMap()) {
+    val results = ArrayList<Long>()
+    var written = false
+
+    override val parallelPreparing = true
+
+    override fun getTableFromFile(): Collection<Any?> = (0 until size).toList()
+
+    override fun perform(any: Any?) = commit(any, prepare(any))
+
+    override fun prepare(any: Any?): Any? {
+      val element = any as Int
+      if (element == failingElement) throw failure("Ошибка в элементе $element")
+      return element.toLong() * element
+    }
+
+    override fun commit(any: Any?, prepared: Any?) {
+      results.add(prepared as Long)
+    }
+
+    override fun writeData() {
+      written = true
+    }
+
+    override fun printIntro() {}
+
+    override fun printReport() {}
+  }
+}
@@ -179,4 +179,25 @@ internal class ProbesWithMSDTest { // класс доступен везде в
     assertEquals("Проб с указанной выборкой по стратиграфии не найдено",
                   e.message)
   }
-}
\ No newline at end of file
+
+  @Test
+  @DisplayName("files prepared in other order are committed with sequential IDW")
+  fun prepareAndCommit() {
+    val parameters = mapOf("inputFolder" to inputFolderProbesWithMSD,
+            "outputFolder" to outputFolderProbesWithMSD,
+            "probeVolume" to volume, "useReferenceVolume" to false,
+            "useAmendment" to false, "createDotFile" to true,
+            "typeOfSelectionAge" to "Все пробы")
+    val task = ProbesWithMSD(parameters)
+    task.setThreadingTask(mockTask)
+    val second = task.prepare(excelFile)
+    val first = task.prepare(excelFile)
+    task.commit(excelFile, first)
+    assertEquals("148", task.getTopWells[148]["IDW"])
+    task.commit(excelFile, second)
+    assertEquals(150, task.getTopWells.size)
+    assertEquals("298", task.getTopWells[148]["IDW"])
+    assertEquals("299", task.getIntervalWells[616]["IDW"])
+    assertEquals("299", task.getDotWells[616]["IDW"])
+  }
+}
@@ -0,0 +1,54 @@
+package model.utils
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import java.util.*
+
+internal class CentimetresTest {
+
+  @Test
+  fun `parse values in metres`() {
+    assertEquals(24506L, Centimetres.parse("245,06"))
+    assertEquals(24506L, Centimetres.parse("245.06"))
+    assertEquals(-50L, Centimetres.parse("-0.5"))
+    assertEquals(1500L, Centimetres.parse("15"))
+    assertEquals(1235L, Centimetres.parse("12.345"))
+    assertEquals(10L, Centimetres.parse(" 0.1 "))
+    assertThrows(NumberFormatException::class.java) { Centimetres.parse("Нет данных") }
+    assertThrows(NumberFormatException::class.java) { Centimetres.parse("") }
+    val random = Random(7)
+    repeat(100_000) {
+      val value = "${random.nextInt(2_000_000) - 1_000_000}.${random.nextInt(1000)}"
+      assertEquals(Math.round(DecimalCodec.parse(value) * 100.0), Centimetres.parse(value), value)
+    }
+  }
+
+  @Test
+  fun `format is the same as toString of metres`() {
+    val random = Random(13)
+    repeat(100_000) {
+      val centimetres = random.nextLong() % 2_000_000_000L
+      assertEquals(Centimetres.toMetres(centimetres).toString(), Centimetres.format(centimetres))
+    }
+    assertEquals("0.0", Centimetres.format(0))
+    assertEquals("-0.01", Centimetres.format(-1))
+  }
+
+  @Test
+  fun `store changed values of column`() {
+    val table = listOf(
+            mutableMapOf("От" to "0,5", "До" to "1.5"),
+            mutableMapOf("От" to "1.5", "До" to "2"))
+    val from = CentimetreColumn(table, "От")
+    val to = CentimetreColumn(table, "До")
+    assertEquals(2, from.size)
+    to[1] = to[1] + from[0]
+    to.store()
+    assertEquals("1.5", table[0]["До"])
+    assertEquals("2.5", table[1]["До"])
+    from.store("Z", all = true)
+    assertEquals("0.5", table[0]["Z"])
+    assertEquals("0,5", table[0]["От"])
+    assertEquals("1.5", table[1]["Z"])
+  }
+}
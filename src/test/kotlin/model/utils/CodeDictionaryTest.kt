@@ -0,0 +1,62 @@
+package model.utils
+
+import model.constants.CommonConstants.noData
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+
+internal class CodeDictionaryTest {
+  private val codes = mapOf("1.0" to "J1uk", "2" to "O1ol", "2.5" to "J1sn", "Н" to "нет")
+
+  @Test
+  fun `codes are decoded by exact and normalized value`() {
+    val dictionary = CodeDictionary(codes)
+    assertEquals("J1uk", dictionary.decode("1.0"))
+    assertEquals("J1uk", dictionary.decode("1"))
+    assertEquals("O1ol", dictionary.decode("2,0"))
+    assertEquals("J1sn", dictionary.decode("2.50"))
+    assertEquals("нет", dictionary.decode("Н"))
+    assertEquals(noData, dictionary.decode("3.0"))
+    assertEquals(noData, dictionary.decode("н"))
+  }
+
+  @Test
+  fun `column is decoded with shared values`() {
+    val table = listOf(hashMapOf("Возраст" to "1.0"), hashMapOf("Возраст" to "1"),
+            hashMapOf("ID ТН" to "5.0"), hashMapOf("Возраст" to "7"))
+    CodeDictionary(codes).decodeColumn(table, "Возраст")
+    assertIterableEquals(listOf("J1uk", "J1uk", noData, noData), table.map { it["Возраст"] })
+    assertSame(table[0]["Возраст"], table[1]["Возраст"])
+    // в строку без кода добавляется "Нет данных", как при переборе кодов
+    assertEquals(mapOf("ID ТН" to "5.0", "Возраст" to noData), table[2])
+  }
+
+  private fun codesOfSheet(codes: Map<String, String>): CodesOfSheet {
+    val fingerprint = CodesOfSheet.Fingerprint()
+    codes.forEach { code, value ->
+      fingerprint.add(code)
+      fingerprint.add(value)
+    }
+    return CodesOfSheet(fingerprint.toString()).apply { putAll(codes) }
+  }
+
+  @Test
+  fun `dictionary is built once for sheets with the same fingerprint`() {
+    val dictionary = CodeDictionary.of(codesOfSheet(codes))
+    assertSame(dictionary, CodeDictionary.of(codesOfSheet(codes)))
+    assertNotSame(dictionary, CodeDictionary.of(codesOfSheet(codes + ("3" to "J2"))))
+    // коды не из листа не кешируются
+    assertNotSame(CodeDictionary.of(codes), CodeDictionary.of(codes))
+    val table = listOf(hashMapOf("Возраст" to "2,0"))
+    CodeDictionary.of(codesOfSheet(codes)).decodeColumn(table, "Возраст")
+    assertSame(dictionary.decode("2,0"), table[0]["Возраст"])
+  }
+
+  @Test
+  fun `fingerprint depends on values and their boundaries`() {
+    fun fingerprint(vararg values: String?) =
+            CodesOfSheet.Fingerprint().apply { values.forEach { add(it) } }.toString()
+    assertEquals(fingerprint("1", "J1uk"), fingerprint("1", "J1uk"))
+    assertNotEquals(fingerprint("1", "J1uk"), fingerprint("1J", "1uk"))
+    assertNotEquals(fingerprint("1", null), fingerprint("1", "null"))
+  }
+}
@@ -0,0 +1,37 @@
+package model.utils
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+
+internal class CoincidentCollarsTest {
+  private fun well(id: String, x: String, y: String = "7215163.25", z: String = "245.06") =
+          hashMapOf("IDW" to id, "X" to x, "Y" to y, "Z" to z)
+
+  @Test
+  fun `coincident collars are shifted in order of wells`() {
+    val wells = listOf(well("1", "517753.5"), well("2", "517700.0"), well("3", "517753.5"),
+            well("3", "517753.5"), well("4", "517753.5", z = "245.0"), well("5", "517700.0"))
+    CoincidentCollars("IDW", "X", "Y", "Z").fix(wells)
+    assertIterableEquals(listOf("517753.5", "517700.0", "517753.51", "517753.52",
+            "517753.5", "517700.01"), wells.map { it["X"] })
+  }
+
+  @Test
+  fun `wells with the same id are not shifted`() {
+    val wells = listOf(well("1", "517753.5"), well("1", "517753.5"))
+    CoincidentCollars("IDW", "X", "Y", "Z").fix(wells)
+    assertIterableEquals(listOf("517753.5", "517753.5"), wells.map { it["X"] })
+  }
+
+  @Test
+  fun `near collars are shifted with tolerance`() {
+    val wells = listOf(well("1", "517753.5"), well("2", "517753.503", y = "7215163.248"),
+            well("3", "517753.53"), well("4", "517753.499", z = "245.061"))
+    val exact = wells.map { HashMap(it) }
+    CoincidentCollars("IDW", "X", "Y", "Z").fix(exact)
+    assertIterableEquals(wells.map { it["X"] }, exact.map { it["X"] })
+    CoincidentCollars("IDW", "X", "Y", "Z", 0.005).fix(wells)
+    assertIterableEquals(listOf("517753.5", "517753.51", "517753.53", "517753.52"),
+            wells.map { it["X"] })
+  }
+}
@@ -0,0 +1,44 @@
+package model.utils
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import java.util.*
+
+internal class DecimalCodecTest {
+
+  @Test
+  fun `parse decimal values`() {
+    assertEquals(245.06, DecimalCodec.parse("245,06"))
+    assertEquals(245.06, DecimalCodec.parse("245.06"))
+    assertEquals(-0.5, DecimalCodec.parse("-0.50"))
+    assertEquals(15.0, DecimalCodec.parse("15 л", "л"))
+    assertEquals(7.5, DecimalCodec.parse("7,5л", "л"))
+    assertEquals(1.0E-4, DecimalCodec.parse("1.0E-4"))
+    assertEquals(0.1, DecimalCodec.parse(" 0.1 "))
+    assertEquals(java.lang.Double.valueOf("-0.0"), DecimalCodec.parse("-0.0"))
+    assertThrows(NumberFormatException::class.java) { DecimalCodec.parse("Нет данных") }
+    assertThrows(NumberFormatException::class.java) { DecimalCodec.parse("") }
+    val random = Random(5)
+    repeat(100_000) {
+      val value = "${random.nextInt(2_000_000) - 1_000_000}.${random.nextInt(100_000)}"
+      assertEquals(java.lang.Double.valueOf(value), DecimalCodec.parse(value), value)
+      assertEquals(java.lang.Double.valueOf(value), DecimalCodec.parse(value.replace('.', ',')), value)
+    }
+  }
+
+  @Test
+  fun `format is the same as toString`() {
+    listOf(0.0, -0.0, 0.01, -0.05, 0.5, 1.0, 10.1, 245.06, 7215163.53, 1.0E7, 1.0E-4,
+            0.123, Double.NaN, Double.NEGATIVE_INFINITY).forEach {
+      assertEquals(it.toString(), DecimalCodec.format(it))
+    }
+    val random = Random(11)
+    repeat(100_000) {
+      val value = (random.nextDouble() - 0.5) * 2.0E7
+      val rounded = DecimalCodec.round(value)
+      assertEquals(rounded.toString(), DecimalCodec.format(rounded))
+      assertEquals(value.toString(), DecimalCodec.format(value))
+      assertEquals(rounded.toString(), DecimalCodec.append(StringBuilder("z="), rounded).substring(2))
+    }
+  }
+}
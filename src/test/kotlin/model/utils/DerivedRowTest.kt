@@ -0,0 +1,51 @@
+package model.utils
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import java.util.*
+
+internal class DerivedRowTest {
+  private val base = HashMap<String, String>()
+
+  init {
+    (0 until 40).forEach { base["attribute$it"] = "$it" }
+  }
+
+  @Test
+  fun `derived row is iterated as copy of base`() {
+    val random = Random(31)
+    val keys = base.keys.toList() + listOf("generateZ", "Z", "IDW")
+    repeat(200) {
+      val copy = LinkedHashMap(base)
+      val row = DerivedRow(base)
+      repeat(random.nextInt(30)) {
+        val key = keys[random.nextInt(keys.size)]
+        when (random.nextInt(5)) {
+          0 -> assertEquals(copy.remove(key), row.remove(key))
+          1, 2 -> assertEquals(copy.put(key, "v$it"), row.put(key, "v$it"))
+          3 -> {
+            copy.keys.retainAll { it.hashCode() % 5 != 0 }
+            row.keys.retainAll { it.hashCode() % 5 != 0 }
+          }
+          else -> assertEquals(copy[key], row[key])
+        }
+      }
+      assertEquals(copy.size, row.size)
+      assertEquals(copy, row)
+      assertEquals(copy.toString(), row.toString())
+      assertIterableEquals(copy.keys, row.keys)
+    }
+  }
+
+  @Test
+  fun `base is not changed`() {
+    val copyOfBase = HashMap(base)
+    val row = DerivedRow(base)
+    row["attribute1"] = "1.5"
+    row.remove("attribute2")
+    row["generateZ"] = "2.0"
+    row.clear()
+    assertTrue(row.isEmpty())
+    assertEquals(copyOfBase, base)
+  }
+}
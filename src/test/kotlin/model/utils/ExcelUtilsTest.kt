@@ -0,0 +1,63 @@
+package model.utils
+
+import model.utils.ExcelUtils.RowFilter
+import model.utils.ExcelUtils.getTableOfIsihogyClient
+import model.utils.ExcelUtils.openWorkbookOfIsihogyClient
+import org.apache.poi.xssf.usermodel.XSSFWorkbook
+import org.junit.jupiter.api.AfterAll
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import java.io.File
+import java.io.FileOutputStream
+
+internal class ExcelUtilsTest {
+  private val file = File.createTempFile("ExcelUtilsTest", ".xlsx")
+
+  init {
+    val workbook = XSSFWorkbook()
+    val sheet = workbook.createSheet("Точки наблюдений")
+    listOf(listOf("ID ТН", "X факт.", "Y факт.", "Описание"),
+           listOf("1.0", "517753,5", "7215163,25", "скважина"),
+           listOf("", "", "", "только описание"),
+           listOf("", "", "", ""),
+           listOf("3.0", "", "7215100", " "))
+            .forEachIndexed { i, values ->
+              val row = sheet.createRow(i)
+              values.forEachIndexed { j, value -> row.createCell(j).setCellValue(value) }
+            }
+    FileOutputStream(file).use { workbook.write(it) }
+  }
+
+  @AfterAll
+  fun deleteFile() {
+    file.delete()
+  }
+
+  @Test
+  fun `projection of columns`() {
+    val full = openWorkbookOfIsihogyClient(file).use {
+      getTableOfIsihogyClient(it, "Точки наблюдений") }
+    val projected = openWorkbookOfIsihogyClient(file).use {
+      getTableOfIsihogyClient(it, "Точки наблюдений", setOf("ID ТН", "Y факт.")) }
+    // пустая строка отбрасывается, строка с заполненным непрочитанным
+    // столбцом - нет
+    assertEquals(3, full.size)
+    assertEquals(full.size, projected.size)
+    full.forEachIndexed { i, row ->
+      row.keys.retainAll(setOf("ID ТН", "Y факт."))
+      assertEquals(row, projected[i])
+    }
+    assertEquals("Нет данных", projected[1]["ID ТН"])
+  }
+
+  @Test
+  fun `row filter gets normalized value`() {
+    val values = ArrayList<String?>()
+    val filter = RowFilter("X факт.") { values.add(it); it != "Нет данных" }
+    val title = mapOf(0 to "ID ТН", 1 to "X факт.")
+    assertTrue(filter.accept(title) { mapOf(0 to "1", 1 to "517753,5")[it] })
+    assertFalse(filter.accept(title) { mapOf(0 to "2", 1 to " ")[it] })
+    assertTrue(filter.accept(title) { null }) // пустая строка
+    assertIterableEquals(listOf("517753,5", "Нет данных", null), values)
+  }
+}
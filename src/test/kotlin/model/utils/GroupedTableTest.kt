@@ -0,0 +1,32 @@
+package model.utils
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import java.util.stream.Collectors
+
+internal class GroupedTableTest {
+  private val table = listOf(mapOf("ID ТН" to "2", "От" to "0.0"), mapOf("ID ТН" to "1", "От" to "0.0"),
+          mapOf("ID ТН" to "2", "От" to "1.5"), mapOf("От" to "3.0"),
+          mapOf("ID ТН" to "1", "От" to "2.0"), mapOf("ID ТН" to "2", "От" to "4.0"))
+
+  @Test
+  fun `rows are grouped in order of table`() {
+    val grouped = GroupedTable(table)
+    assertEquals(3, grouped.size)
+    assertIterableEquals(listOf("2", "1", null), grouped.keys)
+    assertIterableEquals(listOf(table[0], table[2], table[5]), grouped["2"])
+    assertIterableEquals(listOf(table[1], table[4]), grouped["1"])
+    assertIterableEquals(listOf(table[3]), grouped[null])
+    assertTrue(grouped["3"].isEmpty())
+    val groups = ArrayList<Pair<String?, Int>>()
+    grouped.forEachGroup { key, rows -> groups.add(key to rows.size) }
+    assertIterableEquals(listOf("2" to 3, "1" to 2, null to 1), groups)
+  }
+
+  @Test
+  fun `keys in hash order`() {
+    val ids = (0 until 5000).map { mapOf("IDW" to "${(it * 7919) % 1733 + 170000}") }
+    val expected = ids.stream().map { it["IDW"] }.collect(Collectors.toSet())
+    assertIterableEquals(expected, GroupedTable(ids, "IDW").keysInHashOrder())
+  }
+}
@@ -0,0 +1,40 @@
+package model.utils
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import java.util.*
+
+internal class NumericColumnTest {
+
+  @Test
+  fun `only changed values are stored`() {
+    val table = listOf(mutableMapOf("Z" to "1.50"), mutableMapOf("Z" to "2"), mutableMapOf("Z" to "-3.0"))
+    val z = NumericColumn(table, "Z")
+    assertEquals(3, z.size)
+    assertEquals(1.5, z[0])
+    assertEquals(-3.0, z[2])
+    z[1] = z[1] + 0.25
+    z.store()
+    assertIterableEquals(listOf("1.50", "2.25", "-3.0"), table.map { it["Z"] })
+    z.store("Z1", all = true)
+    assertIterableEquals(listOf("1.5", "2.25", "-3.0"), table.map { it["Z1"] })
+  }
+
+  @Test
+  fun `value is not a number`() {
+    val table = listOf(mutableMapOf("Z" to "1.0"), mutableMapOf("Z" to "Нет данных"))
+    assertThrows(NumberFormatException::class.java) { NumericColumn(table, "Z") }
+  }
+
+  @Test
+  fun `sort by well and from`() {
+    val random = Random(7)
+    val table = (0 until 3000).map {
+      mutableMapOf("IDW" to "${random.nextInt(200) + 170000}",
+              "От" to "${random.nextInt(400) / 4.0}", "N" to "$it")
+    }
+    val expected = table.sortedWith(compareBy({ it["IDW"]!!.toInt() }, { it["От"]!!.toDouble() }))
+    assertIterableEquals(expected, sortByWellAndFrom(table))
+    assertTrue(sortByWellAndFrom(emptyList()).isEmpty())
+  }
+}
@@ -0,0 +1,143 @@
+package model.utils
+
+import model.constants.ProbesWithMSDConstants.indexAndNameOfColumns
+import model.constants.ProbesWithMSDConstants.namesOfNumberColumns
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import java.util.*
+
+internal class RowTest {
+  private val names = indexAndNameOfColumns.values.toList()
+  private val schema = Schema(names)
+  private val schemaWithZeroColumns = Schema(names, namesOfNumberColumns)
+
+  private fun newRow(schema: Schema = this.schema,
+                     valueOf: (Int) -> String = { "$it" }): Pair<Row, HashMap<String, String>> {
+    val map = HashMap<String, String>()
+    names.forEachIndexed { i, name -> map[name] = valueOf(i) }
+    val values = arrayOfNulls<String>(schema.size)
+    names.forEachIndexed { i, name -> values[schema.indexOf(name)] = valueOf(i) }
+    return Row(schema, values) to map
+  }
+
+  @Test
+  fun `row is iterated as hash map`() {
+    val (row, map) = newRow()
+    assertEquals(map, row)
+    assertEquals(map.toString(), row.toString())
+    assertEquals(map.hashCode(), row.hashCode())
+    assertIterableEquals(map.keys, row.keys)
+    assertIterableEquals(HashMap(map).keys, HashMap(row).keys)
+  }
+
+  @Test
+  fun `changes of row are the same as for hash map`() {
+    val random = Random(17)
+    val keys = names + listOf("generateZ", "depth", "IDW")
+    repeat(200) {
+      val (row, map) = newRow()
+      repeat(random.nextInt(40)) {
+        val key = keys[random.nextInt(keys.size)]
+        when (random.nextInt(4)) {
+          0 -> assertEquals(map.remove(key), row.remove(key))
+          1 -> assertEquals(map.put(key, "v$it"), row.put(key, "v$it"))
+          2 -> {
+            map.keys.retainAll { it.hashCode() % 7 != 0 }
+            row.keys.retainAll { it.hashCode() % 7 != 0 }
+          }
+          else -> assertEquals(map[key], row[key])
+        }
+      }
+      assertEquals(map.size, row.size)
+      assertEquals(map.toString(), row.toString())
+    }
+  }
+
+  @Test
+  fun `column gets values by index of schema`() {
+    val (row, map) = newRow()
+    val column = Row.Column(names[5])
+    assertEquals(map[names[5]], column[row])
+    assertEquals(map[names[5]], column[map])
+    column[row] = "0.5"
+    column[map] = "0.5"
+    assertEquals(map, row)
+    row.remove(names[5])
+    assertNull(column[row])
+    assertNull(Row.Column("generateZ")[row])
+  }
+
+  @Test
+  fun `row with zero columns is the same as hash map`() {
+    val random = Random(23)
+    val keys = names + listOf("generateZ", "IDW")
+    repeat(200) {
+      val values = names.indices.map { if (random.nextInt(20) == 0) "$it" else "0" }
+      val (row, map) = newRow(schemaWithZeroColumns) { values[it] }
+      assertEquals(map, row)
+      assertEquals(map.toString(), row.toString())
+      repeat(random.nextInt(60)) {
+        val key = keys[random.nextInt(keys.size)]
+        when (random.nextInt(6)) {
+          0 -> assertEquals(map.remove(key), row.remove(key))
+          1, 2 -> assertEquals(map.put(key, "v$it"), row.put(key, "v$it"))
+          3 -> assertEquals(map.put(key, "0"), row.put(key, "0"))
+          else -> assertEquals(map[key], row[key])
+        }
+      }
+      assertEquals(map.size, row.size)
+      assertEquals(map.toString(), row.toString())
+    }
+  }
+
+  @Test
+  fun `non-zero values of columns`() {
+    val columns = Row.Columns(namesOfNumberColumns.reversed())
+    val (row, map) = newRow(schemaWithZeroColumns) { if (it % 50 == 0) "$it.5" else "0" }
+    val found = ArrayList<Pair<Int, String>>()
+    columns.forEachNonZero(row) { i, value ->
+      found.add(i to value)
+      columns[i][row] = "1.0"
+    }
+    val expected = ArrayList<Pair<Int, String>>()
+    columns.forEachNonZero(map) { i, value -> expected.add(i to value) }
+    assertEquals(expected.size, found.size)
+    assertEquals(expected.toSet(), found.toSet())
+    found.forEach { assertEquals("1.0", columns[it.first][row]) }
+    assertEquals("0", row[namesOfNumberColumns[1]])
+  }
+
+  @Test
+  fun `copy of row does not share changes`() {
+    val (row, map) = newRow(schemaWithZeroColumns) { if (it % 50 == 0) "$it" else "0" }
+    val copy = CollectionUtils.copyOfMap(row)
+    assertTrue(copy is Row)
+    assertEquals(map, copy)
+    copy[names[0]] = "copy"
+    copy[namesOfNumberColumns[3]] = "3.5"
+    copy.remove(names[1])
+    row[names[2]] = "row"
+    assertEquals(map[names[0]], row[names[0]])
+    assertEquals("0", row[namesOfNumberColumns[3]])
+    assertEquals(map[names[1]], row[names[1]])
+    assertEquals(map[names[2]], copy[names[2]])
+  }
+
+  @Test
+  fun `extended row is iterated as hash map`() {
+    val (row, map) = newRow(schemaWithZeroColumns)
+    listOf("IDW", "generateZ").forEach {
+      row[it] = "1"
+      map[it] = "1"
+    }
+    assertTrue(row.schema.indexOf("generateZ") >= 0)
+    val (first, _) = newRow(schemaWithZeroColumns)
+    val (second, _) = newRow(schemaWithZeroColumns)
+    first["IDW"] = "1"
+    second["IDW"] = "2"
+    assertSame(first.schema, second.schema)
+    assertEquals(map, row)
+    assertEquals(map.toString(), row.toString())
+    assertIterableEquals(map.keys, row.keys)
+  }
+}
@@ -0,0 +1,43 @@
+package model.utils
+
+import model.constants.IsihogyClientConstants.nameOfAttributeID
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+
+internal class TableIndexTest {
+  private val wells = listOf(
+          mapOf(nameOfAttributeID to "1", "X" to "10", "Z" to "200"),
+          mapOf(nameOfAttributeID to "2", "X" to "20", "Z" to "210"),
+          mapOf(nameOfAttributeID to "1", "X" to "30", "Z" to "220"))
+  private val probes = listOf(
+          mapOf(nameOfAttributeID to "1", "До" to "2.0"),
+          mapOf(nameOfAttributeID to "3", "До" to "1.0"),
+          mapOf(nameOfAttributeID to "1", "До" to "5.5"))
+  private val index = TableIndex(wells)
+
+  @Test
+  fun `semi join and inner join`() {
+    assertIterableEquals(listOf(probes[0], probes[2]), index.semiJoin(probes))
+    val joined = index.innerJoin(probes)
+    assertEquals(2, joined.size)
+    // атрибуты берутся из первой скважины с таким id
+    assertEquals(mapOf(nameOfAttributeID to "1", "До" to "5.5", "X" to "10", "Z" to "200"),
+            joined[1])
+    assertEquals(mapOf("До" to "2.0", "Z" to "200"),
+            index.innerJoin(probes, listOf("До", "Z"))[0])
+  }
+
+  @Test
+  fun `join to row and aggregate`() {
+    val layer = hashMapOf(nameOfAttributeID to "2", "От" to "0.0")
+    assertTrue(index.joinTo(layer, listOf("Z", "Y")))
+    assertEquals(mapOf(nameOfAttributeID to "2", "От" to "0.0", "Z" to "210"), layer)
+    assertFalse(index.joinTo(hashMapOf(nameOfAttributeID to "3")))
+
+    val probesOfWells = TableIndex(probes)
+    val maxTo = probesOfWells.aggregate(wells[0], 0.0) { max, probe ->
+      Math.max(max, probe["До"]!!.toDouble()) }
+    assertEquals(5.5, maxTo)
+    assertEquals(2, index.matches(probes[0]).size)
+  }
+}
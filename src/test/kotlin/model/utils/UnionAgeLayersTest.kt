@@ -7,7 +7,6 @@ import model.constants.IsihogyClientConstants.nameOfAttributeLCodeAge
 import model.constants.IsihogyClientConstants.nameOfAttributeTo
 import model.constants.IsihogyClientConstants.stratigraphicCodesSheetName
 import model.utils.ExcelUtils.getCodesOfIsihogyClient
-import model.utils.ExcelUtils.getSheetOfIsihogyClient
 import model.utils.ExcelUtils.getTableOfIsihogyClient
 import model.utils.IsihogyClientUtils.decodingField
 import model.utils.IsihogyClientUtils.deleteDecimalPart
@@ -28,10 +27,8 @@ internal class UnionAgeLayersTest {
     path = URLDecoder.decode(ClassLoader.getSystemResource(path).file, "UTF-8")
     val file = File(path)
 
-    var sheet = getSheetOfIsihogyClient(file, lithostratigraphicSheetName)
-    tableForUnionLayers = getTableOfIsihogyClient(sheet)
-    sheet = getSheetOfIsihogyClient(file, stratigraphicCodesSheetName)
-    val stratigraphicCodes = getCodesOfIsihogyClient(sheet)
+    tableForUnionLayers = getTableOfIsihogyClient(file, lithostratigraphicSheetName)
+    val stratigraphicCodes = getCodesOfIsihogyClient(file, stratigraphicCodesSheetName)
     decodingField(tableForUnionLayers, stratigraphicCodes)
     deleteDecimalPart(nameOfAttributeID, tableForUnionLayers)
   }
@@ -0,0 +1,46 @@
+package model.utils
+
+import model.constants.CommonConstants.nameOfAttributeDepth
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+
+internal class WellIndexTest {
+  private fun row(vararg pairs: Pair<String, String>): MutableMap<String, String> =
+          hashMapOf(*pairs)
+
+  @Test
+  fun `unique wells, ID and depth`() {
+    val table = listOf(
+            row("Линия" to "1", "Точка" to "10", "До" to "2.5"),
+            row("Линия" to "1", "Точка" to "11", "До" to "4.0"),
+            row("Линия" to "1", "Точка" to "10", "До" to "7.1"),
+            row("Линия" to "2", "Точка" to "10", "До" to "1.0"))
+    val index = WellIndex(table)
+    val wells = index.uniqueWells
+    assertEquals(3, wells.size)
+    assertEquals("11", wells[1]["Точка"])
+    assertNotSame(table[0], wells[0]) // в индекс добавляются копии скважин
+    wells.forEachIndexed { i, well -> well["IDW"] = "$i" }
+
+    val intervals = table.map { HashMap(it) } +
+            row("Линия" to "3", "Точка" to "1", "До" to "1.0")
+    index.assignIDToIntervals(intervals)
+    assertIterableEquals(listOf("0", "1", "0", "2", null), intervals.map { it["IDW"] })
+
+    index.defineDepthOfWells(intervals)
+    assertIterableEquals(listOf("7.1", "4.0", "1.0"), wells.map { it[nameOfAttributeDepth] })
+    assertEquals(2, index.intervalsOfWells(intervals)["0"]?.size)
+  }
+
+  @Test
+  fun `unique wells keep row representation`() {
+    val schema = Schema(listOf("Линия", "Точка", "До"))
+    val table = listOf(Row(schema, arrayOf<String?>("1", "10", "2.5")),
+            Row(schema, arrayOf<String?>("1", "10", "7.1")))
+    val wells = WellIndex(table).uniqueWells
+    assertEquals(1, wells.size)
+    assertTrue(wells[0] is Row)
+    assertNotSame(table[0], wells[0])
+    assertEquals(table[0], wells[0])
+  }
+}